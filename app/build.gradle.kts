@@ -32,6 +32,12 @@ android {
     buildFeatures {
         viewBinding = true
     }
+    testOptions {
+        unitTests.all {
+            // Timing tests are skipped unless run with ./gradlew testDebugUnitTest -Pbenchmarks
+            it.systemProperty("benchmarks", project.hasProperty("benchmarks").toString())
+        }
+    }
 }
 
 dependencies {
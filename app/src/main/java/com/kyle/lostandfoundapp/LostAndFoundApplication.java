@@ -7,32 +7,51 @@ import android.util.Log;
 
 import androidx.appcompat.app.AppCompatDelegate;
 
+import com.kyle.lostandfoundapp.utils.ImageStorageManager;
 import com.kyle.lostandfoundapp.utils.LocaleManager;
+import com.kyle.lostandfoundapp.utils.SettingsStore;
 import com.kyle.lostandfoundapp.utils.SharedPreferencesManager;
 
 public class LostAndFoundApplication extends Application {
 
     private static final String TAG = "LostAndFoundApp";
 
+    // Language the resources currently use; main thread only
+    private String attachedLanguage;
+
     @Override
     public void onCreate() {
         super.onCreate();
         Log.d(TAG, "=== Application onCreate ===");
 
-        // Initialize SharedPreferences
+        // Initialize SharedPreferences; values are read from memory once the store has loaded
         SharedPreferencesManager prefsManager = SharedPreferencesManager.getInstance(this);
         Log.d(TAG, "SharedPreferencesManager initialized");
 
-        // Set app theme based on saved preference
-        int themeMode = prefsManager.getThemeMode();
-        int appCompatMode = mapToAppCompatThemeMode(themeMode);
-        AppCompatDelegate.setDefaultNightMode(appCompatMode);
-        Log.d(TAG, "Theme applied - Custom mode: " + themeMode + ", AppCompat mode: " + appCompatMode);
-
-        // Log current settings
-        Log.d(TAG, "Current language: " + prefsManager.getLanguage());
-        Log.d(TAG, "Current theme: " + themeMode);
-        Log.d(TAG, "Is logged in: " + prefsManager.isLoggedIn());
+        // Defaults apply until the load lands, which is normally well within the splash
+        // screen, so the activities that follow are created with the stored values
+        SettingsStore.getInstance(this).whenLoaded(() -> {
+            // Set app theme based on saved preference
+            int themeMode = prefsManager.getThemeMode();
+            int appCompatMode = mapToAppCompatThemeMode(themeMode);
+            AppCompatDelegate.setDefaultNightMode(appCompatMode);
+            Log.d(TAG, "Theme applied - Custom mode: " + themeMode + ", AppCompat mode: " + appCompatMode);
+
+            // The base context was attached with the default language
+            String language = prefsManager.getLanguage();
+            if (!language.equals(attachedLanguage)) {
+                LocaleManager.applyLocale(this, language);
+                attachedLanguage = language;
+            }
+
+            // Log current settings
+            Log.d(TAG, "Current language: " + language);
+            Log.d(TAG, "Current theme: " + themeMode);
+            Log.d(TAG, "Is logged in: " + prefsManager.isLoggedIn());
+        });
+
+        // Start tracking on-disk images; trims leftovers from earlier sessions in the background
+        ImageStorageManager.getInstance(this);
 
         Log.d(TAG, "=== Application initialization completed ===");
     }
@@ -41,16 +60,17 @@ public class LostAndFoundApplication extends Application {
     protected void attachBaseContext(Context base) {
         Log.d(TAG, "=== Application attachBaseContext ===");
 
-        // Apply saved language on app start
-        SharedPreferencesManager prefsManager = SharedPreferencesManager.getInstance(base);
-        String language = prefsManager.getLanguage();
+        // Start reading settings on a background thread as early as possible. Nothing here
+        // waits for disk: the language is the default unless the store has already loaded,
+        // and onCreate switches the resources over once it has.
+        attachedLanguage = SettingsStore.getInstance(base).getLanguage();
 
-        Log.d(TAG, "Applying language to application context: " + language);
+        Log.d(TAG, "Applying language to application context: " + attachedLanguage);
 
-        Context context = LocaleManager.setLocale(base, language);
+        Context context = LocaleManager.setLocale(base, attachedLanguage);
         super.attachBaseContext(context);
 
-        Log.d(TAG, "Base context attached with language: " + language);
+        Log.d(TAG, "Base context attached with language: " + attachedLanguage);
     }
 
     @Override
@@ -1,9 +1,17 @@
 package com.kyle.lostandfoundapp;
 
+import android.Manifest;
 import android.content.Context;
 import android.content.Intent;
+import android.content.pm.PackageManager;
 import android.content.res.Configuration;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.BaseColumns;
 import android.util.Log;
 import android.view.MenuItem;
 import android.view.View;
@@ -14,11 +22,15 @@ import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.ActionBarDrawerToggle;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.app.AppCompatDelegate;
 import androidx.appcompat.widget.SearchView;
 import androidx.appcompat.widget.Toolbar;
+import androidx.core.app.ActivityCompat;
+import androidx.core.content.ContextCompat;
 import androidx.core.view.GravityCompat;
+import androidx.cursoradapter.widget.SimpleCursorAdapter;
 import androidx.drawerlayout.widget.DrawerLayout;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -36,13 +48,26 @@ import com.kyle.lostandfoundapp.activity.ProfileActivity;
 import com.kyle.lostandfoundapp.adapter.PostAdapter;
 import com.kyle.lostandfoundapp.model.Post;
 import com.kyle.lostandfoundapp.network.ApiClient;
+import com.kyle.lostandfoundapp.search.FacetCounts;
+import com.kyle.lostandfoundapp.search.FieldQuery;
+import com.kyle.lostandfoundapp.search.MatchRanges;
+import com.kyle.lostandfoundapp.search.MatchSuggester;
+import com.kyle.lostandfoundapp.search.PostQuery;
+import com.kyle.lostandfoundapp.search.PostQueryEngine;
+import com.kyle.lostandfoundapp.search.PostSearcher;
+import com.kyle.lostandfoundapp.search.SavedSearch;
+import com.kyle.lostandfoundapp.utils.ChipCountLabel;
+import com.kyle.lostandfoundapp.utils.DuplicatePostDetector;
+import com.kyle.lostandfoundapp.utils.ImageHasher;
 import com.kyle.lostandfoundapp.utils.LocaleManager;
+import com.kyle.lostandfoundapp.utils.SavedSearchAlerts;
+import com.kyle.lostandfoundapp.utils.SettingsStore;
 import com.kyle.lostandfoundapp.utils.SharedPreferencesManager;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 import retrofit2.Call;
 import retrofit2.Callback;
@@ -58,6 +83,15 @@ public class MainActivity extends AppCompatActivity implements
     // Pagination constants
     private static final int POSTS_PER_PAGE = 15;
 
+    // Quiet period after the last keystroke before a search runs
+    private static final long SEARCH_DEBOUNCE_MS = 250;
+
+    // Search-box completions shown under the query
+    private static final int MAX_COMPLETIONS = 5;
+    private static final String COMPLETION_COLUMN = "completion";
+
+    private static final int NOTIFICATION_PERMISSION_REQUEST = 300;
+
     // Views
     private DrawerLayout drawerLayout;
     private NavigationView navigationView;
@@ -66,6 +100,7 @@ public class MainActivity extends AppCompatActivity implements
     private SwipeRefreshLayout swipeRefresh;
     private SearchView searchView;
     private ChipGroup chipGroup;
+    private ChipCountLabel chipAllLabel, chipLostLabel, chipFoundLabel;
     private ExtendedFloatingActionButton fabAdd;
     private TextView tvEmptyState;
     private ProgressBar progressLoadMore;
@@ -76,11 +111,25 @@ public class MainActivity extends AppCompatActivity implements
 
     private SharedPreferencesManager prefsManager;
     private LocaleManager localeManager;
+    // Language this activity's resources were created with
+    private String attachedLanguage;
+    private PostQueryEngine queryEngine;
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable debouncedSearch = this::performSearch;
+    private SimpleCursorAdapter completionAdapter;
+    // Sorted snapshot from the query engine; replaced, never mutated
     private List<Post> allPosts = new ArrayList<>();
     private List<Post> filteredPosts = new ArrayList<>();
     private String currentQuery = "";
     private Boolean currentFilter = null; // null = all, true = lost, false = found
 
+    // Server search fills in while the local corpus is not (yet) complete
+    private boolean localCorpusComplete = false;
+    private Call<List<Post>> serverSearchCall;
+    private List<Post> serverMatches = new ArrayList<>();
+    private String serverMatchesQuery;
+    private Boolean serverMatchesFilter;
+
     // Pagination variables
     private int currentPage = 0;
     private boolean isLoadingMore = false;
@@ -88,10 +137,11 @@ public class MainActivity extends AppCompatActivity implements
 
     @Override
     protected void attachBaseContext(Context newBase) {
-        // Apply language before activity is created
+        // Apply language before activity is created (served from memory; the default if the
+        // settings are still loading, see onSettingsLoaded)
         SharedPreferencesManager tempPrefs = SharedPreferencesManager.getInstance(newBase);
-        String language = tempPrefs.getLanguage();
-        Context context = LocaleManager.setLocale(newBase, language);
+        attachedLanguage = tempPrefs.getLanguage();
+        Context context = LocaleManager.setLocale(newBase, attachedLanguage);
         super.attachBaseContext(context);
     }
 
@@ -118,6 +168,19 @@ public class MainActivity extends AppCompatActivity implements
 
         Log.d(TAG, "SharedPreferencesManager initialized");
 
+        // The session comes with the settings load, which has normally finished during the
+        // splash screen; if not (e.g. restored straight into this screen) it runs later
+        SettingsStore.getInstance(this).whenLoaded(this::onSettingsLoaded);
+    }
+
+    private void onSettingsLoaded() {
+        if (isFinishing() || isDestroyed()) return;
+        if (!prefsManager.getLanguage().equals(attachedLanguage)) {
+            // Created with the default language before the stored one was known
+            recreate();
+            return;
+        }
+
         // Check if user is logged in
         if (!prefsManager.isLoggedIn()) {
             Log.d(TAG, "User not logged in, redirecting to LoginActivity");
@@ -128,6 +191,10 @@ public class MainActivity extends AppCompatActivity implements
 
         Log.d(TAG, "User is logged in: " + prefsManager.getEmail());
 
+        // Filtering, search and sorting run off the UI thread; results come back on it
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        queryEngine = new PostQueryEngine(mainHandler::post);
+
         initViews();
         setupToolbar();
         setupNavigationDrawer();
@@ -175,6 +242,11 @@ public class MainActivity extends AppCompatActivity implements
         swipeRefresh = findViewById(R.id.swipeRefresh);
         searchView = findViewById(R.id.searchView);
         chipGroup = findViewById(R.id.chipGroup);
+        if (chipGroup != null) {
+            chipAllLabel = new ChipCountLabel(findViewById(R.id.chipAll));
+            chipLostLabel = new ChipCountLabel(findViewById(R.id.chipLost));
+            chipFoundLabel = new ChipCountLabel(findViewById(R.id.chipFound));
+        }
         fabAdd = findViewById(R.id.fabAdd);
         tvEmptyState = findViewById(R.id.tvEmptyState);
         progressLoadMore = findViewById(R.id.progressLoadMore);
@@ -321,10 +393,31 @@ public class MainActivity extends AppCompatActivity implements
 
     private void setupSearch() {
         if (searchView != null) {
+            completionAdapter = new SimpleCursorAdapter(this, android.R.layout.simple_list_item_1, null,
+                    new String[]{COMPLETION_COLUMN}, new int[]{android.R.id.text1}, 0);
+            searchView.setSuggestionsAdapter(completionAdapter);
+            searchView.setOnSuggestionListener(new SearchView.OnSuggestionListener() {
+                @Override
+                public boolean onSuggestionSelect(int position) {
+                    return false;
+                }
+
+                @Override
+                public boolean onSuggestionClick(int position) {
+                    Cursor cursor = completionAdapter.getCursor();
+                    if (cursor != null && cursor.moveToPosition(position)) {
+                        // Submitting runs the search straight away
+                        searchView.setQuery(cursor.getString(cursor.getColumnIndexOrThrow(COMPLETION_COLUMN)), true);
+                    }
+                    return true;
+                }
+            });
+
             searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
                 @Override
                 public boolean onQueryTextSubmit(String query) {
                     Log.d(TAG, "Search submitted: " + query);
+                    searchHandler.removeCallbacks(debouncedSearch);
                     currentQuery = query.trim();
                     performSearch();
                     return true;
@@ -332,11 +425,16 @@ public class MainActivity extends AppCompatActivity implements
 
                 @Override
                 public boolean onQueryTextChange(String newText) {
+                    showCompletions(newText);
                     currentQuery = newText.trim();
+                    searchHandler.removeCallbacks(debouncedSearch);
+                    cancelServerSearch();
                     if (currentQuery.isEmpty()) {
                         applyFilters();
                     } else {
-                        performSearch();
+                        // Bursts of keystrokes collapse into one search; the engine then
+                        // only rescans the previous results when the query grew
+                        searchHandler.postDelayed(debouncedSearch, SEARCH_DEBOUNCE_MS);
                     }
                     return true;
                 }
@@ -345,6 +443,21 @@ public class MainActivity extends AppCompatActivity implements
         }
     }
 
+    /**
+     * Offer the most frequent title words that complete the last word typed
+     */
+    private void showCompletions(String text) {
+        if (completionAdapter == null) return;
+        // Frequent title words of allPosts, counted on the query engine's worker
+        List<String> completions = queryEngine.getTitleCompleter().complete(text, MAX_COMPLETIONS);
+        MatrixCursor cursor = new MatrixCursor(new String[]{BaseColumns._ID, COMPLETION_COLUMN});
+        for (int i = 0; i < completions.size(); i++) {
+            cursor.addRow(new Object[]{i, completions.get(i)});
+        }
+        // Closes the previous cursor
+        completionAdapter.changeCursor(cursor);
+    }
+
     private void setupFilters() {
         if (chipGroup != null) {
             chipGroup.check(R.id.chipAll);
@@ -373,6 +486,63 @@ public class MainActivity extends AppCompatActivity implements
         }
     }
 
+    /**
+     * Show per-facet totals on the filter chips. The counts come from the engine's facet
+     * bitmaps, so refreshing them costs nothing per post.
+     */
+    private void updateChipCounts(FacetCounts counts) {
+        if (chipGroup == null) return;
+        chipAllLabel.setCount(counts.getTotal());
+        chipLostLabel.setCount(counts.getLost());
+        chipFoundLabel.setCount(counts.getFound());
+    }
+
+    /**
+     * List saved search alerts (tap to remove) and offer to save the current search
+     */
+    private void showSearchAlerts() {
+        SavedSearchAlerts alerts = SavedSearchAlerts.getInstance(this);
+        List<SavedSearch> searches = alerts.getSearches();
+
+        String[] labels = new String[searches.size()];
+        for (int i = 0; i < labels.length; i++) {
+            SavedSearch search = searches.get(i);
+            String kind = search.getIsLost() == null ? "" : search.getIsLost() ? "🔴 " : "🟢 ";
+            labels[i] = kind + search.getText();
+        }
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(this)
+                .setTitle(R.string.search_alerts_title)
+                .setNegativeButton(R.string.cancel, null);
+        if (labels.length > 0) {
+            builder.setItems(labels, (dialog, which) -> {
+                alerts.remove(searches.get(which).getId());
+                Toast.makeText(this, R.string.search_alert_removed, Toast.LENGTH_SHORT).show();
+            });
+        } else if (currentQuery.isEmpty()) {
+            builder.setMessage(R.string.search_alerts_empty);
+        }
+        if (!currentQuery.isEmpty()) {
+            String query = currentQuery;
+            builder.setPositiveButton(getString(R.string.search_alerts_add, query), (dialog, which) -> saveSearchAlert(query));
+        }
+        builder.show();
+    }
+
+    private void saveSearchAlert(String query) {
+        // Someone searching while the feed shows everything most likely lost the item
+        Boolean watchFor = currentFilter != null ? currentFilter : Boolean.FALSE;
+        if (SavedSearchAlerts.getInstance(this).add(query, watchFor) == null) return;
+
+        Toast.makeText(this, getString(R.string.search_alert_saved, query), Toast.LENGTH_SHORT).show();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS)
+                != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.POST_NOTIFICATIONS},
+                    NOTIFICATION_PERMISSION_REQUEST);
+        }
+    }
+
     private void setupPagination() {
         if (recyclerView != null) {
             recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
@@ -412,8 +582,9 @@ public class MainActivity extends AppCompatActivity implements
         if (resetPagination) {
             currentPage = 0;
             hasMorePages = true;
-            allPosts.clear();
-            filteredPosts.clear();
+            localCorpusComplete = false;
+            allPosts = new ArrayList<>();
+            filteredPosts = new ArrayList<>();
             if (postAdapter != null) {
                 postAdapter.updatePosts(new ArrayList<>());
             }
@@ -450,18 +621,33 @@ public class MainActivity extends AppCompatActivity implements
                         List<Post> newPosts = response.body();
                         Log.d(TAG, "Posts loaded successfully: " + newPosts.size() + " posts");
 
-                        // Sort posts by date (newest first)
-                        sortPostsByDate(newPosts);
-
-                        if (resetPagination) {
-                            allPosts = newPosts;
-                        } else {
-                            allPosts.addAll(newPosts);
+                        List<Post> corpus = newPosts;
+                        if (!resetPagination) {
+                            corpus = new ArrayList<>(allPosts);
+                            corpus.addAll(newPosts);
                         }
 
-                        // Apply pagination
-                        applyPagination();
-
+                        // Sort posts by date (newest first) on the query engine's thread
+                        queryEngine.setCorpus(corpus, (sortedPosts, counts) -> {
+                            allPosts = sortedPosts;
+                            // Local search now sees everything the server has
+                            localCorpusComplete = true;
+                            serverMatches = new ArrayList<>();
+
+                            // Only posts that are new or changed since the last refresh are checked
+                            SavedSearchAlerts.getInstance(MainActivity.this)
+                                    .onFeedRefreshed(sortedPosts, prefsManager.getSession().getUserId());
+                            // Keeps lost/found match suggestions current for the detail screen
+                            MatchSuggester.getInstance().updateInBackground(sortedPosts);
+                            DuplicatePostDetector.getInstance(MainActivity.this).onFeedRefreshed(sortedPosts);
+                            ImageHasher.getInstance(MainActivity.this).onFeedRefreshed(sortedPosts);
+                            updateChipCounts(counts);
+
+                            // Apply pagination
+                            applyPagination();
+                        });
+
+                        // Runs after the corpus swap on the same worker
                         if (currentQuery.isEmpty()) {
                             applyFilters();
                         } else {
@@ -536,21 +722,6 @@ public class MainActivity extends AppCompatActivity implements
         isLoadingMore = false;
     }
 
-    private void sortPostsByDate(List<Post> posts) {
-        if (posts == null || posts.isEmpty()) return;
-
-        Collections.sort(posts, new Comparator<Post>() {
-            @Override
-            public int compare(Post p1, Post p2) {
-                // Sort by newest first (descending order)
-                if (p1.getCreatedAt() == null && p2.getCreatedAt() == null) return 0;
-                if (p1.getCreatedAt() == null) return 1;
-                if (p2.getCreatedAt() == null) return -1;
-                return p2.getCreatedAt().compareTo(p1.getCreatedAt());
-            }
-        });
-    }
-
     private void performSearch() {
         Log.d(TAG, "Performing search: '" + currentQuery + "', filter: " + currentFilter);
 
@@ -559,60 +730,113 @@ public class MainActivity extends AppCompatActivity implements
             return;
         }
 
-        List<Post> results = new ArrayList<>();
-        String query = currentQuery.toLowerCase();
-
-        // Apply pagination to search results
+        // Apply pagination to search results; a text search shows the best matches first
         int maxItems = (currentPage + 1) * POSTS_PER_PAGE;
+        submitQuery(new PostQuery(currentQuery, currentFilter, maxItems, PostQuery.Order.RELEVANCE));
 
-        for (Post post : allPosts) {
-            if (results.size() >= maxItems) break;
-
-            // Apply type filter first if set
-            if (currentFilter != null && !post.getIsLost().equals(currentFilter)) {
-                continue;
-            }
-
-            // Search in title, description, and contact
-            boolean matchFound = false;
-            if (post.getTitle() != null && post.getTitle().toLowerCase().contains(query)) {
-                matchFound = true;
-            }
-            if (!matchFound && post.getDescription() != null && post.getDescription().toLowerCase().contains(query)) {
-                matchFound = true;
-            }
-            if (!matchFound && post.getContact() != null && post.getContact().toLowerCase().contains(query)) {
-                matchFound = true;
-            }
-
-            if (matchFound) {
-                results.add(post);
-            }
+        // Local results show right away; the server fills in what isn't loaded yet, but it
+        // only understands plain text, not field-scoped queries like "title:phone lost"
+        if (localCorpusComplete || FieldQuery.parse(currentQuery).isStructured()) {
+            cancelServerSearch();
+        } else {
+            startServerSearch(currentQuery, currentFilter);
         }
-
-        Log.d(TAG, "Search found " + results.size() + " results");
-        updatePostsList(results);
     }
 
     private void applyFilters() {
         Log.d(TAG, "Applying filters. Filter: " + currentFilter + ", Total posts: " + allPosts.size());
+        cancelServerSearch();
 
-        List<Post> results = new ArrayList<>();
         int maxItems = (currentPage + 1) * POSTS_PER_PAGE;
+        submitQuery(new PostQuery("", currentFilter, maxItems));
+    }
+
+    private void submitQuery(PostQuery query) {
+        queryEngine.submit(query, result -> {
+            Log.d(TAG, "Query " + result.getQuery() + " matched " + result.getTotalMatches()
+                    + ", showing " + result.getPosts().size());
+            List<Post> posts = result.getPosts();
+            // Server matches that arrived before the local result stay below it
+            if (!serverMatches.isEmpty() && query.getText().equals(serverMatchesQuery)
+                    && Objects.equals(query.getIsLost(), serverMatchesFilter)) {
+                posts = new ArrayList<>(posts);
+                posts.addAll(PostSearcher.newServerMatches(posts, serverMatches, query.getIsLost()));
+            }
+            updatePostsList(posts, result.getMatchRanges());
+        });
+    }
+
+    /**
+     * Ask the server for matches, superseding any server search still in flight
+     */
+    private void startServerSearch(String query, Boolean filter) {
+        cancelServerSearch();
 
-        for (Post post : allPosts) {
-            if (results.size() >= maxItems) break;
+        Call<List<Post>> call = ApiClient.getApiService().searchPosts(prefsManager.getAuthHeader(), query, filter);
+        serverSearchCall = call;
+        call.enqueue(new Callback<List<Post>>() {
+            @Override
+            public void onResponse(Call<List<Post>> call, Response<List<Post>> response) {
+                if (call != serverSearchCall || call.isCanceled()) return;
+                serverSearchCall = null;
+
+                if (!response.isSuccessful() || response.body() == null) {
+                    Log.w(TAG, "Server search failed. Code: " + response.code());
+                    return;
+                }
+                serverMatches = response.body();
+                serverMatchesQuery = query;
+                serverMatchesFilter = filter;
+
+                List<Post> additions = PostSearcher.newServerMatches(filteredPosts, serverMatches, filter);
+                Log.d(TAG, "Server search '" + query + "' returned " + serverMatches.size()
+                        + ", " + additions.size() + " not shown yet");
+                appendPostsToList(additions);
+            }
 
-            if (currentFilter == null || post.getIsLost().equals(currentFilter)) {
-                results.add(post);
+            @Override
+            public void onFailure(Call<List<Post>> call, Throwable t) {
+                if (call.isCanceled()) return;
+                if (call == serverSearchCall) {
+                    serverSearchCall = null;
+                }
+                // Local results are already on screen, so this is not worth a toast
+                Log.w(TAG, "Server search failed", t);
             }
+        });
+    }
+
+    private void cancelServerSearch() {
+        if (serverSearchCall != null) {
+            serverSearchCall.cancel();
+            serverSearchCall = null;
         }
+    }
+
+    /**
+     * Add posts below the current list; nothing the user is looking at moves
+     */
+    private void appendPostsToList(List<Post> additions) {
+        if (additions.isEmpty()) return;
 
-        Log.d(TAG, "Filter applied. Showing " + results.size() + " / " + allPosts.size() + " posts");
-        updatePostsList(results);
+        filteredPosts = new ArrayList<>(filteredPosts);
+        filteredPosts.addAll(additions);
+        if (tvEmptyState != null) {
+            tvEmptyState.setVisibility(View.GONE);
+        }
+        if (postAdapter != null) {
+            postAdapter.appendPosts(additions);
+        }
     }
 
     private void updatePostsList(List<Post> posts) {
+        updatePostsList(posts, null);
+    }
+
+    /**
+     * @param matchRanges Where the search matched, by post id, for highlighting; null for none
+     */
+    private void updatePostsList(List<Post> posts, Map<Integer, MatchRanges> matchRanges) {
         Log.d(TAG, "=== Updating Posts List ===");
         Log.d(TAG, "Updating with " + (posts != null ? posts.size() : 0) + " posts");
 
@@ -630,7 +854,7 @@ public class MainActivity extends AppCompatActivity implements
         }
 
         if (postAdapter != null) {
-            postAdapter.updatePosts(filteredPosts);
+            postAdapter.updatePosts(filteredPosts, matchRanges);
             Log.d(TAG, "Adapter updated successfully");
 
             // Scroll to top only on refresh
@@ -652,6 +876,8 @@ public class MainActivity extends AppCompatActivity implements
                 startActivity(new Intent(this, ProfileActivity.class));
             } else if (id == R.id.nav_my_posts) {
                 startActivity(new Intent(this, MyPostsActivity.class));
+            } else if (id == R.id.nav_search_alerts) {
+                showSearchAlerts();
             } else if (id == R.id.nav_theme_light) {
                 changeTheme(SharedPreferencesManager.THEME_MODE_LIGHT);
             } else if (id == R.id.nav_theme_dark) {
@@ -750,6 +976,8 @@ public class MainActivity extends AppCompatActivity implements
     public void onPostClick(Post post) {
         Log.d(TAG, "Post clicked: " + (post != null ? post.getId() : "null"));
         try {
+            // PostAdapter has already registered the post with PostHandoff, so only the
+            // ID travels in the Intent; it is also what the detail screen restores from
             Intent intent = new Intent(this, PostDetailActivity.class);
             intent.putExtra("post_id", post.getId());
             startActivity(intent);
@@ -772,6 +1000,8 @@ public class MainActivity extends AppCompatActivity implements
     @Override
     protected void onResume() {
         super.onResume();
+        // Not set up yet: onSettingsLoaded does that, and loads the posts, when it runs
+        if (queryEngine == null) return;
         Log.d(TAG, "Activity resumed, updating UI");
 
         // Update navigation menu state in case preferences changed
@@ -783,7 +1013,7 @@ public class MainActivity extends AppCompatActivity implements
 
     @Override
     public void onBackPressed() {
-        if (drawerLayout.isDrawerOpen(GravityCompat.START)) {
+        if (drawerLayout != null && drawerLayout.isDrawerOpen(GravityCompat.START)) {
             drawerLayout.closeDrawer(GravityCompat.START);
         } else {
             super.onBackPressed();
@@ -802,6 +1032,11 @@ public class MainActivity extends AppCompatActivity implements
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        searchHandler.removeCallbacks(debouncedSearch);
+        cancelServerSearch();
+        if (queryEngine != null) {
+            queryEngine.shutdown();
+        }
         Log.d(TAG, "Activity destroyed");
     }
 }
\ No newline at end of file
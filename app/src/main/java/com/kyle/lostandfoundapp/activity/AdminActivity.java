@@ -7,6 +7,7 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
@@ -16,6 +17,8 @@ import com.kyle.lostandfoundapp.R;
 import com.kyle.lostandfoundapp.adapter.AdminPostAdapter;
 import com.kyle.lostandfoundapp.model.Post;
 import com.kyle.lostandfoundapp.network.ApiClient;
+import com.kyle.lostandfoundapp.search.FacetCounts;
+import com.kyle.lostandfoundapp.utils.ChipCountLabel;
 import com.kyle.lostandfoundapp.utils.SharedPreferencesManager;
 
 import java.util.List;
@@ -33,6 +36,8 @@ public class AdminActivity extends AppCompatActivity implements AdminPostAdapter
     private TextView tvEmpty;
     private TextView tvTotalPosts; // Total Posts TextView
     private ChipGroup chipGroup;
+    private SearchView searchView;
+    private ChipCountLabel chipAllLabel, chipLostLabel, chipFoundLabel, chipReportedLabel;
 
     private SharedPreferencesManager prefsManager;
 
@@ -54,6 +59,7 @@ public class AdminActivity extends AppCompatActivity implements AdminPostAdapter
         setupRecyclerView();
         setupSwipeRefresh();
         setupChipGroup();
+        setupSearch();
         loadAllPosts();
 
         if (getSupportActionBar() != null) {
@@ -67,6 +73,11 @@ public class AdminActivity extends AppCompatActivity implements AdminPostAdapter
         swipeRefresh = findViewById(R.id.swipeRefresh);
         tvEmpty = findViewById(R.id.tvEmpty);
         chipGroup = findViewById(R.id.chipGroup);
+        searchView = findViewById(R.id.searchView);
+        chipAllLabel = new ChipCountLabel(findViewById(R.id.chipAll));
+        chipLostLabel = new ChipCountLabel(findViewById(R.id.chipLost));
+        chipFoundLabel = new ChipCountLabel(findViewById(R.id.chipFound));
+        chipReportedLabel = new ChipCountLabel(findViewById(R.id.chipReported));
         tvTotalPosts = findViewById(R.id.tvTotalPosts); // link XML TextView
     }
 
@@ -94,6 +105,31 @@ public class AdminActivity extends AppCompatActivity implements AdminPostAdapter
         });
     }
 
+    private void setupSearch() {
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                postAdapter.searchPosts(query);
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                // The admin list is already in memory; filtering it per keystroke is cheap
+                postAdapter.searchPosts(newText);
+                return true;
+            }
+        });
+    }
+
+    private void updateChipCounts(FacetCounts counts) {
+        chipAllLabel.setCount(counts.getTotal());
+        chipLostLabel.setCount(counts.getLost());
+        chipFoundLabel.setCount(counts.getFound());
+        chipReportedLabel.setCount(counts.getReported());
+    }
+
     private void loadAllPosts() {
         swipeRefresh.setRefreshing(true);
 
@@ -109,13 +145,16 @@ public class AdminActivity extends AppCompatActivity implements AdminPostAdapter
                     // Update total posts count
                     tvTotalPosts.setText(String.valueOf(posts.size()));
 
+                    // Always hand the list over so the facet counts follow deletions too
+                    postAdapter.updatePosts(posts);
+                    updateChipCounts(postAdapter.getFacetCounts());
+
                     if (posts.isEmpty()) {
                         tvEmpty.setVisibility(TextView.VISIBLE);
                         recyclerView.setVisibility(RecyclerView.GONE);
                     } else {
                         tvEmpty.setVisibility(TextView.GONE);
                         recyclerView.setVisibility(RecyclerView.VISIBLE);
-                        postAdapter.updatePosts(posts);
 
                         // Apply current filter again after refresh
                         int checkedId = chipGroup.getCheckedChipId();
@@ -5,6 +5,7 @@ import android.app.Activity;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
+import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -20,6 +21,8 @@ import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.cardview.widget.CardView;
@@ -28,17 +31,26 @@ import androidx.core.content.ContextCompat;
 import androidx.core.content.FileProvider;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
 import com.google.android.material.button.MaterialButton;
 import com.kyle.lostandfoundapp.R;
 import com.kyle.lostandfoundapp.model.Post;
 import com.kyle.lostandfoundapp.network.ApiClient;
 import com.kyle.lostandfoundapp.network.ApiService;
+import com.kyle.lostandfoundapp.search.DuplicateIndex;
+import com.kyle.lostandfoundapp.utils.DuplicatePostDetector;
+import com.kyle.lostandfoundapp.utils.ImageHasher;
+import com.kyle.lostandfoundapp.utils.ImageStorageManager;
 import com.kyle.lostandfoundapp.utils.SharedPreferencesManager;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
@@ -62,9 +74,16 @@ public class CreatePostActivity extends AppCompatActivity {
     private Toolbar toolbar;
 
     private SharedPreferencesManager prefsManager;
+    private ImageStorageManager storageManager;
     private Uri selectedImageUri;
     private Uri cameraImageUri;
 
+    // Files we wrote ourselves; deleted once the server confirms the upload
+    private File cameraPhotoFile;
+    private File uploadFile;
+    // Perceptual hash of the preview, recorded against the post once it is created
+    private volatile Long uploadImageHash;
+
     private ActivityResultLauncher<Intent> galleryLauncher;
     private ActivityResultLauncher<Intent> cameraLauncher;
 
@@ -76,6 +95,7 @@ public class CreatePostActivity extends AppCompatActivity {
         Log.d(TAG, "CreatePostActivity started");
 
         prefsManager = SharedPreferencesManager.getInstance(this);
+        storageManager = ImageStorageManager.getInstance(this);
 
         initViews();
         setupToolbar();
@@ -229,6 +249,11 @@ public class CreatePostActivity extends AppCompatActivity {
     private void removeImage() {
         Log.d(TAG, "Removing selected image");
         selectedImageUri = null;
+        uploadImageHash = null;
+        if (cameraPhotoFile != null) {
+            storageManager.release(cameraPhotoFile);
+            cameraPhotoFile = null;
+        }
         if (cvImagePreview != null) {
             cvImagePreview.setVisibility(View.GONE);
         }
@@ -255,6 +280,7 @@ public class CreatePostActivity extends AppCompatActivity {
                 result -> {
                     Log.d(TAG, "Camera result: " + result.getResultCode());
                     if (result.getResultCode() == Activity.RESULT_OK) {
+                        storageManager.register(cameraPhotoFile);
                         selectedImageUri = cameraImageUri;
                         Log.d(TAG, "Photo taken: " + selectedImageUri);
                         displaySelectedImage();
@@ -291,7 +317,12 @@ public class CreatePostActivity extends AppCompatActivity {
         Intent intent = new Intent(MediaStore.ACTION_IMAGE_CAPTURE);
         if (intent.resolveActivity(getPackageManager()) != null) {
             try {
-                File photoFile = new File(getExternalFilesDir(null), "photo_" + System.currentTimeMillis() + ".jpg");
+                // Drop a previous capture that was replaced before being uploaded
+                if (cameraPhotoFile != null) {
+                    storageManager.release(cameraPhotoFile);
+                }
+                File photoFile = storageManager.newCaptureFile();
+                cameraPhotoFile = photoFile;
                 cameraImageUri = FileProvider.getUriForFile(this, getPackageName() + ".provider", photoFile);
                 intent.putExtra(MediaStore.EXTRA_OUTPUT, cameraImageUri);
 
@@ -315,11 +346,32 @@ public class CreatePostActivity extends AppCompatActivity {
                 cvImagePreview.setVisibility(View.VISIBLE);
             }
             ivImage.setVisibility(View.VISIBLE);
+            uploadImageHash = null;
+            Uri previewUri = selectedImageUri;
             Glide.with(this)
                     .load(selectedImageUri)
                     .centerCrop()
+                    // The preview is hashed; see ImageHasher.hash
+                    .disallowHardwareConfig()
                     .placeholder(R.drawable.placeholder_image)
                     .error(R.drawable.placeholder_image)
+                    .listener(new RequestListener<Drawable>() {
+                        @Override
+                        public boolean onLoadFailed(@Nullable GlideException e, Object model, Target<Drawable> target, boolean isFirstResource) {
+                            return false;
+                        }
+
+                        @Override
+                        public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target, DataSource dataSource, boolean isFirstResource) {
+                            // The preview is already decoded; hash it rather than the upload file
+                            ImageHasher.getInstance(CreatePostActivity.this).hash(resource, hash -> {
+                                if (previewUri.equals(selectedImageUri)) {
+                                    uploadImageHash = hash;
+                                }
+                            });
+                            return false;
+                        }
+                    })
                     .into(ivImage);
         }
     }
@@ -364,6 +416,38 @@ public class CreatePostActivity extends AppCompatActivity {
             isLost = rbLost.isChecked();
         }
 
+        // Reposts of the same item clutter the feed; let the user point to the existing one
+        List<DuplicateIndex.Duplicate> duplicates = DuplicatePostDetector.getInstance(this)
+                .findDuplicates(title, description, isLost);
+        if (!duplicates.isEmpty()) {
+            showDuplicateWarning(duplicates.get(0), title, description, isLost, contact);
+            return;
+        }
+
+        submitValidatedPost(title, description, isLost, contact);
+    }
+
+    private void showDuplicateWarning(DuplicateIndex.Duplicate duplicate, String title, String description,
+                                      boolean isLost, String contact) {
+        Log.d(TAG, "Possible duplicate of post " + duplicate.getPostId()
+                + ", similarity: " + duplicate.getSimilarity());
+
+        new AlertDialog.Builder(this)
+                .setTitle("Similar post exists")
+                .setMessage("This looks like the existing post \"" + duplicate.getTitle()
+                        + "\". Post it anyway?")
+                .setPositiveButton("Post Anyway", (dialog, which) ->
+                        submitValidatedPost(title, description, isLost, contact))
+                .setNeutralButton("View Post", (dialog, which) -> {
+                    Intent intent = new Intent(this, PostDetailActivity.class);
+                    intent.putExtra("post_id", duplicate.getPostId());
+                    startActivity(intent);
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void submitValidatedPost(String title, String description, boolean isLost, String contact) {
         Log.d(TAG, "Submitting post - Title: " + title + ", IsLost: " + isLost +
                 ", HasImage: " + (selectedImageUri != null));
         Log.d(TAG, "Auth Header: " + prefsManager.getAuthHeader());
@@ -395,6 +479,15 @@ public class CreatePostActivity extends AppCompatActivity {
 
             Log.d(TAG, "Image file created: " + file.getAbsolutePath() + ", Size: " + file.length() + " bytes");
 
+            // Keep it on disk until the server has it
+            if (uploadFile != null && !uploadFile.equals(file)) {
+                storageManager.release(uploadFile);
+            }
+            uploadFile = file;
+            storageManager.pin(file);
+            storageManager.pin(cameraPhotoFile);
+            storageManager.register(file);
+
             // Create RequestBody instances
             RequestBody titleBody = RequestBody.create(MediaType.parse("text/plain"), title);
             RequestBody descBody = RequestBody.create(MediaType.parse("text/plain"), description);
@@ -453,6 +546,16 @@ public class CreatePostActivity extends AppCompatActivity {
             if (response.isSuccessful() && response.body() != null) {
                 Post createdPost = response.body();
                 Log.d(TAG, "Post created successfully with ID: " + createdPost.getId());
+                DuplicatePostDetector.getInstance(CreatePostActivity.this).onPostCreated(createdPost);
+                if (uploadImageHash != null) {
+                    ImageHasher.getInstance(CreatePostActivity.this).recordPostImage(createdPost, uploadImageHash);
+                }
+
+                // Upload confirmed, the local copies are no longer needed
+                storageManager.release(uploadFile);
+                storageManager.release(cameraPhotoFile);
+                uploadFile = null;
+                cameraPhotoFile = null;
                 Toast.makeText(CreatePostActivity.this, "Post created successfully!", Toast.LENGTH_SHORT).show();
 
                 // Set result and finish
@@ -483,6 +586,7 @@ public class CreatePostActivity extends AppCompatActivity {
 
                 Log.e(TAG, errorMsg);
                 Toast.makeText(CreatePostActivity.this, errorMsg, Toast.LENGTH_LONG).show();
+                unpinUploadFiles();
             }
         }
 
@@ -505,9 +609,18 @@ public class CreatePostActivity extends AppCompatActivity {
                 errorMsg = "Unknown network error occurred";
             }
             Toast.makeText(CreatePostActivity.this, errorMsg, Toast.LENGTH_LONG).show();
+            unpinUploadFiles();
         }
     };
 
+    /**
+     * Leave the files for a retry, but let eviction reclaim them if the user gives up
+     */
+    private void unpinUploadFiles() {
+        storageManager.unpin(uploadFile);
+        storageManager.unpin(cameraPhotoFile);
+    }
+
     private File createFileFromUri(Uri uri) {
         try {
             Log.d(TAG, "Creating file from URI: " + uri);
@@ -530,7 +643,7 @@ public class CreatePostActivity extends AppCompatActivity {
                 fileName += ".jpg";
             }
 
-            File file = new File(getCacheDir(), fileName);
+            File file = storageManager.newUploadFile(fileName);
             FileOutputStream outputStream = new FileOutputStream(file);
 
             byte[] buffer = new byte[8192]; // Larger buffer for better performance
@@ -19,6 +19,9 @@ import com.kyle.lostandfoundapp.R;
 import com.kyle.lostandfoundapp.adapter.PostAdapter;
 import com.kyle.lostandfoundapp.model.Post;
 import com.kyle.lostandfoundapp.network.ApiClient;
+import com.kyle.lostandfoundapp.search.FacetCounts;
+import com.kyle.lostandfoundapp.search.FacetIndex;
+import com.kyle.lostandfoundapp.utils.ChipCountLabel;
 import com.kyle.lostandfoundapp.utils.SharedPreferencesManager;
 
 import java.util.ArrayList;
@@ -38,11 +41,13 @@ public class MyPostsActivity extends AppCompatActivity implements PostAdapter.On
 
     private ChipGroup chipGroup;
     private Chip chipAll, chipMyLost, chipMyFound;
+    private ChipCountLabel chipAllLabel, chipMyLostLabel, chipMyFoundLabel;
 
     private ExtendedFloatingActionButton fabAdd;
 
     private SharedPreferencesManager prefsManager;
     private List<Post> allPosts = new ArrayList<>();
+    private final FacetIndex facets = new FacetIndex();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -76,6 +81,9 @@ public class MyPostsActivity extends AppCompatActivity implements PostAdapter.On
         chipAll = findViewById(R.id.chipAll);
         chipMyLost = findViewById(R.id.chipMyLost);
         chipMyFound = findViewById(R.id.chipMyFound);
+        chipAllLabel = new ChipCountLabel(chipAll);
+        chipMyLostLabel = new ChipCountLabel(chipMyLost);
+        chipMyFoundLabel = new ChipCountLabel(chipMyFound);
 
         fabAdd = findViewById(R.id.fabAdd);
         fabAdd.setOnClickListener(v -> {
@@ -114,14 +122,15 @@ public class MyPostsActivity extends AppCompatActivity implements PostAdapter.On
 
                 if (response.isSuccessful() && response.body() != null) {
                     allPosts = response.body();
+                    facets.setPosts(allPosts);
 
-                    int lostCount = 0, foundCount = 0;
-                    for (Post post : allPosts) {
-                        if (post.getIsLost() != null && post.getIsLost()) lostCount++;
-                        else foundCount++;
-                    }
-                    tvMyLostCount.setText(String.valueOf(lostCount));
-                    tvMyFoundCount.setText(String.valueOf(foundCount));
+                    // Read off the facet bitmaps instead of counting the list again
+                    FacetCounts counts = facets.getCounts();
+                    tvMyLostCount.setText(String.valueOf(counts.getLost()));
+                    tvMyFoundCount.setText(String.valueOf(counts.getFound()));
+                    chipAllLabel.setCount(counts.getTotal());
+                    chipMyLostLabel.setCount(counts.getLost());
+                    chipMyFoundLabel.setCount(counts.getFound());
 
                     filterPosts(chipGroup.getCheckedChipId());
                 } else {
@@ -145,13 +154,9 @@ public class MyPostsActivity extends AppCompatActivity implements PostAdapter.On
         if (checkedId == R.id.chipAll) {
             filtered.addAll(allPosts);
         } else if (checkedId == R.id.chipMyLost) {
-            for (Post lostPost : allPosts) {
-                if (lostPost.getIsLost() != null && lostPost.getIsLost()) filtered.add(lostPost);
-            }
+            filtered.addAll(facets.select(facets.lost()));
         } else if (checkedId == R.id.chipMyFound) {
-            for (Post foundPost : allPosts) {
-                if (foundPost.getIsLost() != null && !foundPost.getIsLost()) filtered.add(foundPost);
-            }
+            filtered.addAll(facets.select(facets.found()));
         }
 
         if (filtered.isEmpty()) showEmptyState();
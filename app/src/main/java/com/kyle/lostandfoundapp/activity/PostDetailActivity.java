@@ -1,6 +1,7 @@
 package com.kyle.lostandfoundapp.activity;
 
 import android.content.Intent;
+import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Bundle;
 import android.util.Log;
@@ -8,27 +9,40 @@ import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.ImageView;
+import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
+import androidx.cardview.widget.CardView;
 
 import com.bumptech.glide.load.model.GlideUrl;
 import com.bumptech.glide.load.model.LazyHeaders;
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
 import com.google.android.material.button.MaterialButton;
 import com.kyle.lostandfoundapp.R;
 import com.kyle.lostandfoundapp.model.Post;
 import com.kyle.lostandfoundapp.network.ApiClient;
+import com.kyle.lostandfoundapp.search.MatchSuggester;
+import com.kyle.lostandfoundapp.utils.ImageHasher;
+import com.kyle.lostandfoundapp.utils.PostHandoff;
 import com.kyle.lostandfoundapp.utils.SharedPreferencesManager;
 
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import okhttp3.ResponseBody;
 import retrofit2.Call;
@@ -38,15 +52,24 @@ import retrofit2.Response;
 public class PostDetailActivity extends AppCompatActivity {
 
     private static final String TAG = "PostDetailActivity";
+    private static final int MAX_MATCH_SUGGESTIONS = 3;
+    private static final int MAX_SIMILAR_IMAGES = 3;
 
     private ImageView ivHeroImage, ivType;
     private TextView tvTitle, tvDescription, tvDate, tvContact, tvType;
     private MaterialButton btnCall, btnMessage;
+    private CardView cvMatches, cvSimilarImages;
+    private LinearLayout layoutMatches, layoutSimilarImages;
     private Toolbar toolbar;
 
     private SharedPreferencesManager prefsManager;
     private Post currentPost;
     private int postId;
+    // Every post of the last fetch, to resolve similar-image ids
+    private final Map<Integer, Post> loadedPosts = new HashMap<>();
+
+    // Size the list row decoded its thumbnail at (0 when there was no handoff)
+    private int thumbWidth, thumbHeight;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -68,6 +91,19 @@ public class PostDetailActivity extends AppCompatActivity {
 
         initViews();
         setupToolbar();
+
+        // Render immediately from the list's copy when we have one, then revalidate
+        PostHandoff.Entry handoff = PostHandoff.take(postId);
+        if (handoff != null) {
+            Log.d(TAG, "Using handed-off post for first frame");
+            currentPost = handoff.getPost();
+            if (handoff.hasThumbnail()) {
+                thumbWidth = handoff.getThumbWidth();
+                thumbHeight = handoff.getThumbHeight();
+            }
+            displayPostDetails();
+        }
+
         loadPostDetails();
     }
 
@@ -84,6 +120,10 @@ public class PostDetailActivity extends AppCompatActivity {
         tvType = findViewById(R.id.tvType);
         btnCall = findViewById(R.id.btnCall);
         btnMessage = findViewById(R.id.btnMessage);
+        cvMatches = findViewById(R.id.cvMatches);
+        layoutMatches = findViewById(R.id.layoutMatches);
+        cvSimilarImages = findViewById(R.id.cvSimilarImages);
+        layoutSimilarImages = findViewById(R.id.layoutSimilarImages);
 
         // Set click listeners
         if (btnCall != null) {
@@ -128,6 +168,14 @@ public class PostDetailActivity extends AppCompatActivity {
                 if (response.isSuccessful() && response.body() != null) {
                     List<Post> posts = response.body();
                     Log.d(TAG, "Searching through " + posts.size() + " posts for ID: " + postId);
+                    // Only re-indexes posts that changed since the feed last updated it
+                    MatchSuggester.getInstance().updateInBackground(posts);
+                    loadedPosts.clear();
+                    for (Post post : posts) {
+                        if (post != null && post.getId() != null) {
+                            loadedPosts.put(post.getId(), post);
+                        }
+                    }
 
                     for (Post post : posts) {
                         if (post != null && post.getId() != null && post.getId() == postId) {
@@ -143,6 +191,10 @@ public class PostDetailActivity extends AppCompatActivity {
                     finish();
                 } else {
                     Log.e(TAG, "Failed to load posts. Code: " + response.code());
+                    if (currentPost != null) {
+                        // Keep showing the handed-off copy
+                        return;
+                    }
                     Toast.makeText(PostDetailActivity.this, "Failed to load post details", Toast.LENGTH_SHORT).show();
                     finish();
                 }
@@ -151,6 +203,10 @@ public class PostDetailActivity extends AppCompatActivity {
             @Override
             public void onFailure(Call<List<Post>> call, Throwable t) {
                 Log.e(TAG, "Network error loading post details", t);
+                if (currentPost != null) {
+                    // Keep showing the handed-off copy
+                    return;
+                }
                 Toast.makeText(PostDetailActivity.this, "Network error: " + t.getMessage(), Toast.LENGTH_SHORT).show();
                 finish();
             }
@@ -184,7 +240,7 @@ public class PostDetailActivity extends AppCompatActivity {
 
         // Date
         if (tvDate != null) {
-            String formattedDate = formatDate(currentPost.getCreatedAt());
+            String formattedDate = formatDate(currentPost);
             tvDate.setText(formattedDate != null ? formattedDate : "Date unknown");
         }
 
@@ -221,11 +277,48 @@ public class PostDetailActivity extends AppCompatActivity {
                             .addHeader("Authorization", prefsManager.getAuthHeader())
                             .build());
 
-                    Glide.with(this)
+                    RequestBuilder<Drawable> request = Glide.with(this)
                             .load(glideUrl)
                             .placeholder(R.drawable.placeholder_image)
-                            .error(R.drawable.placeholder_image)
-                            .into(ivHeroImage);
+                            .error(R.drawable.placeholder_image);
+
+                    if (thumbWidth > 0 && thumbHeight > 0) {
+                        // Same model, size and options as the list row, so this resolves
+                        // from Glide's memory cache while the full image loads
+                        request = request.thumbnail(Glide.with(this)
+                                .load(glideUrl)
+                                .override(thumbWidth, thumbHeight)
+                                .centerCrop()
+                                .disallowHardwareConfig());
+                    }
+                    request.into(ivHeroImage);
+
+                    Post shownPost = currentPost;
+                    if (ImageHasher.getInstance(this).needsHash(shownPost)) {
+                        // Opened without the feed hashing it: hash a small software decode
+                        // rather than reading back the full-size hero
+                        int hashWidth = thumbWidth > 0 ? thumbWidth : ImageHasher.DECODE_SIZE;
+                        int hashHeight = thumbHeight > 0 ? thumbHeight : ImageHasher.DECODE_SIZE;
+                        Glide.with(this)
+                                .load(glideUrl)
+                                .override(hashWidth, hashHeight)
+                                .centerCrop()
+                                .disallowHardwareConfig()
+                                .listener(new RequestListener<Drawable>() {
+                                    @Override
+                                    public boolean onLoadFailed(@Nullable GlideException e, Object model, Target<Drawable> target, boolean isFirstResource) {
+                                        return false;
+                                    }
+
+                                    @Override
+                                    public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target, DataSource dataSource, boolean isFirstResource) {
+                                        ImageHasher.getInstance(PostDetailActivity.this)
+                                                .hashPostImage(shownPost, resource, PostDetailActivity.this::displaySimilarImages);
+                                        return false;
+                                    }
+                                })
+                                .preload();
+                    }
                 } else {
                     ivHeroImage.setImageResource(R.drawable.placeholder_image);
                 }
@@ -235,27 +328,76 @@ public class PostDetailActivity extends AppCompatActivity {
             }
         }
 
+        displayMatchSuggestions();
+        displaySimilarImages();
+
         // Invalidate menu to update edit/delete button visibility
         invalidateOptionsMenu();
         Log.d(TAG, "Post details displayed successfully");
     }
 
-    private String formatDate(String dateString) {
-        if (dateString == null || dateString.isEmpty()) {
-            return null;
-        }
+    private void displayMatchSuggestions() {
+        if (cvMatches == null || layoutMatches == null) return;
+
+        // Scored on the suggester's thread, after the update of the fetch that led here
+        Post post = currentPost;
+        long start = System.nanoTime();
+        MatchSuggester.getInstance().suggestInBackground(post, MAX_MATCH_SUGGESTIONS, this::runOnUiThread, matches -> {
+            // A newer fetch may have replaced the post meanwhile
+            if (post != currentPost || isFinishing() || isDestroyed()) return;
+            Log.d(TAG, matches.size() + " match suggestions after " + (System.nanoTime() - start) / 1000 + " us");
+            displayPostLinks(cvMatches, layoutMatches, matches);
+        });
+    }
+
+    private void displaySimilarImages() {
+        if (cvSimilarImages == null || layoutSimilarImages == null || isFinishing()) return;
 
-        try {
-            SimpleDateFormat inputFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.getDefault());
-            Date date = inputFormat.parse(dateString);
-            if (date != null) {
-                SimpleDateFormat outputFormat = new SimpleDateFormat("MMMM dd, yyyy 'at' HH:mm", Locale.getDefault());
-                return "Posted on " + outputFormat.format(date);
+        // Ask for a few extra in case some aren't in the fetched list
+        List<Post> similar = new ArrayList<>();
+        for (Integer id : ImageHasher.getInstance(this).findSimilar(postId, MAX_SIMILAR_IMAGES * 2)) {
+            Post post = loadedPosts.get(id);
+            if (post != null && similar.size() < MAX_SIMILAR_IMAGES) {
+                similar.add(post);
             }
-        } catch (ParseException e) {
-            Log.w(TAG, "Error parsing date: " + dateString, e);
+        }
+        displayPostLinks(cvSimilarImages, layoutSimilarImages, similar);
+    }
+
+    /**
+     * Fill a card with one tappable title per post, hiding it when there are none
+     */
+    private void displayPostLinks(CardView card, LinearLayout container, List<Post> posts) {
+        container.removeAllViews();
+        if (posts.isEmpty()) {
+            card.setVisibility(View.GONE);
+            return;
+        }
+
+        for (Post post : posts) {
+            TextView row = (TextView) getLayoutInflater().inflate(R.layout.item_post_link, container, false);
+            row.setText(post.getTitle() != null ? post.getTitle() : "No Title");
+            row.setOnClickListener(v -> {
+                Intent intent = new Intent(this, PostDetailActivity.class);
+                intent.putExtra("post_id", post.getId());
+                startActivity(intent);
+            });
+            container.addView(row);
+        }
+        card.setVisibility(View.VISIBLE);
+    }
+
+    private String formatDate(Post post) {
+        if (post.hasCreatedAt()) {
+            SimpleDateFormat outputFormat = new SimpleDateFormat("MMMM dd, yyyy 'at' HH:mm", Locale.getDefault());
+            return "Posted on " + outputFormat.format(new Date(post.getCreatedAtMillis()));
         }
 
+        String dateString = post.getCreatedAt();
+        if (dateString == null || dateString.isEmpty()) {
+            return null;
+        }
+        Log.w(TAG, "Unrecognized date: " + dateString);
         return "Posted on " + dateString;
     }
 
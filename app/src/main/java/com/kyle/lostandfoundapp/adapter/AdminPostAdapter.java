@@ -15,8 +15,12 @@ import com.google.android.material.button.MaterialButton;
 import com.kyle.lostandfoundapp.R;
 import com.kyle.lostandfoundapp.model.Post;
 import com.kyle.lostandfoundapp.network.ApiClient;
+import com.kyle.lostandfoundapp.search.FacetCounts;
+import com.kyle.lostandfoundapp.search.FacetIndex;
+import com.kyle.lostandfoundapp.search.FieldQuery;
+import com.kyle.lostandfoundapp.search.QueryPipeline;
+import com.kyle.lostandfoundapp.search.RoaringBitmap;
 
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
@@ -27,10 +31,15 @@ public class AdminPostAdapter extends RecyclerView.Adapter<AdminPostAdapter.Admi
 
     private final Context context;
     private final OnAdminPostActionListener listener;
+    // Only used while binding on the main thread
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy HH:mm", Locale.getDefault());
 
     // Keep both lists: one for all data, one for filtered
     private final List<Post> allPosts = new ArrayList<>();
     private final List<Post> filteredPosts = new ArrayList<>();
+    private final FacetIndex facets = new FacetIndex();
+    private String currentType = "all";
+    private String currentQuery = "";
 
     public interface OnAdminPostActionListener {
         void onPostClick(Post post);
@@ -46,37 +55,53 @@ public class AdminPostAdapter extends RecyclerView.Adapter<AdminPostAdapter.Admi
     public void updatePosts(List<Post> newPosts) {
         allPosts.clear();
         allPosts.addAll(newPosts);
+        facets.setPosts(allPosts);
 
-        filteredPosts.clear();
-        filteredPosts.addAll(newPosts);
+        // Keep the chip and search box selection across refreshes
+        applyFilter();
+    }
 
-        notifyDataSetChanged();
+    /**
+     * Counts for the admin filter chips, kept current by updatePosts
+     */
+    public FacetCounts getFacetCounts() {
+        return facets.getCounts();
     }
 
     // Apply filtering
     public void filterPosts(String type) {
+        currentType = type;
+        applyFilter();
+    }
+
+    /**
+     * Search within the selected chip; supports field-scoped queries such as
+     * "title:phone status:reported" (see FieldQuery)
+     */
+    public void searchPosts(String query) {
+        currentQuery = query != null ? query.trim() : "";
+        applyFilter();
+    }
+
+    private void applyFilter() {
         filteredPosts.clear();
 
-        if (type.equalsIgnoreCase("all")) {
+        RoaringBitmap chip = null;
+        if (currentType.equalsIgnoreCase("lost")) {
+            chip = facets.lost();
+        } else if (currentType.equalsIgnoreCase("found")) {
+            chip = facets.found();
+        } else if (currentType.equalsIgnoreCase("reported")) {
+            chip = facets.status("reported");
+        }
+
+        if (!currentQuery.isEmpty()) {
+            // Same pipeline as the feed: facet bitmaps first, text checks on what is left
+            filteredPosts.addAll(QueryPipeline.compile(FieldQuery.parse(currentQuery), facets).run(chip));
+        } else if (chip != null) {
+            filteredPosts.addAll(facets.select(chip));
+        } else {
             filteredPosts.addAll(allPosts);
-        } else if (type.equalsIgnoreCase("lost")) {
-            for (Post post : allPosts) {
-                if (post.getIsLost() != null && post.getIsLost()) {
-                    filteredPosts.add(post);
-                }
-            }
-        } else if (type.equalsIgnoreCase("found")) {
-            for (Post post : allPosts) {
-                if (post.getIsLost() != null && !post.getIsLost()) {
-                    filteredPosts.add(post);
-                }
-            }
-        } else if (type.equalsIgnoreCase("reported")) {
-            for (Post post : allPosts) {
-                if ("reported".equalsIgnoreCase(post.getStatus())) {
-                    filteredPosts.add(post);
-                }
-            }
         }
 
         notifyDataSetChanged();
@@ -145,8 +170,10 @@ public class AdminPostAdapter extends RecyclerView.Adapter<AdminPostAdapter.Admi
             }
 
             // Format date
-            if (post.getCreatedAt() != null) {
-                tvDate.setText(formatDate(post.getCreatedAt()));
+            if (post.hasCreatedAt()) {
+                tvDate.setText(dateFormat.format(new Date(post.getCreatedAtMillis())));
+            } else if (post.getCreatedAt() != null) {
+                tvDate.setText(post.getCreatedAt());
             }
 
             // Load image
@@ -163,16 +190,5 @@ public class AdminPostAdapter extends RecyclerView.Adapter<AdminPostAdapter.Admi
                 ivImage.setVisibility(View.GONE);
             }
         }
-
-        private String formatDate(String dateString) {
-            try {
-                SimpleDateFormat inputFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.getDefault());
-                Date date = inputFormat.parse(dateString);
-                SimpleDateFormat outputFormat = new SimpleDateFormat("MMM dd, yyyy HH:mm", Locale.getDefault());
-                return outputFormat.format(date);
-            } catch (ParseException e) {
-                return dateString;
-            }
-        }
     }
 }
@@ -1,6 +1,10 @@
 package com.kyle.lostandfoundapp.adapter;
 
 import android.content.Context;
+import android.text.Spannable;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.BackgroundColorSpan;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -11,6 +15,7 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
 import androidx.core.content.ContextCompat;
+import androidx.core.graphics.ColorUtils;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.load.DataSource;
@@ -21,41 +26,82 @@ import android.graphics.drawable.Drawable;
 import androidx.annotation.Nullable;
 import com.bumptech.glide.load.model.GlideUrl;
 import com.bumptech.glide.load.model.LazyHeaders;
+import com.kyle.lostandfoundapp.utils.ImageHasher;
+import com.kyle.lostandfoundapp.utils.PostHandoff;
+import com.kyle.lostandfoundapp.utils.RelativeTimeFormatter;
 import com.kyle.lostandfoundapp.utils.SharedPreferencesManager;
 
 import com.bumptech.glide.Glide;
 import com.kyle.lostandfoundapp.R;
 import com.kyle.lostandfoundapp.model.Post;
 import com.kyle.lostandfoundapp.network.ApiClient;
+import com.kyle.lostandfoundapp.search.MatchRanges;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 
 public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder> {
 
     private static final String TAG = "PostAdapter";
 
+    // Lets TextView show a row's reused buffer as is instead of copying it into a new Spannable
+    private static final Spannable.Factory NO_COPY_FACTORY = new Spannable.Factory() {
+        @Override
+        public Spannable newSpannable(CharSequence source) {
+            return source instanceof Spannable ? (Spannable) source : super.newSpannable(source);
+        }
+    };
+
     public interface OnPostClickListener {
         void onPostClick(Post post);
     }
 
     private final Context context;
     private final List<Post> posts = new ArrayList<>();
+    // Search match offsets by post id, from the query result shown
+    private Map<Integer, MatchRanges> matchRanges = Collections.emptyMap();
+    private final int highlightColor;
     private final OnPostClickListener listener;
+    private final SharedPreferencesManager prefsManager;
+    private final RelativeTimeFormatter timeFormatter = RelativeTimeFormatter.getInstance();
+    private final Runnable minuteTick = this::refreshVisibleDates;
+    // Tick only while the list is in a window, so a destroyed screen is never kept alive
+    private final View.OnAttachStateChangeListener windowListener = new View.OnAttachStateChangeListener() {
+        @Override
+        public void onViewAttachedToWindow(View v) {
+            timeFormatter.addMinuteTickListener(minuteTick);
+            refreshVisibleDates();
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View v) {
+            timeFormatter.removeMinuteTickListener(minuteTick);
+        }
+    };
+    private RecyclerView recyclerView;
 
     public PostAdapter(Context context, OnPostClickListener listener) {
         this.context = context;
         this.listener = listener;
+        this.prefsManager = SharedPreferencesManager.getInstance(context);
+        // Translucent so the text stays readable in dark mode too
+        this.highlightColor = ColorUtils.setAlphaComponent(ContextCompat.getColor(context, R.color.secondary_light), 0x99);
         Log.d(TAG, "PostAdapter created");
     }
 
     public void updatePosts(List<Post> newPosts) {
+        updatePosts(newPosts, null);
+    }
+
+    /**
+     * @param ranges Where a search matched, by post id, to highlight; null for none
+     */
+    public void updatePosts(List<Post> newPosts, Map<Integer, MatchRanges> ranges) {
         Log.d(TAG, "updatePosts called with " + (newPosts != null ? newPosts.size() : 0) + " posts");
 
+        matchRanges = ranges != null ? ranges : Collections.emptyMap();
         posts.clear();
         if (newPosts != null) {
             posts.addAll(newPosts);
@@ -65,6 +111,52 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
         Log.d(TAG, "Posts updated. Total posts: " + posts.size());
     }
 
+    /**
+     * Add posts below the current ones without rebinding or moving what is on screen
+     */
+    public void appendPosts(List<Post> morePosts) {
+        if (morePosts.isEmpty()) return;
+        int start = posts.size();
+        posts.addAll(morePosts);
+        notifyItemRangeInserted(start, morePosts.size());
+        Log.d(TAG, "Appended " + morePosts.size() + " posts. Total posts: " + posts.size());
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        this.recyclerView = recyclerView;
+        recyclerView.addOnAttachStateChangeListener(windowListener);
+        if (recyclerView.isAttachedToWindow()) {
+            timeFormatter.addMinuteTickListener(minuteTick);
+        }
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        recyclerView.removeOnAttachStateChangeListener(windowListener);
+        timeFormatter.removeMinuteTickListener(minuteTick);
+        this.recyclerView = null;
+    }
+
+    /**
+     * Update the date label of on-screen rows whose time bucket moved since they were bound,
+     * without rebinding them (and reloading their images)
+     */
+    private void refreshVisibleDates() {
+        if (recyclerView == null) return;
+        long now = System.currentTimeMillis();
+        int updated = 0;
+        for (int i = 0; i < recyclerView.getChildCount(); i++) {
+            RecyclerView.ViewHolder holder = recyclerView.getChildViewHolder(recyclerView.getChildAt(i));
+            if (holder instanceof PostViewHolder && ((PostViewHolder) holder).refreshDate(now)) {
+                updated++;
+            }
+        }
+        Log.d(TAG, "Minute tick: refreshed " + updated + " date labels");
+    }
+
     @NonNull
     @Override
     public PostViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -91,6 +183,14 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
         private final ImageView ivImage, ivType;
         private final TextView tvTitle, tvDescription, tvDate, tvContact, tvType;
         private final CardView cvImage, cvStatusBadge;
+        // What the date label currently shows, so the minute tick can skip unchanged rows
+        private Post boundPost;
+        private long dateBucket = RelativeTimeFormatter.NO_BUCKET;
+        // Reused on every bind that highlights: one buffer per field and a pool of spans
+        private final SpannableStringBuilder titleText = new SpannableStringBuilder();
+        private final SpannableStringBuilder descriptionText = new SpannableStringBuilder();
+        private final List<BackgroundColorSpan> titleSpans = new ArrayList<>();
+        private final List<BackgroundColorSpan> descriptionSpans = new ArrayList<>();
 
         public PostViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -105,6 +205,8 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
             tvType = itemView.findViewById(R.id.tvType);
             cvImage = itemView.findViewById(R.id.cvImage);
             cvStatusBadge = itemView.findViewById(R.id.cvStatusBadge);
+            if (tvTitle != null) tvTitle.setSpannableFactory(NO_COPY_FACTORY);
+            if (tvDescription != null) tvDescription.setSpannableFactory(NO_COPY_FACTORY);
 
             // Log which views were found/not found
             Log.d(TAG, "Views initialized - " +
@@ -118,11 +220,27 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
                 int position = getAdapterPosition();
                 if (position != RecyclerView.NO_POSITION && listener != null && position < posts.size()) {
                     Log.d(TAG, "Post clicked at position: " + position);
-                    listener.onPostClick(posts.get(position));
+                    Post post = posts.get(position);
+                    handOff(post);
+                    listener.onPostClick(post);
                 }
             });
         }
 
+        /**
+         * Hand the tapped post to the detail screen together with the size its thumbnail
+         * was decoded at, so the detail screen can reuse the decoded bitmap from memory.
+         */
+        private void handOff(Post post) {
+            int thumbWidth = 0, thumbHeight = 0;
+            if (ivImage != null && ivImage.getVisibility() == View.VISIBLE) {
+                // Same size Glide's ViewTarget resolved for this row
+                thumbWidth = ivImage.getWidth() - ivImage.getPaddingLeft() - ivImage.getPaddingRight();
+                thumbHeight = ivImage.getHeight() - ivImage.getPaddingTop() - ivImage.getPaddingBottom();
+            }
+            PostHandoff.put(post, thumbWidth, thumbHeight);
+        }
+
         public void bind(Post post) {
             Log.d(TAG, "Binding post: " + (post != null ? post.getTitle() : "null"));
 
@@ -131,12 +249,19 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
                 return;
             }
 
-            // Title & description
+            // Title & description, with search matches highlighted
+            MatchRanges ranges = post.getId() != null ? matchRanges.get(post.getId()) : null;
             if (tvTitle != null) {
-                tvTitle.setText(post.getTitle() != null ? post.getTitle() : "No Title");
+                if (post.getTitle() != null) {
+                    setHighlighted(tvTitle, post.getTitle(), ranges != null ? ranges.getTitle() : null,
+                            titleText, titleSpans);
+                } else {
+                    tvTitle.setText("No Title");
+                }
             }
             if (tvDescription != null) {
-                tvDescription.setText(post.getDescription() != null ? post.getDescription() : "");
+                setHighlighted(tvDescription, post.getDescription() != null ? post.getDescription() : "",
+                        ranges != null ? ranges.getDescription() : null, descriptionText, descriptionSpans);
             }
 
             // Type icon and text - use safe color access
@@ -170,8 +295,13 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
 
             // Date
             if (tvDate != null) {
-                if (post.getCreatedAt() != null) {
-                    tvDate.setText(formatDate(post.getCreatedAt()));
+                boundPost = post;
+                dateBucket = RelativeTimeFormatter.NO_BUCKET;
+                if (post.hasCreatedAt()) {
+                    refreshDate(System.currentTimeMillis());
+                } else if (post.getCreatedAt() != null) {
+                    // Unrecognized format; show it as the server sent it
+                    tvDate.setText(post.getCreatedAt());
                 } else {
                     tvDate.setText("Unknown date");
                 }
@@ -199,9 +329,8 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
                     Log.d(TAG, "Loading image for post: " + post.getTitle() + ", URL: " + imageUrl);
 
                     if (imageUrl != null) {
-                        // Get authentication token
-                        SharedPreferencesManager prefsManager = SharedPreferencesManager.getInstance(context);
-                        String authHeader = prefsManager.getAuthHeader();
+                        // Get authentication token from the session snapshot
+                        String authHeader = prefsManager.getSession().getAuthHeader();
 
                         GlideUrl glideUrl = new GlideUrl(imageUrl, new LazyHeaders.Builder()
                                 .addHeader("Authorization", authHeader)
@@ -212,6 +341,8 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
                                 .placeholder(R.drawable.placeholder_image)
                                 .error(R.drawable.placeholder_image)
                                 .centerCrop()
+                                // Thumbnails are hashed, and hardware bitmaps can't be read cheaply
+                                .disallowHardwareConfig()
                                 .listener(new RequestListener<Drawable>() {
                                     @Override
                                     public boolean onLoadFailed(@Nullable GlideException e, Object model, Target<Drawable> target, boolean isFirstResource) {
@@ -222,6 +353,8 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
                                     @Override
                                     public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target, DataSource dataSource, boolean isFirstResource) {
                                         Log.d(TAG, "Image loaded successfully: " + imageUrl);
+                                        // Hashed from the decoded thumbnail, for visual matching
+                                        ImageHasher.getInstance(context).hashPostImage(post, resource, null);
                                         return false;
                                     }
                                 })
@@ -242,47 +375,42 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
             }
         }
 
-        private String formatDate(String dateString) {
-            if (dateString == null) return "Unknown";
-            try {
-                // Try multiple date formats
-                SimpleDateFormat[] inputFormats = {
-                        new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.getDefault()),
-                        new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS", Locale.getDefault()),
-                        new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault())
-                };
-
-                Date date = null;
-                for (SimpleDateFormat format : inputFormats) {
-                    try {
-                        date = format.parse(dateString);
-                        break;
-                    } catch (ParseException e) {
-                        // Try next format
-                    }
-                }
+        /**
+         * Show text with the ranges highlighted, reusing the row's buffer and spans
+         * @param ranges Start and end offsets, alternating; null or empty for plain text
+         */
+        private void setHighlighted(TextView view, String text, int[] ranges,
+                                    SpannableStringBuilder buffer, List<BackgroundColorSpan> spans) {
+            if (ranges == null || ranges.length == 0) {
+                view.setText(text);
+                return;
+            }
 
-                if (date != null) {
-                    long diff = System.currentTimeMillis() - date.getTime();
-                    long hours = diff / (1000 * 60 * 60);
-                    long days = hours / 24;
-
-                    if (hours < 1) {
-                        return "Just now";
-                    } else if (hours < 24) {
-                        return hours + " hours ago";
-                    } else if (days < 7) {
-                        return days + " days ago";
-                    } else {
-                        SimpleDateFormat outputFormat = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
-                        return outputFormat.format(date);
-                    }
+            // Also drops the watchers TextView left on the buffer when it last showed it
+            buffer.clearSpans();
+            buffer.replace(0, buffer.length(), text);
+            for (int i = 0; i + 1 < ranges.length; i += 2) {
+                int end = Math.min(ranges[i + 1], text.length());
+                if (ranges[i] >= end) continue;
+                int n = i / 2;
+                if (n == spans.size()) {
+                    spans.add(new BackgroundColorSpan(highlightColor));
                 }
-                return dateString;
-            } catch (Exception e) {
-                Log.w(TAG, "Error parsing date: " + dateString, e);
-                return dateString;
+                buffer.setSpan(spans.get(n), ranges[i], end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
             }
+            view.setText(buffer, TextView.BufferType.SPANNABLE);
+        }
+
+        /**
+         * @return True if the label changed
+         */
+        boolean refreshDate(long now) {
+            if (tvDate == null || boundPost == null || !boundPost.hasCreatedAt()) return false;
+            long bucket = timeFormatter.bucketOf(boundPost.getCreatedAtMillis(), now);
+            if (bucket == dateBucket) return false;
+            dateBucket = bucket;
+            tvDate.setText(timeFormatter.label(context, bucket));
+            return true;
         }
     }
 }
\ No newline at end of file
@@ -1,5 +1,8 @@
 package com.kyle.lostandfoundapp.model;
 
+import com.kyle.lostandfoundapp.utils.DateParser;
+import com.kyle.lostandfoundapp.utils.TextFolder;
+
 public class Post {
     private Integer id;
     private String title;
@@ -11,16 +14,25 @@ public class Post {
     private Integer userId;
     private String status;
 
+    // Search projections of title/description/contact, folded once (see PostTypeAdapterFactory).
+    // Transient so Gson neither reads nor writes them.
+    private transient char[] foldedTitle;
+    private transient char[] foldedDescription;
+    private transient char[] foldedContact;
+    // createdAt parsed once; DateParser.UNKNOWN if missing or unparseable
+    private transient long createdAtMillis;
+    private transient boolean createdAtParsed;
+
     public Post() {}
 
     public Integer getId() { return id; }
     public void setId(Integer id) { this.id = id; }
 
     public String getTitle() { return title; }
-    public void setTitle(String title) { this.title = title; }
+    public void setTitle(String title) { this.title = title; this.foldedTitle = null; }
 
     public String getDescription() { return description; }
-    public void setDescription(String description) { this.description = description; }
+    public void setDescription(String description) { this.description = description; this.foldedDescription = null; }
 
     public Boolean getIsLost() { return isLost; }
     public void setIsLost(Boolean isLost) { this.isLost = isLost; }
@@ -29,14 +41,52 @@ public class Post {
     public void setImagePath(String imagePath) { this.imagePath = imagePath; }
 
     public String getContact() { return contact; }
-    public void setContact(String contact) { this.contact = contact; }
+    public void setContact(String contact) { this.contact = contact; this.foldedContact = null; }
 
     public String getCreatedAt() { return createdAt; }
-    public void setCreatedAt(String createdAt) { this.createdAt = createdAt; }
+    public void setCreatedAt(String createdAt) { this.createdAt = createdAt; this.createdAtParsed = false; }
 
     public Integer getUserId() { return userId; }
     public void setUserId(Integer userId) { this.userId = userId; }
 
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
+
+    /**
+     * Build the derived fields (folded search text, parsed timestamp) now rather than
+     * on first use
+     */
+    public void prepareDerivedFields() {
+        getFoldedTitle();
+        getFoldedDescription();
+        getFoldedContact();
+        getCreatedAtMillis();
+    }
+
+    public long getCreatedAtMillis() {
+        if (!createdAtParsed) {
+            createdAtMillis = DateParser.parseMillis(createdAt);
+            createdAtParsed = true;
+        }
+        return createdAtMillis;
+    }
+
+    public boolean hasCreatedAt() {
+        return getCreatedAtMillis() != DateParser.UNKNOWN;
+    }
+
+    public char[] getFoldedTitle() {
+        if (foldedTitle == null) foldedTitle = TextFolder.fold(title);
+        return foldedTitle;
+    }
+
+    public char[] getFoldedDescription() {
+        if (foldedDescription == null) foldedDescription = TextFolder.fold(description);
+        return foldedDescription;
+    }
+
+    public char[] getFoldedContact() {
+        if (foldedContact == null) foldedContact = TextFolder.fold(contact);
+        return foldedContact;
+    }
 }
@@ -2,6 +2,9 @@ package com.kyle.lostandfoundapp.network;
 
 import android.util.Log;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
 import okhttp3.OkHttpClient;
 import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit2.Retrofit;
@@ -26,10 +29,15 @@ public class ApiClient {
                     .addInterceptor(loggingInterceptor)
                     .build();
 
+            // Prepares posts for search as they are decoded
+            Gson gson = new GsonBuilder()
+                    .registerTypeAdapterFactory(new PostTypeAdapterFactory())
+                    .create();
+
             retrofit = new Retrofit.Builder()
                     .baseUrl(BASE_URL)
                     .client(client)
-                    .addConverterFactory(GsonConverterFactory.create())
+                    .addConverterFactory(GsonConverterFactory.create(gson))
                     .build();
         }
         return retrofit;
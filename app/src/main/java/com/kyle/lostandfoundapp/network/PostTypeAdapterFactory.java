@@ -0,0 +1,44 @@
+package com.kyle.lostandfoundapp.network;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.kyle.lostandfoundapp.model.Post;
+
+import java.io.IOException;
+
+/**
+ * Builds each Post's derived fields right after it is decoded, on the OkHttp thread:
+ * folded search text, so searching never lower-cases post text on the fly, and the
+ * parsed createdAt, so sorting and date labels never parse strings.
+ */
+public class PostTypeAdapterFactory implements TypeAdapterFactory {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if (type.getRawType() != Post.class) {
+            return null;
+        }
+
+        final TypeAdapter<Post> delegate = (TypeAdapter<Post>) gson.getDelegateAdapter(this, type);
+        return (TypeAdapter<T>) new TypeAdapter<Post>() {
+            @Override
+            public void write(JsonWriter out, Post value) throws IOException {
+                delegate.write(out, value);
+            }
+
+            @Override
+            public Post read(JsonReader in) throws IOException {
+                Post post = delegate.read(in);
+                if (post != null) {
+                    post.prepareDerivedFields();
+                }
+                return post;
+            }
+        };
+    }
+}
@@ -0,0 +1,278 @@
+package com.kyle.lostandfoundapp.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Radix trie of terms with frequencies, for search-box completion. Chains of single-child
+ * nodes are collapsed into one edge label and children are kept in sorted parallel arrays,
+ * so the trie stays small. Every node also knows the highest frequency anywhere below it,
+ * which lets top-N completion go best-first: only the branches that can still beat what
+ * has been found are opened, so a lookup costs about N node visits however many terms
+ * share the prefix.
+ * Not thread-safe.
+ */
+final class CompletionTrie {
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static final class Node {
+        char[] label;
+        // Frequency of the term ending here, 0 if none does
+        int count;
+        // Highest count in this subtree, this node included
+        int max;
+        // First label char of each child, sorted; children in the same order
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        int size;
+
+        Node(char[] label, int count) {
+            this.label = label;
+            this.count = count;
+            this.max = count;
+        }
+
+        int find(char key) {
+            int index = Arrays.binarySearch(keys, 0, size, key);
+            return index >= 0 ? index : -1;
+        }
+
+        void addChild(Node child) {
+            if (size == keys.length) {
+                int capacity = Math.max(2, size * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            int index = -Arrays.binarySearch(keys, 0, size, child.label[0]) - 1;
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(children, index, children, index + 1, size - index);
+            keys[index] = child.label[0];
+            children[index] = child;
+            size++;
+        }
+
+        void removeChild(int index) {
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            System.arraycopy(children, index + 1, children, index, size - index - 1);
+            size--;
+            children[size] = null;
+        }
+
+        void updateMax() {
+            int value = count;
+            for (int i = 0; i < size; i++) {
+                value = Math.max(value, children[i].max);
+            }
+            max = value;
+        }
+    }
+
+    private static final class Candidate {
+        final int priority;
+        final Node node;
+        final String text;
+        final boolean term;
+
+        Candidate(int priority, Node node, String text, boolean term) {
+            this.priority = priority;
+            this.node = node;
+            this.text = text;
+            this.term = term;
+        }
+    }
+
+    private final Node root;
+    private int terms;
+
+    CompletionTrie() {
+        this(new Node(NO_KEYS, 0));
+    }
+
+    private CompletionTrie(Node root) {
+        this.root = root;
+    }
+
+    int size() {
+        return terms;
+    }
+
+    /**
+     * Set a term's frequency; 0 removes it
+     */
+    void set(String term, int count) {
+        if (term.isEmpty()) return;
+
+        List<Node> path = new ArrayList<>();
+        path.add(root);
+        Node node = root;
+        int i = 0;
+        while (i < term.length()) {
+            int slot = node.find(term.charAt(i));
+            if (slot < 0) {
+                if (count == 0) return;
+                Node leaf = new Node(term.substring(i).toCharArray(), count);
+                node.addChild(leaf);
+                terms++;
+                path.add(leaf);
+                updateMax(path);
+                return;
+            }
+
+            Node child = node.children[slot];
+            int common = commonPrefix(child.label, term, i);
+            if (common < child.label.length) {
+                if (count == 0) return;
+                // Split the edge where the term leaves it
+                Node middle = new Node(Arrays.copyOf(child.label, common), 0);
+                child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+                node.children[slot] = middle;
+                middle.addChild(child);
+                middle.max = child.max;
+                child = middle;
+            }
+            path.add(child);
+            node = child;
+            i += common;
+        }
+
+        int before = node.count;
+        if (before == count) return;
+        node.count = count;
+        if (before == 0) terms++;
+        if (count == 0) {
+            terms--;
+            prune(path);
+        }
+        updateMax(path);
+    }
+
+    /**
+     * Most frequent terms starting with prefix, most frequent first (ties alphabetical)
+     */
+    List<String> complete(String prefix, int limit) {
+        List<String> completions = new ArrayList<>(limit);
+        Node node = root;
+        StringBuilder text = new StringBuilder();
+        int i = 0;
+        while (i < prefix.length()) {
+            int slot = node.find(prefix.charAt(i));
+            if (slot < 0) return completions;
+            node = node.children[slot];
+            // The prefix may end partway along this edge
+            for (int j = 0; j < node.label.length && i < prefix.length(); j++, i++) {
+                if (node.label[j] != prefix.charAt(i)) return completions;
+            }
+            text.append(node.label);
+        }
+
+        PriorityQueue<Candidate> queue = new PriorityQueue<>((a, b) -> a.priority != b.priority
+                ? Integer.compare(b.priority, a.priority)
+                : a.text.compareTo(b.text));
+        queue.add(new Candidate(node.max, node, text.toString(), false));
+        while (!queue.isEmpty() && completions.size() < limit) {
+            Candidate candidate = queue.poll();
+            if (candidate.term) {
+                completions.add(candidate.text);
+                continue;
+            }
+            Node current = candidate.node;
+            if (current.count > 0) {
+                queue.add(new Candidate(current.count, current, candidate.text, true));
+            }
+            for (int c = 0; c < current.size; c++) {
+                Node child = current.children[c];
+                queue.add(new Candidate(child.max, child, candidate.text + new String(child.label), false));
+            }
+        }
+        return completions;
+    }
+
+    /**
+     * Deep copy that no later change to this trie reaches, e.g. to hand to readers on
+     * another thread. Child arrays are trimmed to size, so the copy is a little smaller.
+     */
+    CompletionTrie copy() {
+        CompletionTrie copy = new CompletionTrie(copyOf(root));
+        copy.terms = terms;
+        return copy;
+    }
+
+    /**
+     * Approximate heap size of the trie: object headers, fields and arrays of every node
+     */
+    long estimateBytes() {
+        long bytes = 0;
+        List<Node> stack = new ArrayList<>();
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.remove(stack.size() - 1);
+            // Node object, label array, keys array, children array
+            bytes += 40 + (16 + 2L * node.label.length) + (16 + 2L * node.keys.length)
+                    + (16 + 4L * node.children.length);
+            for (int i = 0; i < node.size; i++) {
+                stack.add(node.children[i]);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Remove nodes left without a term or children, and merge a termless node into its
+     * only child, walking up from the end of the path
+     */
+    private void prune(List<Node> path) {
+        for (int depth = path.size() - 1; depth > 0; depth--) {
+            Node node = path.get(depth);
+            if (node.count > 0 || node.size > 1) return;
+
+            if (node.size == 1) {
+                Node child = node.children[0];
+                char[] label = Arrays.copyOf(node.label, node.label.length + child.label.length);
+                System.arraycopy(child.label, 0, label, node.label.length, child.label.length);
+                node.label = label;
+                node.count = child.count;
+                node.keys = child.keys;
+                node.children = child.children;
+                node.size = child.size;
+                node.max = child.max;
+                return;
+            }
+
+            Node parent = path.get(depth - 1);
+            parent.removeChild(parent.find(node.label[0]));
+            path.remove(depth);
+        }
+    }
+
+    private static Node copyOf(Node node) {
+        // Labels are replaced, never written to, so they can be shared
+        Node copy = new Node(node.label, node.count);
+        copy.max = node.max;
+        copy.size = node.size;
+        copy.keys = Arrays.copyOf(node.keys, node.size);
+        copy.children = new Node[node.size];
+        for (int i = 0; i < node.size; i++) {
+            copy.children[i] = copyOf(node.children[i]);
+        }
+        return copy;
+    }
+
+    private static void updateMax(List<Node> path) {
+        for (int depth = path.size() - 1; depth >= 0; depth--) {
+            path.get(depth).updateMax();
+        }
+    }
+
+    private static int commonPrefix(char[] label, String term, int from) {
+        int length = Math.min(label.length, term.length() - from);
+        int i = 0;
+        while (i < length && label[i] == term.charAt(from + i)) {
+            i++;
+        }
+        return i;
+    }
+}
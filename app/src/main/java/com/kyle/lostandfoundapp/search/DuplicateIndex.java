@@ -0,0 +1,338 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Locality-sensitive index of post MinHash signatures, for warning about near-duplicate
+ * posts before they are created. Each signature is split into bands and filed under one
+ * bucket per band; a lookup visits only the buckets of the new text's bands and checks
+ * the few posts found there, so its cost doesn't grow with the number of indexed posts.
+ * Signatures are computed once per post text and can be saved and restored, so a
+ * restart doesn't have to re-sign the whole feed. Signing a refresh and writing a save
+ * can both run outside whatever lock guards the index (see Refresh and Snapshot).
+ * Not thread-safe.
+ */
+public class DuplicateIndex {
+
+    // Bumped whenever MinHash or the file layout changes; older files are discarded
+    private static final int FORMAT_VERSION = 2;
+    // Far above any real title; a larger length means the file is damaged
+    private static final int MAX_TITLE_BYTES = 1 << 20;
+
+    /**
+     * An indexed post resembling the text that was looked up
+     */
+    public static final class Duplicate {
+        private final int postId;
+        private final String title;
+        private final float similarity;
+
+        Duplicate(int postId, String title, float similarity) {
+            this.postId = postId;
+            this.title = title;
+            this.similarity = similarity;
+        }
+
+        public int getPostId() {
+            return postId;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public float getSimilarity() {
+            return similarity;
+        }
+    }
+
+    private static final class Entry {
+        final int textHash;
+        final int[] signature;
+        boolean isLost;
+        String title;
+
+        Entry(int textHash, int[] signature, boolean isLost, String title) {
+            this.textHash = textHash;
+            this.signature = signature;
+            this.isLost = isLost;
+            this.title = title;
+        }
+    }
+
+    /**
+     * Signatures for the new and edited posts of a feed refresh, taken by prepare and
+     * handed to apply. Signing only reads the posts, so it needs no lock on the index.
+     */
+    public static final class Refresh {
+        private final List<Post> posts;
+        private final List<Post> unsigned;
+        private final Map<Integer, Entry> signed = new HashMap<>();
+
+        private Refresh(List<Post> posts, List<Post> unsigned) {
+            this.posts = posts;
+            this.unsigned = unsigned;
+        }
+
+        public int unsignedCount() {
+            return unsigned.size();
+        }
+
+        public void sign() {
+            for (Post post : unsigned) {
+                signed.put(post.getId(), new Entry(textHash(post.getTitle(), post.getDescription()),
+                        MinHash.signature(post.getTitle(), post.getDescription()), false, null));
+            }
+        }
+    }
+
+    /**
+     * The indexed posts at one point in time, for saving without holding the index
+     */
+    public static final class Snapshot {
+        private final int[] ids;
+        private final Entry[] entries;
+
+        private Snapshot(int[] ids, Entry[] entries) {
+            this.ids = ids;
+            this.entries = entries;
+        }
+
+        public void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                Entry entry = entries[i];
+                out.writeInt(ids[i]);
+                out.writeInt(entry.textHash);
+                out.writeBoolean(entry.isLost);
+                // Length-prefixed, as writeUTF refuses strings over 64 KB
+                String text = entry.title != null ? entry.title : "";
+                byte[] title = text.getBytes(StandardCharsets.UTF_8);
+                if (title.length > MAX_TITLE_BYTES) {
+                    // Only shown in the warning; at most 4 bytes a char keeps it under the limit
+                    title = text.substring(0, MAX_TITLE_BYTES / 4).getBytes(StandardCharsets.UTF_8);
+                }
+                out.writeInt(title.length);
+                out.write(title);
+                for (int hash : entry.signature) {
+                    out.writeInt(hash);
+                }
+            }
+        }
+    }
+
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final Map<Long, PostingList> buckets = new HashMap<>();
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Bring the index in line with a full post list, signing only new and edited posts
+     * @param posts Every post, in any order
+     * @return True if anything changed (worth saving)
+     */
+    public boolean update(List<Post> posts) {
+        Refresh refresh = prepare(posts);
+        refresh.sign();
+        return apply(refresh);
+    }
+
+    /**
+     * First step of update: find the posts whose text isn't signed yet
+     * @param posts Every post, in any order; not modified until apply
+     */
+    public Refresh prepare(List<Post> posts) {
+        List<Post> unsigned = new ArrayList<>();
+        for (int i = 0, size = posts.size(); i < size; i++) {
+            Post post = posts.get(i);
+            if (post.getId() == null) continue;
+            Entry entry = entries.get(post.getId());
+            if (entry == null || entry.textHash != textHash(post.getTitle(), post.getDescription())) {
+                unsigned.add(post);
+            }
+        }
+        return new Refresh(posts, unsigned);
+    }
+
+    /**
+     * Last step of update, after Refresh.sign
+     * @return True if anything changed (worth saving)
+     */
+    public boolean apply(Refresh refresh) {
+        List<Post> posts = refresh.posts;
+        Set<Integer> stale = new HashSet<>(entries.keySet());
+        boolean changed = false;
+
+        for (int i = 0, size = posts.size(); i < size; i++) {
+            Post post = posts.get(i);
+            if (post.getId() == null) continue;
+            stale.remove(post.getId());
+            changed |= add(post, refresh.signed.get(post.getId()));
+        }
+
+        for (Integer id : stale) {
+            remove(id);
+        }
+        return changed || !stale.isEmpty();
+    }
+
+    /**
+     * Index or refresh a single post, e.g. one just created
+     * @return True if the index changed
+     */
+    public boolean add(Post post) {
+        return add(post, null);
+    }
+
+    /**
+     * @param signed Signature taken for the post by Refresh.sign, or null to sign it here
+     */
+    private boolean add(Post post, Entry signed) {
+        int id = post.getId();
+        boolean isLost = Boolean.TRUE.equals(post.getIsLost());
+        int textHash = textHash(post.getTitle(), post.getDescription());
+
+        Entry entry = entries.get(id);
+        if (entry != null && entry.textHash == textHash) {
+            // Same text: only the kind or title shown in the warning can differ
+            boolean changed = entry.isLost != isLost || !Objects.equals(entry.title, post.getTitle());
+            entry.isLost = isLost;
+            entry.title = post.getTitle();
+            return changed;
+        }
+
+        // The text may have changed again since it was signed
+        int[] signature = signed != null && signed.textHash == textHash
+                ? signed.signature
+                : MinHash.signature(post.getTitle(), post.getDescription());
+        remove(id);
+        put(id, new Entry(textHash, signature, isLost, post.getTitle()));
+        return true;
+    }
+
+    public void remove(int id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) return;
+        for (int band = 0; band < MinHash.BANDS; band++) {
+            long key = MinHash.bandKey(entry.signature, band);
+            PostingList bucket = buckets.get(key);
+            bucket.remove(id);
+            if (bucket.isEmpty()) {
+                buckets.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Indexed posts of the same kind whose text is at least this similar, most similar first
+     * @param minSimilarity Estimated Jaccard similarity of the shingles, 0 to 1
+     */
+    public List<Duplicate> findDuplicates(String title, String description, boolean isLost,
+                                          float minSimilarity) {
+        int[] signature = MinHash.signature(title, description);
+        Set<Integer> checked = new HashSet<>();
+        List<Duplicate> duplicates = new ArrayList<>();
+
+        for (int band = 0; band < MinHash.BANDS; band++) {
+            PostingList bucket = buckets.get(MinHash.bandKey(signature, band));
+            if (bucket == null) continue;
+
+            int[] ids = bucket.sortedIds();
+            for (int i = 0, size = bucket.size(); i < size; i++) {
+                if (!checked.add(ids[i])) continue;
+                Entry entry = entries.get(ids[i]);
+                if (entry.isLost != isLost) continue;
+                float similarity = MinHash.similarity(signature, entry.signature);
+                if (similarity >= minSimilarity) {
+                    duplicates.add(new Duplicate(ids[i], entry.title, similarity));
+                }
+            }
+        }
+
+        Collections.sort(duplicates, (a, b) -> Float.compare(b.similarity, a.similarity));
+        return duplicates;
+    }
+
+    /**
+     * Copy of what writeTo would save. Signatures are never modified in place, so only
+     * the entries are copied, not the arrays.
+     */
+    public Snapshot snapshot() {
+        int[] ids = new int[entries.size()];
+        Entry[] copies = new Entry[ids.length];
+        int i = 0;
+        for (Map.Entry<Integer, Entry> item : entries.entrySet()) {
+            Entry entry = item.getValue();
+            ids[i] = item.getKey();
+            copies[i++] = new Entry(entry.textHash, entry.signature, entry.isLost, entry.title);
+        }
+        return new Snapshot(ids, copies);
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        snapshot().writeTo(out);
+    }
+
+    /**
+     * Restore what writeTo saved, replacing the current contents
+     * @return False if the data was written by an incompatible version (index left empty)
+     */
+    public boolean readFrom(DataInputStream in) throws IOException {
+        entries.clear();
+        buckets.clear();
+        if (in.readInt() != FORMAT_VERSION) return false;
+
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int id = in.readInt();
+            int textHash = in.readInt();
+            boolean isLost = in.readBoolean();
+            int titleLength = in.readInt();
+            if (titleLength < 0 || titleLength > MAX_TITLE_BYTES) {
+                throw new IOException("Corrupt title length " + titleLength);
+            }
+            byte[] titleBytes = new byte[titleLength];
+            in.readFully(titleBytes);
+            String title = new String(titleBytes, StandardCharsets.UTF_8);
+            int[] signature = new int[MinHash.NUM_HASHES];
+            for (int h = 0; h < signature.length; h++) {
+                signature[h] = in.readInt();
+            }
+            put(id, new Entry(textHash, signature, isLost, title));
+        }
+        return true;
+    }
+
+    private void put(int id, Entry entry) {
+        entries.put(id, entry);
+        for (int band = 0; band < MinHash.BANDS; band++) {
+            long key = MinHash.bandKey(entry.signature, band);
+            PostingList bucket = buckets.get(key);
+            if (bucket == null) {
+                bucket = new PostingList();
+                buckets.put(key, bucket);
+            }
+            bucket.add(id);
+        }
+    }
+
+    private static int textHash(String title, String description) {
+        return Objects.hash(title, description);
+    }
+}
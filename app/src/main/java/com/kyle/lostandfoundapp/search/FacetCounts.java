@@ -0,0 +1,29 @@
+package com.kyle.lostandfoundapp.search;
+
+/**
+ * Immutable snapshot of how many posts fall in each filter chip's facet
+ */
+public final class FacetCounts {
+
+    public static final FacetCounts EMPTY = new FacetCounts(0, 0, 0, 0);
+
+    private final int total;
+    private final int lost;
+    private final int found;
+    private final int reported;
+
+    public FacetCounts(int total, int lost, int found, int reported) {
+        this.total = total;
+        this.lost = lost;
+        this.found = found;
+        this.reported = reported;
+    }
+
+    public int getTotal() { return total; }
+
+    public int getLost() { return lost; }
+
+    public int getFound() { return found; }
+
+    public int getReported() { return reported; }
+}
@@ -0,0 +1,198 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * One bitmap of post ids per facet value: lost, found, each status and each owner.
+ * Filter combinations are bitmap ANDs, and a bitmap can be applied to search results
+ * or turned back into posts in list order. Replacing the list only touches the posts
+ * that changed. Used by the feed, admin and my-posts screens alike.
+ * Not thread-safe; each screen keeps its own instance on one thread.
+ */
+public class FacetIndex {
+
+    private static final String REPORTED = "reported";
+
+    private final RoaringBitmap lost = new RoaringBitmap();
+    private final RoaringBitmap found = new RoaringBitmap();
+    private final Map<String, RoaringBitmap> byStatus = new HashMap<>();
+    private final Map<Integer, RoaringBitmap> byOwner = new HashMap<>();
+
+    private final Map<Integer, Post> postsById = new HashMap<>();
+    private final Map<Integer, Integer> positions = new HashMap<>();
+    private List<Post> posts = Collections.emptyList();
+
+    /**
+     * Replace the list the facets describe. Posts without an id cannot be indexed and
+     * only ever show up in the unfiltered list.
+     * @param newPosts Posts in display order; kept by reference, not copied
+     * @return True if any facet changed
+     */
+    public boolean setPosts(List<Post> newPosts) {
+        boolean changed = false;
+        Map<Integer, Post> previous = new HashMap<>(postsById);
+        postsById.clear();
+        positions.clear();
+
+        for (int i = 0; i < newPosts.size(); i++) {
+            Post post = newPosts.get(i);
+            Integer id = post.getId();
+            if (id == null) continue;
+
+            Post old = previous.remove(id);
+            if (old == null) {
+                addFacets(id, post);
+                changed = true;
+            } else if (old != post && !sameFacets(old, post)) {
+                removeFacets(id, old);
+                addFacets(id, post);
+                changed = true;
+            }
+            postsById.put(id, post);
+            positions.put(id, i);
+        }
+
+        for (Map.Entry<Integer, Post> gone : previous.entrySet()) {
+            removeFacets(gone.getKey(), gone.getValue());
+            changed = true;
+        }
+        posts = newPosts;
+        return changed;
+    }
+
+    public List<Post> getPosts() {
+        return posts;
+    }
+
+    /**
+     * Chip counts, read off the bitmap cardinalities. The bitmaps are kept up to date
+     * post by post in setPosts, so this never walks the list.
+     */
+    public FacetCounts getCounts() {
+        RoaringBitmap reported = byStatus.get(REPORTED);
+        return new FacetCounts(posts.size(), lost.getCardinality(), found.getCardinality(),
+                reported != null ? reported.getCardinality() : 0);
+    }
+
+    // Facet bitmaps; callers must not modify them
+
+    public RoaringBitmap lost() {
+        return lost;
+    }
+
+    public RoaringBitmap found() {
+        return found;
+    }
+
+    /**
+     * @param isLost True for lost, false for found
+     */
+    public RoaringBitmap lostOrFound(boolean isLost) {
+        return isLost ? lost : found;
+    }
+
+    public RoaringBitmap status(String status) {
+        RoaringBitmap bitmap = byStatus.get(statusKey(status));
+        return bitmap != null ? bitmap : new RoaringBitmap();
+    }
+
+    public RoaringBitmap ownedBy(int userId) {
+        RoaringBitmap bitmap = byOwner.get(userId);
+        return bitmap != null ? bitmap : new RoaringBitmap();
+    }
+
+    /**
+     * Posts in the facet, in list order
+     */
+    public List<Post> select(RoaringBitmap ids) {
+        // Scanning the list beats sorting positions once the facet covers most of it
+        if (ids.getCardinality() * 8L > posts.size()) {
+            return filter(posts, ids);
+        }
+
+        int[] values = ids.toArray();
+        int[] order = new int[values.length];
+        int n = 0;
+        for (int id : values) {
+            Integer position = positions.get(id);
+            if (position != null) {
+                order[n++] = position;
+            }
+        }
+        Arrays.sort(order, 0, n);
+
+        List<Post> selected = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            selected.add(posts.get(order[i]));
+        }
+        return selected;
+    }
+
+    /**
+     * Keep the posts of a list (e.g. search results) that are in the facet, preserving order
+     */
+    public List<Post> filter(List<Post> candidates, RoaringBitmap ids) {
+        List<Post> filtered = new ArrayList<>();
+        for (int i = 0, size = candidates.size(); i < size; i++) {
+            Post post = candidates.get(i);
+            if (post.getId() != null && ids.contains(post.getId())) {
+                filtered.add(post);
+            }
+        }
+        return filtered;
+    }
+
+    private void addFacets(int id, Post post) {
+        if (post.getIsLost() != null) {
+            lostOrFound(post.getIsLost()).add(id);
+        }
+        if (post.getStatus() != null) {
+            bitmapFor(byStatus, statusKey(post.getStatus())).add(id);
+        }
+        if (post.getUserId() != null) {
+            bitmapFor(byOwner, post.getUserId()).add(id);
+        }
+    }
+
+    private void removeFacets(int id, Post post) {
+        if (post.getIsLost() != null) {
+            lostOrFound(post.getIsLost()).remove(id);
+        }
+        if (post.getStatus() != null) {
+            RoaringBitmap bitmap = byStatus.get(statusKey(post.getStatus()));
+            if (bitmap != null) bitmap.remove(id);
+        }
+        if (post.getUserId() != null) {
+            RoaringBitmap bitmap = byOwner.get(post.getUserId());
+            if (bitmap != null) bitmap.remove(id);
+        }
+    }
+
+    private static <K> RoaringBitmap bitmapFor(Map<K, RoaringBitmap> map, K key) {
+        RoaringBitmap bitmap = map.get(key);
+        if (bitmap == null) {
+            bitmap = new RoaringBitmap();
+            map.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    private static String statusKey(String status) {
+        return status != null ? status.toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static boolean sameFacets(Post a, Post b) {
+        return Objects.equals(a.getIsLost(), b.getIsLost())
+                && Objects.equals(a.getUserId(), b.getUserId())
+                && statusKey(a.getStatus()).equals(statusKey(b.getStatus()));
+    }
+}
@@ -0,0 +1,286 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.utils.TextFolder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parsed search box text with field-scoped clauses, e.g. {@code title:phone lost status:reported}.
+ * <ul>
+ *     <li>{@code title:}, {@code desc:} / {@code description:} and {@code contact:} match
+ *     words in that field only</li>
+ *     <li>{@code status:}, {@code is:} / {@code type:} (lost or found) and {@code user:} /
+ *     {@code owner:} (a user id) are facet filters</li>
+ *     <li>{@code "quoted text"}, on its own or as a field value, matches as a substring</li>
+ *     <li>other words match in any field, the last one also as a prefix while it is being
+ *     typed</li>
+ * </ul>
+ * A query using any of the above is structured; in a structured query the bare words
+ * {@code lost} and {@code found} are facet filters too. Queries without that syntax are
+ * left to the plain search path, where "lost wallet" still matches titles as text.
+ * QueryPipeline turns the clauses into filtering stages.
+ */
+public final class FieldQuery {
+
+    public enum Field { ANY, TITLE, DESCRIPTION, CONTACT }
+
+    /**
+     * A text clause; text is folded
+     */
+    static final class Term {
+        final Field field;
+        final String text;
+        // Matched as a substring: quoted, or in a script written without spaces
+        final boolean substring;
+        // The word being typed, matched as a prefix
+        final boolean prefix;
+
+        Term(Field field, String text, boolean substring, boolean prefix) {
+            this.field = field;
+            this.text = text;
+            this.substring = substring;
+            this.prefix = prefix;
+        }
+
+        @Override
+        public String toString() {
+            String value = substring ? "\"" + text + "\"" : prefix ? text + "*" : text;
+            return field == Field.ANY ? value : field.name().toLowerCase(Locale.ROOT) + ":" + value;
+        }
+    }
+
+    private final List<Term> terms = new ArrayList<>();
+    // Each entry is a separate condition; conflicting ones simply match nothing
+    private final List<Boolean> kinds = new ArrayList<>();
+    private final List<String> statuses = new ArrayList<>();
+    private final List<Integer> owners = new ArrayList<>();
+    private boolean structured;
+    private boolean matchesNothing;
+
+    private FieldQuery() {}
+
+    /**
+     * @param query Raw search box text
+     */
+    public static FieldQuery parse(String query) {
+        FieldQuery parsed = new FieldQuery();
+        String text = TextFolder.foldToString(query);
+        List<String> bareWords = new ArrayList<>();
+        // Set while the text ends inside an unquoted word, i.e. the word is still being typed
+        Term typing = null;
+
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                typing = null;
+                i++;
+                continue;
+            }
+
+            // Optional "field:" in front of the value
+            String field = null;
+            int colon = i;
+            while (colon < length && Character.isLetter(text.charAt(colon))) {
+                colon++;
+            }
+            if (colon < length && colon > i && text.charAt(colon) == ':' && isField(text.substring(i, colon))) {
+                field = text.substring(i, colon);
+                i = colon + 1;
+            }
+
+            String value;
+            boolean quoted = i < length && text.charAt(i) == '"';
+            if (quoted) {
+                int close = text.indexOf('"', i + 1);
+                int end = close >= 0 ? close : length;
+                value = text.substring(i + 1, end);
+                i = close >= 0 ? close + 1 : length;
+            } else {
+                int end = i;
+                while (end < length && !Character.isWhitespace(text.charAt(end))) {
+                    end++;
+                }
+                value = text.substring(i, end);
+                i = end;
+            }
+
+            if (field != null || quoted) parsed.structured = true;
+            typing = null;
+            if (field == null) {
+                if (quoted) {
+                    parsed.addSubstring(Field.ANY, value);
+                } else {
+                    bareWords.add(value);
+                    typing = parsed.addWords(Field.ANY, value);
+                }
+            } else if (quoted) {
+                parsed.addValue(field, value, true);
+            } else {
+                typing = parsed.addValue(field, value, false);
+            }
+        }
+
+        if (typing != null) {
+            parsed.terms.set(parsed.terms.indexOf(typing),
+                    new Term(typing.field, typing.text, typing.substring, !typing.substring));
+        }
+
+        // Bare lost/found only act as filters once the user is writing a structured query
+        if (parsed.structured) {
+            for (String word : bareWords) {
+                Boolean kind = kindOf(word);
+                if (kind != null) {
+                    parsed.kinds.add(kind);
+                    parsed.removeWordTerm(word);
+                }
+            }
+        }
+        return parsed;
+    }
+
+    public boolean isStructured() {
+        return structured;
+    }
+
+    /**
+     * True when the clauses can't all hold, e.g. a non-numeric user id
+     */
+    boolean matchesNothing() {
+        return matchesNothing;
+    }
+
+    List<Term> getTerms() {
+        return Collections.unmodifiableList(terms);
+    }
+
+    List<Boolean> getKinds() {
+        return Collections.unmodifiableList(kinds);
+    }
+
+    List<String> getStatuses() {
+        return Collections.unmodifiableList(statuses);
+    }
+
+    List<Integer> getOwners() {
+        return Collections.unmodifiableList(owners);
+    }
+
+    /**
+     * @return The term for the last word of the value, if it could be a prefix
+     */
+    private Term addValue(String field, String value, boolean quoted) {
+        switch (field) {
+            case "title":
+                return addText(Field.TITLE, value, quoted);
+            case "desc":
+            case "description":
+                return addText(Field.DESCRIPTION, value, quoted);
+            case "contact":
+                return addText(Field.CONTACT, value, quoted);
+            case "status":
+                // Nothing typed yet after "status:"
+                if (!value.trim().isEmpty()) statuses.add(value.trim());
+                return null;
+            case "is":
+            case "type":
+                // Also while "is:lo" is still being typed
+                Boolean kind = value.isEmpty() ? null
+                        : "lost".startsWith(value) ? Boolean.TRUE
+                        : "found".startsWith(value) ? Boolean.FALSE : null;
+                if (kind != null) {
+                    kinds.add(kind);
+                } else if (!value.isEmpty()) {
+                    matchesNothing = true;
+                }
+                return null;
+            default:
+                // user / owner
+                if (value.isEmpty()) return null;
+                try {
+                    owners.add(Integer.parseInt(value.trim()));
+                } catch (NumberFormatException e) {
+                    matchesNothing = true;
+                }
+                return null;
+        }
+    }
+
+    private Term addText(Field field, String value, boolean quoted) {
+        if (quoted) {
+            addSubstring(field, value);
+            return null;
+        }
+        return addWords(field, value);
+    }
+
+    private void addSubstring(Field field, String value) {
+        // An empty pair of quotes says nothing
+        if (!value.isEmpty()) {
+            terms.add(new Term(field, value, true, false));
+        }
+    }
+
+    private Term addWords(Field field, String value) {
+        // Words in a script without spaces can't be looked up as tokens
+        if (PostIndex.needsSubstringMatch(value)) {
+            String trimmed = value.trim();
+            if (!trimmed.isEmpty()) terms.add(new Term(field, trimmed, true, false));
+            return null;
+        }
+
+        List<String> words = new ArrayList<>();
+        Tokenizer.tokenize(value.toCharArray(), words);
+        Term last = null;
+        for (String word : words) {
+            last = new Term(field, word, false, false);
+            terms.add(last);
+        }
+        // "phone," is a finished word
+        boolean endsInWord = !value.isEmpty() && Tokenizer.isTokenChar(value.charAt(value.length() - 1));
+        return endsInWord ? last : null;
+    }
+
+    private void removeWordTerm(String word) {
+        for (int i = terms.size() - 1; i >= 0; i--) {
+            Term term = terms.get(i);
+            if (term.field == Field.ANY && !term.substring && term.text.equals(word)) {
+                terms.remove(i);
+                return;
+            }
+        }
+    }
+
+    private static boolean isField(String name) {
+        switch (name) {
+            case "title":
+            case "desc":
+            case "description":
+            case "contact":
+            case "status":
+            case "is":
+            case "type":
+            case "user":
+            case "owner":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static Boolean kindOf(String word) {
+        if (word.equals("lost")) return true;
+        if (word.equals("found")) return false;
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "FieldQuery{terms=" + terms + ", kinds=" + kinds + ", statuses=" + statuses
+                + ", owners=" + owners + (matchesNothing ? ", matches nothing" : "") + "}";
+    }
+}
@@ -0,0 +1,128 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds where a query matches in the title and description of the posts on a result page,
+ * for results answered from an index (token, ranked and field-scoped queries). The index
+ * only says which posts match, so this is a second read of the page's fields, once per
+ * query term, with the same matchers the search uses (SubstringMatcher, with the index's
+ * word rule for token queries). Substring queries don't come here: their scan records
+ * offsets as it goes (PostSearcher.matchAll). Either way the UI thread never searches
+ * text. Typo-tolerant matches have no exact text to point at and are not highlighted.
+ * Not thread-safe; PostQueryEngine uses one per result on its worker thread.
+ */
+final class Highlighter {
+
+    private static final class Pattern {
+        final SubstringMatcher matcher;
+        final FieldQuery.Field field;
+        // Token terms must start a word; prefix lifts the rule that they also end one
+        final boolean word;
+        final boolean prefix;
+
+        Pattern(SubstringMatcher matcher, FieldQuery.Field field, boolean word, boolean prefix) {
+            this.matcher = matcher;
+            this.field = field;
+            this.word = word;
+            this.prefix = prefix;
+        }
+    }
+
+    private final List<Pattern> patterns = new ArrayList<>();
+    // Scratch (start, end) pairs, reused for every field
+    private int[] found = new int[16];
+    private int size;
+
+    /**
+     * @param text Folded query text as the search saw it
+     */
+    Highlighter(String text) {
+        FieldQuery query = FieldQuery.parse(text);
+        List<FieldQuery.Term> terms;
+        if (!query.isStructured() && PostIndex.needsSubstringMatch(text)) {
+            // The plain search matches such queries as one substring, spaces included
+            terms = Collections.singletonList(new FieldQuery.Term(FieldQuery.Field.ANY, text.trim(), true, false));
+        } else {
+            terms = query.getTerms();
+        }
+
+        for (FieldQuery.Term term : terms) {
+            // Contact is not shown with highlighting
+            if (term.field == FieldQuery.Field.CONTACT || term.text.isEmpty()) continue;
+            patterns.add(new Pattern(new SubstringMatcher(term.text), term.field, !term.substring,
+                    term.prefix || !query.isStructured()));
+        }
+    }
+
+    /**
+     * Match offsets in the post's title and description
+     */
+    MatchRanges ranges(Post post) {
+        if (patterns.isEmpty()) return MatchRanges.EMPTY;
+        int[] title = collect(post.getFoldedTitle(), FieldQuery.Field.TITLE);
+        int[] description = collect(post.getFoldedDescription(), FieldQuery.Field.DESCRIPTION);
+        if (title.length == 0 && description.length == 0) return MatchRanges.EMPTY;
+        return new MatchRanges(title, description);
+    }
+
+    private int[] collect(char[] text, FieldQuery.Field field) {
+        size = 0;
+        for (Pattern pattern : patterns) {
+            if (pattern.field != FieldQuery.Field.ANY && pattern.field != field) continue;
+            int length = pattern.matcher.length();
+            int at = next(pattern, text, 0);
+            while (at >= 0) {
+                add(at, at + length);
+                at = next(pattern, text, at + Math.max(length, 1));
+            }
+        }
+        return merged();
+    }
+
+    private static int next(Pattern pattern, char[] text, int from) {
+        return pattern.word
+                ? pattern.matcher.indexOfWord(text, from, pattern.prefix)
+                : pattern.matcher.indexIn(text, from);
+    }
+
+    private void add(int start, int end) {
+        if (size + 2 > found.length) {
+            found = Arrays.copyOf(found, found.length * 2);
+        }
+        found[size++] = start;
+        found[size++] = end;
+    }
+
+    /**
+     * Sort the pairs by start and join overlapping or touching ones
+     */
+    private int[] merged() {
+        if (size == 0) return new int[0];
+        int pairs = size / 2;
+        long[] packed = new long[pairs];
+        for (int i = 0; i < pairs; i++) {
+            packed[i] = (long) found[2 * i] << 32 | found[2 * i + 1];
+        }
+        Arrays.sort(packed);
+
+        int[] result = new int[size];
+        int n = 0;
+        for (long pair : packed) {
+            int start = (int) (pair >>> 32);
+            int end = (int) pair;
+            if (n > 0 && start <= result[n - 1]) {
+                result[n - 1] = Math.max(result[n - 1], end);
+            } else {
+                result[n++] = start;
+                result[n++] = end;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+}
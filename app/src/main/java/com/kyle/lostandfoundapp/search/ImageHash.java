@@ -0,0 +1,52 @@
+package com.kyle.lostandfoundapp.search;
+
+/**
+ * Difference hash (dHash) of an image: the pixels are averaged down to a 9x8 grid of
+ * luminance and each bit records whether a cell is brighter than its right neighbour.
+ * Rescaling, recompression and small colour shifts leave most bits unchanged, so the
+ * Hamming distance between two hashes says how alike two photos look.
+ */
+public final class ImageHash {
+
+    private static final int COLUMNS = 9;
+    private static final int ROWS = 8;
+
+    private ImageHash() {
+    }
+
+    /**
+     * @param argb Pixels in Bitmap.getPixels order (row by row)
+     */
+    public static long dHash(int[] argb, int width, int height) {
+        // Box-average every pixel into its grid cell, so no detail is skipped
+        long[] sums = new long[COLUMNS * ROWS];
+        int[] counts = new int[COLUMNS * ROWS];
+        for (int y = 0; y < height; y++) {
+            int row = y * ROWS / height;
+            for (int x = 0; x < width; x++) {
+                int pixel = argb[y * width + x];
+                int cell = row * COLUMNS + x * COLUMNS / width;
+                // Integer Rec. 601 luma
+                sums[cell] += (299 * ((pixel >> 16) & 0xFF) + 587 * ((pixel >> 8) & 0xFF) + 114 * (pixel & 0xFF));
+                counts[cell]++;
+            }
+        }
+
+        long hash = 0;
+        for (int row = 0; row < ROWS; row++) {
+            for (int column = 0; column < COLUMNS - 1; column++) {
+                int cell = row * COLUMNS + column;
+                // Cross-multiplied to compare averages without dividing
+                hash <<= 1;
+                if (sums[cell] * counts[cell + 1] > sums[cell + 1] * counts[cell]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
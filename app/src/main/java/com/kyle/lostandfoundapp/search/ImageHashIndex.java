@@ -0,0 +1,196 @@
+package com.kyle.lostandfoundapp.search;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Multi-index hash table of post image hashes for Hamming-distance lookups. Each 64-bit
+ * hash is cut into four 16-bit chunks, each filed in its own table. Two hashes within
+ * distance d must agree on some chunk to within d / 4 bits, so a lookup only probes the
+ * chunk values that close to the query's, e.g. 4 x 137 probes for d = 10, and checks
+ * the few posts found there in full. That stays well under a millisecond no matter how
+ * many images are indexed, where a linear scan or a BK-tree over 64-bit hashes (whose
+ * distances bunch up around 32) would end up visiting most of them.
+ * Not thread-safe.
+ */
+public class ImageHashIndex {
+
+    // Bumped whenever ImageHash or the file layout changes; older files are discarded
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int CHUNKS = 4;
+    private static final int CHUNK_BITS = 16;
+
+    private static final class Entry {
+        // Which image the hash was taken from, so a replaced image is hashed again
+        final int sourceHash;
+        final long hash;
+
+        Entry(int sourceHash, long hash) {
+            this.sourceHash = sourceHash;
+            this.hash = hash;
+        }
+    }
+
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    // One table per chunk, from chunk value to the posts having it
+    private final List<Map<Integer, PostingList>> tables = new ArrayList<>(CHUNKS);
+
+    public ImageHashIndex() {
+        for (int i = 0; i < CHUNKS; i++) {
+            tables.add(new HashMap<>());
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @param sourceHash Identifies the image, e.g. the hash code of its path
+     * @return True if the post has no hash yet for this image
+     */
+    public boolean needsHash(int postId, int sourceHash) {
+        Entry entry = entries.get(postId);
+        return entry == null || entry.sourceHash != sourceHash;
+    }
+
+    public Long getHash(int postId) {
+        Entry entry = entries.get(postId);
+        return entry != null ? entry.hash : null;
+    }
+
+    public void put(int postId, int sourceHash, long hash) {
+        remove(postId);
+        entries.put(postId, new Entry(sourceHash, hash));
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            int value = chunkOf(hash, chunk);
+            PostingList list = tables.get(chunk).get(value);
+            if (list == null) {
+                list = new PostingList();
+                tables.get(chunk).put(value, list);
+            }
+            list.add(postId);
+        }
+    }
+
+    public void remove(int postId) {
+        Entry entry = entries.remove(postId);
+        if (entry == null) return;
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            int value = chunkOf(entry.hash, chunk);
+            PostingList list = tables.get(chunk).get(value);
+            list.remove(postId);
+            if (list.isEmpty()) {
+                tables.get(chunk).remove(value);
+            }
+        }
+    }
+
+    /**
+     * Drop the hashes of posts that are gone
+     * @return True if anything was removed
+     */
+    public boolean retainAll(Collection<Integer> postIds) {
+        Set<Integer> keep = postIds instanceof Set ? (Set<Integer>) postIds : new HashSet<>(postIds);
+        List<Integer> gone = new ArrayList<>();
+        for (Integer id : entries.keySet()) {
+            if (!keep.contains(id)) gone.add(id);
+        }
+        for (Integer id : gone) {
+            remove(id);
+        }
+        return !gone.isEmpty();
+    }
+
+    /**
+     * Posts whose image hash is within a Hamming distance, closest first
+     * @param excludeId Post to leave out, usually the one the hash came from
+     */
+    public List<Integer> findSimilar(long hash, int maxDistance, int excludeId) {
+        int chunkRadius = maxDistance / CHUNKS;
+        Set<Integer> checked = new HashSet<>();
+        List<long[]> found = new ArrayList<>();
+
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            Map<Integer, PostingList> table = tables.get(chunk);
+            int value = chunkOf(hash, chunk);
+            List<Integer> probes = new ArrayList<>();
+            neighbours(value, chunkRadius, 0, probes);
+
+            for (int probe : probes) {
+                PostingList list = table.get(probe);
+                if (list == null) continue;
+                int[] ids = list.sortedIds();
+                for (int i = 0, size = list.size(); i < size; i++) {
+                    int id = ids[i];
+                    if (id == excludeId || !checked.add(id)) continue;
+                    int distance = ImageHash.distance(hash, entries.get(id).hash);
+                    if (distance <= maxDistance) {
+                        found.add(new long[]{distance, id});
+                    }
+                }
+            }
+        }
+
+        found.sort((a, b) -> Long.compare(a[0], b[0]));
+        List<Integer> ids = new ArrayList<>(found.size());
+        for (long[] item : found) {
+            ids.add((int) item[1]);
+        }
+        return ids;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(entries.size());
+        for (Map.Entry<Integer, Entry> item : entries.entrySet()) {
+            out.writeInt(item.getKey());
+            out.writeInt(item.getValue().sourceHash);
+            out.writeLong(item.getValue().hash);
+        }
+    }
+
+    /**
+     * Restore what writeTo saved, replacing the current contents
+     * @return False if the data was written by an incompatible version (index left empty)
+     */
+    public boolean readFrom(DataInputStream in) throws IOException {
+        entries.clear();
+        for (Map<Integer, PostingList> table : tables) {
+            table.clear();
+        }
+        if (in.readInt() != FORMAT_VERSION) return false;
+
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int postId = in.readInt();
+            int sourceHash = in.readInt();
+            put(postId, sourceHash, in.readLong());
+        }
+        return true;
+    }
+
+    private static int chunkOf(long hash, int chunk) {
+        return (int) (hash >>> (chunk * CHUNK_BITS)) & 0xFFFF;
+    }
+
+    /**
+     * Every 16-bit value within radius bits of value, flipping bits from fromBit upwards
+     */
+    private static void neighbours(int value, int radius, int fromBit, List<Integer> out) {
+        out.add(value);
+        if (radius == 0) return;
+        for (int bit = fromBit; bit < CHUNK_BITS; bit++) {
+            neighbours(value ^ (1 << bit), radius - 1, bit + 1, out);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers successive queries from the search box without rescanning the whole corpus.
+ * Queries are answered from the PostIndex, and it keeps a stack of (query, matches) for
+ * the queries typed so far:
+ * <ul>
+ *     <li>a substring query that extends the top of the stack only narrows the top's
+ *     matches (token queries go back to the index, since typo tolerance makes their
+ *     matches non-monotonic)</li>
+ *     <li>a shorter query (backspace) pops back to an earlier entry and reuses it as is</li>
+ *     <li>a new corpus clears the stack</li>
+ * </ul>
+ * Matches are stored before the lost/found filter so switching chips keeps the stack.
+ * Substring scans keep the match offsets they find, by post id, alongside their matches,
+ * so highlighting a substring result reads no text again.
+ * Not thread-safe; PostQueryEngine only uses it from its worker thread.
+ */
+class IncrementalSearcher {
+
+    // Longer than any realistic query; bounds memory if the user pastes something long
+    private static final int MAX_DEPTH = 32;
+
+    private static final class Entry {
+        final String text;
+        final boolean substring;
+        final List<Post> matches;
+        // Offsets of every match by post id; null for token queries
+        final Map<Integer, MatchRanges> ranges;
+
+        Entry(String text, boolean substring, List<Post> matches, Map<Integer, MatchRanges> ranges) {
+            this.text = text;
+            this.substring = substring;
+            this.matches = matches;
+            this.ranges = ranges;
+        }
+    }
+
+    private final Deque<Entry> stack = new ArrayDeque<>();
+    private List<Post> corpus;
+    private int scannedPosts;
+    private Map<Integer, MatchRanges> lastRanges;
+
+    /**
+     * @param text Folded query text
+     * @param isLost Lost/found filter, null for all
+     * @return Every match in result order, with the filter applied
+     */
+    List<Post> search(PostIndex index, FacetIndex facets, String text, Boolean isLost) {
+        List<Post> corpus = index.getCorpus();
+        if (corpus != this.corpus) {
+            this.corpus = corpus;
+            stack.clear();
+        }
+
+        lastRanges = null;
+        if (text.isEmpty()) {
+            return PostSearcher.applyFilter(corpus, true, isLost, facets);
+        }
+
+        // Unwind to the longest earlier query the new one still extends. Token and substring
+        // matches are not subsets of each other, so a switch of matching mode also unwinds.
+        boolean substring = PostIndex.needsSubstringMatch(text);
+        while (!stack.isEmpty()
+                && (!text.startsWith(stack.peek().text) || stack.peek().substring != substring)) {
+            stack.pop();
+        }
+
+        Entry top = stack.peek();
+        if (top != null && top.text.equals(text)) {
+            lastRanges = top.ranges;
+            return PostSearcher.applyFilter(top.matches, false, isLost, facets);
+        }
+
+        List<Post> matches;
+        Map<Integer, MatchRanges> ranges = new HashMap<>();
+        if (top != null && substring) {
+            scannedPosts += top.matches.size();
+            matches = index.filter(top.matches, text, ranges);
+        } else {
+            matches = index.search(text, ranges);
+        }
+        lastRanges = substring ? Collections.unmodifiableMap(ranges) : null;
+
+        if (stack.size() == MAX_DEPTH) {
+            stack.removeLast();
+        }
+        stack.push(new Entry(text, substring, matches, lastRanges));
+        return PostSearcher.applyFilter(matches, false, isLost, facets);
+    }
+
+    /**
+     * Match offsets by post id recorded by the scan that answered the last search, before
+     * the lost/found filter; null if it was not a substring query
+     */
+    Map<Integer, MatchRanges> getLastRanges() {
+        return lastRanges;
+    }
+
+    /**
+     * Earlier matches re-examined so far, for logging and tests
+     */
+    int getScannedPosts() {
+        return scannedPosts;
+    }
+}
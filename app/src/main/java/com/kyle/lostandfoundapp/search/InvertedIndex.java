@@ -0,0 +1,287 @@
+package com.kyle.lostandfoundapp.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Maps normalized tokens to sorted lists of the post ids containing them. Documents are
+ * added, replaced and removed one at a time, so a feed refresh only pays for the posts
+ * that actually changed. The term dictionary is kept sorted so the last, still-being-typed
+ * query token can be matched as a prefix with a range scan, and so a Levenshtein automaton
+ * can be walked over it for typo-tolerant matching.
+ * Not thread-safe.
+ */
+class InvertedIndex {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final TreeMap<String, PostingList> postings = new TreeMap<>();
+    // Distinct tokens per document, needed to undo its postings on update/remove
+    private final Map<Integer, String[]> documentTokens = new HashMap<>();
+
+    /**
+     * Index a document, replacing whatever was indexed for the same id before
+     * @param id Post ID
+     * @param tokens Normalized tokens of the document, duplicates allowed
+     */
+    void put(int id, List<String> tokens) {
+        remove(id);
+        String[] distinct = tokens.stream().distinct().toArray(String[]::new);
+        for (String token : distinct) {
+            PostingList list = postings.get(token);
+            if (list == null) {
+                list = new PostingList();
+                postings.put(token, list);
+            }
+            list.add(id);
+        }
+        documentTokens.put(id, distinct);
+    }
+
+    void remove(int id) {
+        String[] tokens = documentTokens.remove(id);
+        if (tokens == null) return;
+        for (String token : tokens) {
+            PostingList list = postings.get(token);
+            if (list == null) continue;
+            list.remove(id);
+            if (list.isEmpty()) {
+                postings.remove(token);
+            }
+        }
+    }
+
+    boolean contains(int id) {
+        return documentTokens.containsKey(id);
+    }
+
+    int documentCount() {
+        return documentTokens.size();
+    }
+
+    int termCount() {
+        return postings.size();
+    }
+
+    /**
+     * Ids of documents containing every query token. All tokens but the last must match
+     * a document token exactly; the last one may be a prefix, since the user is still typing it.
+     * @param queryTokens Normalized query tokens, not empty
+     * @return Sorted ids
+     */
+    int[] query(List<String> queryTokens) {
+        int last = queryTokens.size() - 1;
+
+        // Exact tokens first, smallest posting list first, so the running result shrinks fast
+        int[][] exact = new int[last][];
+        int[] exactSizes = new int[last];
+        for (int i = 0; i < last; i++) {
+            PostingList list = postings.get(queryTokens.get(i));
+            if (list == null) return EMPTY;
+            exact[i] = list.sortedIds();
+            exactSizes[i] = list.size();
+        }
+        sortBySize(exact, exactSizes);
+
+        int[] result = null;
+        int resultSize = 0;
+        for (int i = 0; i < last; i++) {
+            if (result == null) {
+                result = exact[i];
+                resultSize = exactSizes[i];
+            } else {
+                result = PostingList.intersect(result, resultSize, exact[i], exactSizes[i]);
+                resultSize = result.length;
+            }
+            if (resultSize == 0) return EMPTY;
+        }
+
+        int[] prefixIds = prefixUnion(queryTokens.get(last));
+        if (result == null) return prefixIds;
+        return PostingList.intersect(result, resultSize, prefixIds, prefixIds.length);
+    }
+
+    /**
+     * @return True if any query token is long enough to be matched with typos
+     */
+    static boolean allowsTypos(List<String> queryTokens) {
+        for (String token : queryTokens) {
+            if (LevenshteinAutomaton.maxDistanceFor(token) > 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Typo-tolerant version of query. Every query token must match some document token
+     * within its edit-distance budget; the last token may also be an exact prefix.
+     * @param queryTokens Normalized query tokens, not empty
+     * @return Matching ids mapped to the sum of the per-token edit distances
+     */
+    Map<Integer, Integer> fuzzyQuery(List<String> queryTokens) {
+        int last = queryTokens.size() - 1;
+        List<Map<Integer, Integer>> perToken = new ArrayList<>(queryTokens.size());
+        for (int i = 0; i <= last; i++) {
+            Map<Integer, Integer> distances = tokenDistances(queryTokens.get(i), i == last);
+            if (distances.isEmpty()) return distances;
+            perToken.add(distances);
+        }
+
+        // Walk the smallest map, summing distances from the others
+        perToken.sort((a, b) -> Integer.compare(a.size(), b.size()));
+        Map<Integer, Integer> result = new HashMap<>();
+        candidates:
+        for (Map.Entry<Integer, Integer> entry : perToken.get(0).entrySet()) {
+            int total = entry.getValue();
+            for (int i = 1; i < perToken.size(); i++) {
+                Integer distance = perToken.get(i).get(entry.getKey());
+                if (distance == null) continue candidates;
+                total += distance;
+            }
+            result.put(entry.getKey(), total);
+        }
+        return result;
+    }
+
+    /**
+     * Every document matching one query token, with the smallest distance of any of its terms
+     */
+    private Map<Integer, Integer> tokenDistances(String token, boolean prefix) {
+        Map<Integer, Integer> distances = new HashMap<>();
+        if (prefix) {
+            for (PostingList list : postings.subMap(token, token + Character.MAX_VALUE).values()) {
+                addPostings(distances, list, 0);
+            }
+        }
+
+        int maxDistance = LevenshteinAutomaton.maxDistanceFor(token);
+        if (maxDistance == 0) {
+            PostingList exact = postings.get(token);
+            if (exact != null && !prefix) {
+                addPostings(distances, exact, 0);
+            }
+            return distances;
+        }
+
+        for (Map.Entry<String, Integer> term : fuzzyTerms(new LevenshteinAutomaton(token, maxDistance)).entrySet()) {
+            addPostings(distances, postings.get(term.getKey()), term.getValue());
+        }
+        return distances;
+    }
+
+    private static void addPostings(Map<Integer, Integer> distances, PostingList list, int distance) {
+        int[] ids = list.sortedIds();
+        for (int i = 0; i < list.size(); i++) {
+            Integer current = distances.get(ids[i]);
+            if (current == null || current > distance) {
+                distances.put(ids[i], distance);
+            }
+        }
+    }
+
+    /**
+     * Walk the automaton over the sorted dictionary. Consecutive terms share the states of
+     * their common prefix, and once a prefix's state is dead every term starting with it
+     * is skipped with a single seek.
+     * @return Accepted terms and their edit distance
+     */
+    Map<String, Integer> fuzzyTerms(LevenshteinAutomaton automaton) {
+        Map<String, Integer> accepted = new HashMap<>();
+        // states.get(d) is the state after the first d chars of the previous term
+        List<int[]> states = new ArrayList<>();
+        states.add(automaton.start());
+        String previous = "";
+
+        String term = postings.isEmpty() ? null : postings.firstKey();
+        while (term != null) {
+            int depth = Math.min(commonPrefixLength(previous, term), states.size() - 1);
+            while (states.size() > depth + 1) {
+                states.remove(states.size() - 1);
+            }
+
+            boolean dead = false;
+            while (depth < term.length()) {
+                int[] next = automaton.step(states.get(depth), term.charAt(depth));
+                states.add(next);
+                depth++;
+                if (!automaton.canMatch(next)) {
+                    dead = true;
+                    break;
+                }
+            }
+            previous = term;
+
+            if (dead) {
+                term = postings.higherKey(term.substring(0, depth) + Character.MAX_VALUE);
+                continue;
+            }
+            int distance = automaton.distance(states.get(depth));
+            if (distance >= 0) {
+                accepted.put(term, distance);
+            }
+            term = postings.higherKey(term);
+        }
+        return accepted;
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Union of the postings of every term starting with prefix
+     */
+    private int[] prefixUnion(String prefix) {
+        SortedMap<String, PostingList> range = postings.subMap(prefix, prefix + Character.MAX_VALUE);
+        if (range.isEmpty()) return EMPTY;
+        if (range.size() == 1) {
+            PostingList only = range.values().iterator().next();
+            return Arrays.copyOf(only.sortedIds(), only.size());
+        }
+
+        // Short prefixes can cover thousands of terms: concatenate, sort once, dedupe
+        int total = 0;
+        for (PostingList list : range.values()) {
+            total += list.size();
+        }
+        int[] ids = new int[total];
+        int n = 0;
+        for (PostingList list : range.values()) {
+            System.arraycopy(list.sortedIds(), 0, ids, n, list.size());
+            n += list.size();
+        }
+        Arrays.sort(ids);
+        int write = 0;
+        for (int read = 0; read < n; read++) {
+            if (write == 0 || ids[write - 1] != ids[read]) {
+                ids[write++] = ids[read];
+            }
+        }
+        return Arrays.copyOf(ids, write);
+    }
+
+    private static void sortBySize(int[][] lists, int[] sizes) {
+        // Insertion sort; queries have a handful of tokens
+        for (int i = 1; i < lists.length; i++) {
+            int[] list = lists[i];
+            int size = sizes[i];
+            int j = i - 1;
+            while (j >= 0 && sizes[j] > size) {
+                lists[j + 1] = lists[j];
+                sizes[j + 1] = sizes[j];
+                j--;
+            }
+            lists[j + 1] = list;
+            sizes[j + 1] = size;
+        }
+    }
+}
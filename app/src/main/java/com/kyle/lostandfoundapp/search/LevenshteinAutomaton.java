@@ -0,0 +1,77 @@
+package com.kyle.lostandfoundapp.search;
+
+/**
+ * Accepts words within a fixed edit distance of a query term. States are rows of the
+ * Levenshtein DP table, so stepping one character costs O(term length), and a state
+ * whose cells all exceed the limit is dead: no word with that prefix can be accepted.
+ * Walking it over a sorted term dictionary lets shared prefixes reuse states and dead
+ * prefixes skip whole ranges of terms.
+ */
+final class LevenshteinAutomaton {
+
+    private final char[] term;
+    private final int maxDistance;
+
+    LevenshteinAutomaton(String term, int maxDistance) {
+        this.term = term.toCharArray();
+        this.maxDistance = maxDistance;
+    }
+
+    /**
+     * Typo budget for a query term: none for very short terms, where any edit gives a
+     * different word, growing with length
+     */
+    static int maxDistanceFor(String term) {
+        int length = term.length();
+        if (length <= 3) return 0;
+        if (length <= 6) return 1;
+        return 2;
+    }
+
+    int getMaxDistance() {
+        return maxDistance;
+    }
+
+    int[] start() {
+        int[] state = new int[term.length + 1];
+        for (int i = 0; i < state.length; i++) {
+            state[i] = i;
+        }
+        return state;
+    }
+
+    /**
+     * @param state State after the word's previous characters
+     * @param c Next character of the word
+     * @return New state; the input is not modified
+     */
+    int[] step(int[] state, char c) {
+        int[] next = new int[state.length];
+        next[0] = state[0] + 1;
+        for (int i = 1; i < state.length; i++) {
+            int substitution = state[i - 1] + (term[i - 1] == c ? 0 : 1);
+            int deletion = next[i - 1] + 1;
+            int insertion = state[i] + 1;
+            next[i] = Math.min(substitution, Math.min(deletion, insertion));
+        }
+        return next;
+    }
+
+    /**
+     * @return False if no continuation of the word can be accepted
+     */
+    boolean canMatch(int[] state) {
+        for (int cell : state) {
+            if (cell <= maxDistance) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Edit distance of the word read so far, or -1 if above the limit
+     */
+    int distance(int[] state) {
+        int distance = state[state.length - 1];
+        return distance <= maxDistance ? distance : -1;
+    }
+}
@@ -0,0 +1,39 @@
+package com.kyle.lostandfoundapp.search;
+
+/**
+ * Where a query matched in a post's title and description, as (start, end) pairs of char
+ * offsets into the original strings, sorted and not overlapping. Folding is one char to
+ * one char, so offsets found in the folded text apply to what is displayed as is.
+ */
+public final class MatchRanges {
+
+    static final int[] NONE = new int[0];
+
+    public static final MatchRanges EMPTY = new MatchRanges(NONE, NONE);
+
+    private final int[] title;
+    private final int[] description;
+
+    MatchRanges(int[] title, int[] description) {
+        this.title = title;
+        this.description = description;
+    }
+
+    /**
+     * @return Start and end offsets, alternating; do not modify
+     */
+    public int[] getTitle() {
+        return title;
+    }
+
+    /**
+     * @return Start and end offsets, alternating; do not modify
+     */
+    public int[] getDescription() {
+        return description;
+    }
+
+    public boolean isEmpty() {
+        return title.length == 0 && description.length == 0;
+    }
+}
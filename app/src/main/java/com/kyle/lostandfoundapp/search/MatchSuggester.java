@@ -0,0 +1,229 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Suggests found posts that may describe the item of a lost post, and the reverse.
+ * Lost and found posts go into two BM25-weighted term indexes (title words count twice).
+ * A post is scored by walking the postings of its own terms in the opposite index, so a
+ * suggestion costs time proportional to how many posts share its words, never a pass
+ * over every lost/found pair. Corpus updates only re-index posts that were added,
+ * edited or deleted.
+ * Shared by the feed (which feeds it every refresh) and the detail screen. Both go
+ * through updateInBackground and suggestInBackground, which run in order on the
+ * suggester's own thread, so the UI thread only ever receives finished suggestions.
+ */
+public class MatchSuggester {
+
+    // Standard BM25 parameters
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // Below this a candidate shares little more than a common word or two
+    static final double MIN_SCORE = 1.0;
+
+    public interface SuggestionCallback {
+        void onSuggestions(List<Post> suggestions);
+    }
+
+    private static MatchSuggester instance;
+
+    // Updates and lookups handed over by the UI run here, in the order they were made
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private final TermIndex lost = new TermIndex();
+    private final TermIndex found = new TermIndex();
+    private final Map<Integer, Post> postsById = new HashMap<>();
+
+    public static synchronized MatchSuggester getInstance() {
+        if (instance == null) {
+            instance = new MatchSuggester();
+        }
+        return instance;
+    }
+
+    /**
+     * Bring the indexes in line with a full post list
+     * @param posts Every post, in any order
+     */
+    public synchronized void update(List<Post> posts) {
+        Map<Integer, Post> previous = new HashMap<>(postsById);
+        postsById.clear();
+
+        for (int i = 0, size = posts.size(); i < size; i++) {
+            Post post = posts.get(i);
+            Integer id = post.getId();
+            if (id == null || post.getIsLost() == null) continue;
+
+            Post old = previous.remove(id);
+            if (old == null) {
+                indexFor(post).add(id, termsOf(post));
+            } else if (old != post && !sameMatchFields(old, post)) {
+                indexFor(old).remove(id);
+                indexFor(post).add(id, termsOf(post));
+            }
+            postsById.put(id, post);
+        }
+
+        for (Map.Entry<Integer, Post> gone : previous.entrySet()) {
+            indexFor(gone.getValue()).remove(gone.getKey());
+        }
+    }
+
+    /**
+     * Run update on the suggester's thread; suggestions asked for afterwards see it
+     * @param posts Every post, in any order; must not change afterwards
+     */
+    public void updateInBackground(List<Post> posts) {
+        worker.execute(() -> update(posts));
+    }
+
+    /**
+     * Run suggest on the suggester's thread, after any update handed over before
+     * @param callbackExecutor Runs the callback, e.g. on the main thread
+     */
+    public void suggestInBackground(Post post, int limit, Executor callbackExecutor, SuggestionCallback callback) {
+        worker.execute(() -> {
+            List<Post> suggestions = suggest(post, limit);
+            callbackExecutor.execute(() -> callback.onSuggestions(suggestions));
+        });
+    }
+
+    /**
+     * Best candidates of the opposite kind, highest score first
+     * @param post Lost or found post; need not be indexed itself
+     * @param limit Maximum number of suggestions
+     */
+    public synchronized List<Post> suggest(Post post, int limit) {
+        if (post.getIsLost() == null) return Collections.emptyList();
+
+        TermIndex opposite = post.getIsLost() ? found : lost;
+        Map<Integer, Double> scores = opposite.score(termsOf(post).keySet());
+
+        // Min-heap of the best `limit` so far
+        PriorityQueue<Map.Entry<Integer, Double>> best = new PriorityQueue<>(limit + 1,
+                (a, b) -> Double.compare(a.getValue(), b.getValue()));
+        for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+            if (entry.getValue() < MIN_SCORE || entry.getKey().equals(post.getId())) continue;
+            best.add(entry);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+
+        List<Post> suggestions = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            suggestions.add(postsById.get(best.poll().getKey()));
+        }
+        Collections.reverse(suggestions);
+        return suggestions;
+    }
+
+    synchronized int getIndexedCount() {
+        return lost.documentCount() + found.documentCount();
+    }
+
+    private TermIndex indexFor(Post post) {
+        return Boolean.TRUE.equals(post.getIsLost()) ? lost : found;
+    }
+
+    /**
+     * Term frequencies over title (counted twice, it names the item) and description.
+     * Contact details are left out: a shared phone number says nothing about the item.
+     */
+    static Map<String, Integer> termsOf(Post post) {
+        List<String> tokens = new ArrayList<>();
+        Tokenizer.tokenize(post.getFoldedTitle(), tokens);
+        Tokenizer.tokenize(post.getFoldedTitle(), tokens);
+        Tokenizer.tokenize(post.getFoldedDescription(), tokens);
+
+        Map<String, Integer> terms = new HashMap<>();
+        for (String token : tokens) {
+            Integer count = terms.get(token);
+            terms.put(token, count == null ? 1 : count + 1);
+        }
+        return terms;
+    }
+
+    private static boolean sameMatchFields(Post a, Post b) {
+        return Objects.equals(a.getTitle(), b.getTitle())
+                && Objects.equals(a.getDescription(), b.getDescription())
+                && Objects.equals(a.getIsLost(), b.getIsLost());
+    }
+
+    /**
+     * Term -> (post id -> term frequency), plus the document lengths BM25 normalizes by
+     */
+    private static final class TermIndex {
+        private final Map<String, Map<Integer, Integer>> postings = new HashMap<>();
+        private final Map<Integer, Map<String, Integer>> documents = new HashMap<>();
+        private final Map<Integer, Integer> lengths = new HashMap<>();
+        private long totalLength;
+
+        void add(int id, Map<String, Integer> terms) {
+            int length = 0;
+            for (Map.Entry<String, Integer> term : terms.entrySet()) {
+                Map<Integer, Integer> list = postings.get(term.getKey());
+                if (list == null) {
+                    list = new HashMap<>();
+                    postings.put(term.getKey(), list);
+                }
+                list.put(id, term.getValue());
+                length += term.getValue();
+            }
+            documents.put(id, terms);
+            lengths.put(id, length);
+            totalLength += length;
+        }
+
+        void remove(int id) {
+            Map<String, Integer> terms = documents.remove(id);
+            if (terms == null) return;
+            for (String term : terms.keySet()) {
+                Map<Integer, Integer> list = postings.get(term);
+                list.remove(id);
+                if (list.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+            totalLength -= lengths.remove(id);
+        }
+
+        int documentCount() {
+            return documents.size();
+        }
+
+        /**
+         * BM25 score of every document sharing at least one query term
+         */
+        Map<Integer, Double> score(Iterable<String> queryTerms) {
+            Map<Integer, Double> scores = new HashMap<>();
+            int n = documents.size();
+            if (n == 0) return scores;
+            double averageLength = (double) totalLength / n;
+
+            for (String term : queryTerms) {
+                Map<Integer, Integer> list = postings.get(term);
+                if (list == null) continue;
+
+                double idf = Math.log(1 + (n - list.size() + 0.5) / (list.size() + 0.5));
+                for (Map.Entry<Integer, Integer> posting : list.entrySet()) {
+                    int tf = posting.getValue();
+                    double norm = K1 * (1 - B + B * lengths.get(posting.getKey()) / averageLength);
+                    double score = idf * tf * (K1 + 1) / (tf + norm);
+                    scores.merge(posting.getKey(), score, Double::sum);
+                }
+            }
+            return scores;
+        }
+    }
+}
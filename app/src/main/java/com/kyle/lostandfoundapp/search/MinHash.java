@@ -0,0 +1,98 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.utils.TextFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MinHash signatures of a post's title and description. The text is folded and
+ * tokenized like the feed search, then cut into overlapping 3-character shingles, so a
+ * repost with a word added, a typo fixed or the words reordered keeps most shingles in
+ * common. The share of equal signature slots estimates the Jaccard similarity of the
+ * two shingle sets.
+ */
+public final class MinHash {
+
+    public static final int NUM_HASHES = 32;
+    // Banding for locality-sensitive lookup: BANDS * ROWS == NUM_HASHES. Two posts land in
+    // a common bucket with probability 1 - (1 - J^4)^8: 98% at J = 0.8, 9% at J = 0.3.
+    static final int BANDS = 8;
+    static final int ROWS = 4;
+
+    private static final int SHINGLE = 3;
+
+    // Fixed so signatures stay comparable with ones persisted by earlier runs
+    private static final long[] SEEDS = new long[NUM_HASHES];
+
+    static {
+        long seed = 0x5DEECE66DL;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            seed = mix(seed + 0x9E3779B97F4A7C15L);
+            SEEDS[i] = seed;
+        }
+    }
+
+    private MinHash() {
+    }
+
+    public static int[] signature(String title, String description) {
+        int[] signature = new int[NUM_HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+
+        String text = normalize(title) + ' ' + normalize(description);
+        if (text.length() < SHINGLE) {
+            text = text + "  ";
+        }
+        for (int start = 0; start + SHINGLE <= text.length(); start++) {
+            long shingle = text.charAt(start) | (long) text.charAt(start + 1) << 16
+                    | (long) text.charAt(start + 2) << 32;
+            for (int i = 0; i < NUM_HASHES; i++) {
+                // Non-negative so MAX_VALUE is a true upper bound
+                int hash = (int) (mix(shingle ^ SEEDS[i]) >>> 33);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Estimated Jaccard similarity of the texts behind two signatures, 0 to 1
+     */
+    public static float similarity(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            if (a[i] == b[i]) equal++;
+        }
+        return (float) equal / NUM_HASHES;
+    }
+
+    /**
+     * Bucket key of one band of a signature; the band number is mixed in so equal rows in
+     * different bands don't collide
+     */
+    static long bandKey(int[] signature, int band) {
+        long key = band;
+        for (int row = band * ROWS, end = row + ROWS; row < end; row++) {
+            key = mix(key * 31 + signature[row]);
+        }
+        return key;
+    }
+
+    private static String normalize(String text) {
+        if (text == null) return "";
+        List<String> tokens = new ArrayList<>();
+        Tokenizer.tokenize(TextFolder.fold(text), tokens);
+        return String.join(" ", tokens);
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,360 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Search index over the feed corpus. Title, description and contact of every post are
+ * tokenized into an InvertedIndex keyed by post id. Posts containing text in a script
+ * written without spaces (Khmer, Thai, CJK...) are also put in a TrigramIndex, and queries
+ * in those scripts keep the old substring semantics through it. When the corpus is replaced
+ * only the posts that were added, edited or deleted since the previous corpus are
+ * re-indexed. Results come back in corpus (display) order, except that typo-tolerant
+ * matches rank by edit distance first. A RankedIndex over the same posts answers
+ * relevance-ordered queries.
+ * Not thread-safe; PostQueryEngine only uses it from its worker thread.
+ */
+class PostIndex {
+
+    private final InvertedIndex index = new InvertedIndex();
+    private final TrigramIndex trigrams = new TrigramIndex();
+    private final RankedIndex rankedIndex = new RankedIndex();
+    private final Map<Integer, Post> postsById = new HashMap<>();
+    private Map<Integer, Integer> positions = new HashMap<>();
+    // Posts without an id cannot be indexed; they are matched by scanning, which is fine
+    // because the server always assigns one
+    private final List<Post> unindexed = new ArrayList<>();
+    private List<Post> corpus = Collections.emptyList();
+
+    private int lastAdded;
+    private int lastUpdated;
+    private int lastRemoved;
+
+    /**
+     * Bring the index in line with a new corpus
+     * @param posts Corpus in display order
+     * @return False if the new corpus has the same text in the same order, so earlier
+     * results (as positions) still hold for it
+     */
+    boolean setCorpus(List<Post> posts) {
+        lastAdded = 0;
+        lastUpdated = 0;
+        lastRemoved = 0;
+        boolean moved = !unindexed.isEmpty() || posts.size() != corpus.size();
+
+        Map<Integer, Post> previous = new HashMap<>(postsById);
+        Map<Integer, Integer> previousPositions = positions;
+        postsById.clear();
+        positions = new HashMap<>(posts.size() * 2);
+        unindexed.clear();
+
+        for (int i = 0; i < posts.size(); i++) {
+            Post post = posts.get(i);
+            Integer id = post.getId();
+            if (id == null) {
+                unindexed.add(post);
+                continue;
+            }
+
+            Post old = previous.remove(id);
+            if (old == null) {
+                indexPost(id, post);
+                lastAdded++;
+            } else if (old != post && !sameText(old, post)) {
+                indexPost(id, post);
+                lastUpdated++;
+            }
+            postsById.put(id, post);
+            positions.put(id, i);
+            if (!moved) {
+                Integer previousPosition = previousPositions.get(id);
+                moved = previousPosition == null || previousPosition != i;
+            }
+        }
+
+        for (Integer id : previous.keySet()) {
+            index.remove(id);
+            trigrams.remove(id);
+            rankedIndex.remove(id);
+            lastRemoved++;
+        }
+        corpus = posts;
+        return moved || !unindexed.isEmpty() || lastAdded + lastUpdated + lastRemoved > 0;
+    }
+
+    List<Post> getCorpus() {
+        return corpus;
+    }
+
+    /**
+     * Every post in the corpus matching the text, in display order
+     * @param text Query text, not empty
+     */
+    List<Post> search(String text) {
+        return search(text, new HashMap<>());
+    }
+
+    /**
+     * Like search, keeping the match offsets a substring scan finds on the way
+     * @param ranges Receives offsets by post id for substring queries; token queries are
+     * answered from the index without reading any text and add nothing
+     */
+    List<Post> search(String text, Map<Integer, MatchRanges> ranges) {
+        if (needsSubstringMatch(text)) {
+            return substringSearch(new SubstringMatcher(text), ranges);
+        }
+
+        List<String> queryTokens = Tokenizer.tokenize(text);
+        if (queryTokens.isEmpty()) return Collections.emptyList();
+
+        if (!InvertedIndex.allowsTypos(queryTokens)) {
+            List<Post> matches = inDisplayOrder(index.query(queryTokens));
+            return withUnindexed(matches, post -> matchesTokens(post, queryTokens));
+        }
+        return ranked(index.fuzzyQuery(queryTokens), queryTokens);
+    }
+
+    /**
+     * Best posts for the text by relevance, best first. Posts without an id are not
+     * indexed and never ranked.
+     * @param queryTokens Tokens of a query for which needsSubstringMatch is false
+     * @param accept Post ids allowed in the result
+     */
+    RankedIndex.TopK rank(List<String> queryTokens, int limit, IntPredicate accept) {
+        return rankedIndex.topK(queryTokens, limit, accept);
+    }
+
+    /**
+     * For field-scoped queries, which look up words per field; only use it on this
+     * index's thread
+     */
+    RankedIndex getRankedIndex() {
+        return rankedIndex;
+    }
+
+    /**
+     * Posts of this corpus by id, in the order given
+     */
+    List<Post> postsOf(int[] ids) {
+        List<Post> posts = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            posts.add(postsById.get(id));
+        }
+        return posts;
+    }
+
+    /**
+     * Narrow an earlier substring result (for a query this one extends) without losing
+     * its order. Only valid for substring queries: typo-tolerant token matches do not
+     * shrink monotonically as the query grows.
+     * @param candidates Posts from this corpus, in display order
+     * @param text Query text for which needsSubstringMatch is true
+     */
+    List<Post> filter(List<Post> candidates, String text) {
+        return filter(candidates, text, new HashMap<>());
+    }
+
+    /**
+     * @param ranges Receives the match offsets found while narrowing, by post id
+     */
+    List<Post> filter(List<Post> candidates, String text, Map<Integer, MatchRanges> ranges) {
+        return PostSearcher.matchAll(candidates, new SubstringMatcher(text), ranges);
+    }
+
+    /**
+     * Queries in a script without word boundaries are matched as plain substrings,
+     * like the feed always did, instead of by word tokens
+     */
+    static boolean needsSubstringMatch(String text) {
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            if (isUnsegmentedScript(codePoint)) return true;
+            i += Character.charCount(codePoint);
+        }
+        return false;
+    }
+
+    private List<Post> substringSearch(SubstringMatcher matcher, Map<Integer, MatchRanges> ranges) {
+        // Too short to have a trigram; such queries match most posts anyway
+        if (matcher.length() < TrigramIndex.GRAM) {
+            return PostSearcher.matchAll(corpus, matcher, ranges);
+        }
+
+        // Any match contains unsegmented text, so it is in the trigram index. Unindexed
+        // posts have no id to key offsets by.
+        List<Post> matches = PostSearcher.matchAll(inDisplayOrder(trigrams.candidates(matcher.pattern())), matcher, ranges);
+        return withUnindexed(matches, matcher::matches);
+    }
+
+    /**
+     * Corpus positions of posts from this corpus, in the order given
+     */
+    int[] positionsOf(List<Post> posts) {
+        int[] result = new int[posts.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = positionOf(posts.get(i));
+        }
+        return result;
+    }
+
+    private List<Post> inDisplayOrder(int[] ids) {
+        int[] order = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            order[i] = positions.get(ids[i]);
+        }
+        Arrays.sort(order);
+
+        List<Post> posts = new ArrayList<>(order.length);
+        for (int position : order) {
+            posts.add(corpus.get(position));
+        }
+        return posts;
+    }
+
+    /**
+     * Order fuzzy matches by edit distance, then newest first
+     * @param distances Post id to summed edit distance of the query tokens
+     */
+    private List<Post> ranked(Map<Integer, Integer> distances, List<String> queryTokens) {
+        long[] keys = new long[distances.size() + unindexed.size()];
+        int n = 0;
+        for (Map.Entry<Integer, Integer> entry : distances.entrySet()) {
+            keys[n++] = rankKey(entry.getValue(), positions.get(entry.getKey()));
+        }
+        // Unindexed posts only get exact matching
+        for (Post post : unindexed) {
+            if (matchesTokens(post, queryTokens)) {
+                keys[n++] = rankKey(0, corpus.indexOf(post));
+            }
+        }
+        Arrays.sort(keys, 0, n);
+
+        List<Post> posts = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            posts.add(corpus.get((int) keys[i]));
+        }
+        return posts;
+    }
+
+    private static long rankKey(int distance, int position) {
+        return ((long) distance << 32) | position;
+    }
+
+    private List<Post> withUnindexed(List<Post> matches, Predicate<Post> matcher) {
+        if (unindexed.isEmpty()) return matches;
+        boolean added = false;
+        for (Post post : unindexed) {
+            if (matcher.test(post)) {
+                matches.add(post);
+                added = true;
+            }
+        }
+        if (added) {
+            Collections.sort(matches, (a, b) -> Integer.compare(positionOf(a), positionOf(b)));
+        }
+        return matches;
+    }
+
+    int getIndexedCount() {
+        return index.documentCount();
+    }
+
+    int getTrigramIndexedCount() {
+        return trigrams.documentCount();
+    }
+
+    int getTermCount() {
+        return index.termCount();
+    }
+
+    /**
+     * @return "added/updated/removed" counts of the last corpus update, for logging
+     */
+    String describeLastUpdate() {
+        return lastAdded + " added, " + lastUpdated + " updated, " + lastRemoved + " removed";
+    }
+
+    private int positionOf(Post post) {
+        Integer position = post.getId() != null ? positions.get(post.getId()) : null;
+        return position != null ? position : corpus.indexOf(post);
+    }
+
+    /**
+     * Same rule as InvertedIndex.query, applied to a single post
+     */
+    private static boolean matchesTokens(Post post, List<String> queryTokens) {
+        List<String> tokens = tokensOf(post);
+        int last = queryTokens.size() - 1;
+        for (int i = 0; i < last; i++) {
+            if (!tokens.contains(queryTokens.get(i))) return false;
+        }
+        String prefix = queryTokens.get(last);
+        for (String token : tokens) {
+            if (token.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    private void indexPost(int id, Post post) {
+        index.put(id, tokensOf(post));
+        rankedIndex.put(id, tokensOf(post.getFoldedTitle()), tokensOf(post.getFoldedDescription()),
+                tokensOf(post.getFoldedContact()));
+
+        if (hasUnsegmentedText(post)) {
+            trigrams.put(id, post.getFoldedTitle(), post.getFoldedDescription(), post.getFoldedContact());
+        } else {
+            trigrams.remove(id);
+        }
+    }
+
+    static List<String> tokensOf(Post post) {
+        List<String> tokens = new ArrayList<>();
+        Tokenizer.tokenize(post.getFoldedTitle(), tokens);
+        Tokenizer.tokenize(post.getFoldedDescription(), tokens);
+        Tokenizer.tokenize(post.getFoldedContact(), tokens);
+        return tokens;
+    }
+
+    private static List<String> tokensOf(char[] folded) {
+        List<String> tokens = new ArrayList<>();
+        Tokenizer.tokenize(folded, tokens);
+        return tokens;
+    }
+
+    private static boolean hasUnsegmentedText(Post post) {
+        return post.getTitle() != null && needsSubstringMatch(post.getTitle())
+                || post.getDescription() != null && needsSubstringMatch(post.getDescription())
+                || post.getContact() != null && needsSubstringMatch(post.getContact());
+    }
+
+    private static boolean isUnsegmentedScript(int codePoint) {
+        switch (Character.UnicodeScript.of(codePoint)) {
+            case KHMER:
+            case THAI:
+            case LAO:
+            case MYANMAR:
+            case TIBETAN:
+            case HAN:
+            case HIRAGANA:
+            case KATAKANA:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean sameText(Post a, Post b) {
+        return Objects.equals(a.getTitle(), b.getTitle())
+                && Objects.equals(a.getDescription(), b.getDescription())
+                && Objects.equals(a.getContact(), b.getContact());
+    }
+}
@@ -0,0 +1,49 @@
+package com.kyle.lostandfoundapp.search;
+
+/**
+ * Immutable description of what the feed should show: free-text query, lost/found
+ * filter, result order and how many results the current page needs.
+ */
+public final class PostQuery {
+
+    public enum Order {
+        // Newest first
+        DATE,
+        // Best BM25 match first for token queries; substring and field-scoped queries fall
+        // back to DATE
+        RELEVANCE
+    }
+
+    private final String text;
+    private final Boolean isLost; // null = all, true = lost, false = found
+    private final int limit;
+    private final Order order;
+
+    public PostQuery(String text, Boolean isLost, int limit) {
+        this(text, isLost, limit, Order.DATE);
+    }
+
+    public PostQuery(String text, Boolean isLost, int limit, Order order) {
+        this.text = text != null ? text.trim() : "";
+        this.isLost = isLost;
+        this.limit = limit;
+        this.order = order;
+    }
+
+    public String getText() { return text; }
+
+    public Boolean getIsLost() { return isLost; }
+
+    public int getLimit() { return limit; }
+
+    public Order getOrder() { return order; }
+
+    public boolean hasText() {
+        return !text.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "PostQuery{text='" + text + "', isLost=" + isLost + ", limit=" + limit + ", order=" + order + "}";
+    }
+}
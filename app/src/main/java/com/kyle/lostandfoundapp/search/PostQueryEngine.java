@@ -0,0 +1,217 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+import com.kyle.lostandfoundapp.utils.TextFolder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+/**
+ * Runs feed sorting, filtering and search on a single worker thread and delivers
+ * immutable results on the callback executor (the main thread in the app).
+ * Every submitted query supersedes the previous one: stale queries are skipped if they
+ * have not started and their results are dropped if they have. Finished queries are
+ * kept in a QueryResultCache until the corpus actually changes. Relevance-ordered queries
+ * are answered by top-k selection, which is cheap enough not to need the cache.
+ * Field-scoped queries (see FieldQuery) run through a QueryPipeline instead of the plain
+ * search, in list order. Results of text queries carry the match offsets of the posts on
+ * the page, found on the worker: substring scans record them as they go, and queries
+ * answered from an index, which never reads the text, get them from a Highlighter pass
+ * over the page. Search-box completions are counted on the worker too,
+ * after each corpus change, and read from the TitleCompleter's published copy.
+ */
+public class PostQueryEngine {
+
+    public interface Callback {
+        void onResult(QueryResult result);
+    }
+
+    public interface CorpusCallback {
+        void onCorpusReady(List<Post> sortedPosts, FacetCounts counts);
+    }
+
+    private final ExecutorService worker;
+    private final Executor callbackExecutor;
+    private final AtomicInteger generation = new AtomicInteger();
+
+    // Only touched on the worker thread
+    private final PostIndex index = new PostIndex();
+    private final FacetIndex facets = new FacetIndex();
+    private final IncrementalSearcher searcher = new IncrementalSearcher();
+    private final QueryResultCache cache = new QueryResultCache();
+    private long corpusVersion;
+    // Updated on the worker only; completions are safe to read from any thread
+    private final TitleCompleter completer = new TitleCompleter();
+
+    public PostQueryEngine(Executor callbackExecutor) {
+        this(Executors.newSingleThreadExecutor(), callbackExecutor);
+    }
+
+    PostQueryEngine(ExecutorService worker, Executor callbackExecutor) {
+        this.worker = worker;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Replace the corpus. Sorting and re-indexing the posts that changed happen on the
+     * worker; queries submitted afterwards run against the new corpus.
+     * @param posts Posts as received from the server; not modified
+     * @param callback Receives the sorted, unmodifiable corpus and its facet counts on the
+     *                 callback executor
+     */
+    public void setCorpus(List<Post> posts, CorpusCallback callback) {
+        worker.execute(() -> {
+            List<Post> sorted = Collections.unmodifiableList(PostSearcher.sortByDate(posts));
+            // Both must see the new list, so no short-circuit
+            boolean changed = index.setCorpus(sorted) | facets.setPosts(sorted);
+            if (changed) {
+                corpusVersion++;
+                cache.clear();
+                // Queued behind the queries submitted along with the corpus, so they
+                // don't wait for the counting
+                worker.execute(() -> completer.update(sorted));
+            }
+            FacetCounts counts = facets.getCounts();
+            if (callback != null) {
+                callbackExecutor.execute(() -> callback.onCorpusReady(sorted, counts));
+            }
+        });
+    }
+
+    /**
+     * Completions of the search box text from frequent title words; may be called from
+     * any thread. Catches up with a new corpus shortly after its callback.
+     */
+    public TitleCompleter getTitleCompleter() {
+        return completer;
+    }
+
+    /**
+     * Run a query, superseding any query submitted before it
+     * @param query Query to run
+     * @param callback Receives the result unless a newer query was submitted meanwhile
+     */
+    public void submit(PostQuery query, Callback callback) {
+        final int token = generation.incrementAndGet();
+        worker.execute(() -> {
+            if (token != generation.get()) return;
+
+            QueryResult result = run(query);
+
+            if (token != generation.get()) return;
+            callbackExecutor.execute(() -> {
+                // A newer query may have been submitted while this one was in transit
+                if (token == generation.get()) {
+                    callback.onResult(result);
+                }
+            });
+        });
+    }
+
+    private QueryResult run(PostQuery query) {
+        List<Post> corpus = index.getCorpus();
+        String text = TextFolder.foldToString(query.getText());
+        if (text.isEmpty() && query.getIsLost() == null) {
+            int count = Math.min(corpus.size(), query.getLimit());
+            return new QueryResult(query, new ArrayList<>(corpus.subList(0, count)), corpus.size());
+        }
+
+        FieldQuery fieldQuery = FieldQuery.parse(text);
+        if (fieldQuery.isStructured()) {
+            return runPipeline(query, text, fieldQuery);
+        }
+
+        if (query.getOrder() == PostQuery.Order.RELEVANCE && !text.isEmpty()
+                && !PostIndex.needsSubstringMatch(text)) {
+            QueryResult ranked = rank(query, text);
+            if (ranked != null) return ranked;
+        }
+
+        int[] positions = cache.get(corpusVersion, text, query.getIsLost());
+        Map<Integer, MatchRanges> ranges;
+        if (positions == null) {
+            List<Post> matches = searcher.search(index, facets, text, query.getIsLost());
+            positions = index.positionsOf(matches);
+            ranges = searcher.getLastRanges();
+            cache.put(corpusVersion, text, query.getIsLost(), positions, ranges);
+        } else {
+            ranges = cache.getRanges(corpusVersion, text, query.getIsLost());
+        }
+        // Substring scans recorded their offsets; token matches came from the index
+        return ranges != null
+                ? PostSearcher.page(corpus, positions, query, ranges)
+                : highlight(PostSearcher.page(corpus, positions, query));
+    }
+
+    private QueryResult runPipeline(PostQuery query, String text, FieldQuery fieldQuery) {
+        int[] positions = cache.get(corpusVersion, text, query.getIsLost());
+        if (positions == null) {
+            RoaringBitmap chip = query.getIsLost() != null ? facets.lostOrFound(query.getIsLost()) : null;
+            List<Post> matches = QueryPipeline.compile(fieldQuery, facets, index.getRankedIndex()).run(chip);
+            positions = index.positionsOf(matches);
+            cache.put(corpusVersion, text, query.getIsLost(), positions);
+        }
+        return highlight(PostSearcher.page(index.getCorpus(), positions, query));
+    }
+
+    /**
+     * @return Null when no post has every query token, so the typo-tolerant date-ordered
+     * search gets a chance
+     */
+    private QueryResult rank(PostQuery query, String text) {
+        List<String> tokens = Tokenizer.tokenize(text);
+        if (tokens.isEmpty()) return null;
+
+        IntPredicate accept = query.getIsLost() == null ? id -> true : facets.lostOrFound(query.getIsLost())::contains;
+        RankedIndex.TopK top = index.rank(tokens, query.getLimit(), accept);
+        if (top.ids.length == 0) return null;
+        return highlight(new QueryResult(query, index.postsOf(top.ids), top.matches));
+    }
+
+    /**
+     * Find match offsets for a result answered from an index, which points at posts but
+     * not at text. Only the page is read: most matches of a broad query are never shown.
+     */
+    private QueryResult highlight(QueryResult result) {
+        String text = TextFolder.foldToString(result.getQuery().getText());
+        if (text.isEmpty() || result.getPosts().isEmpty()) return result;
+
+        Highlighter highlighter = new Highlighter(text);
+        Map<Integer, MatchRanges> ranges = new HashMap<>();
+        for (Post post : result.getPosts()) {
+            if (post.getId() == null) continue;
+            MatchRanges postRanges = highlighter.ranges(post);
+            if (!postRanges.isEmpty()) {
+                ranges.put(post.getId(), postRanges);
+            }
+        }
+        return new QueryResult(result.getQuery(), result.getPosts(), result.getTotalMatches(), ranges);
+    }
+
+    /**
+     * For logging and tests; only read it from the worker thread
+     */
+    QueryResultCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Drop results of anything in flight, e.g. when the screen goes away
+     */
+    public void cancelPending() {
+        generation.incrementAndGet();
+    }
+
+    public void shutdown() {
+        cancelPending();
+        worker.shutdownNow();
+    }
+}
@@ -0,0 +1,200 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Filter, search and sort over a list of posts. Pure functions with no Android
+ * dependencies; PostQueryEngine runs them on its worker thread.
+ */
+public final class PostSearcher {
+
+    // Newest first, posts without a date last
+    static final Comparator<Post> NEWEST_FIRST = new Comparator<Post>() {
+        @Override
+        public int compare(Post p1, Post p2) {
+            boolean has1 = p1.hasCreatedAt();
+            boolean has2 = p2.hasCreatedAt();
+            if (!has1 && !has2) return 0;
+            if (!has1) return 1;
+            if (!has2) return -1;
+            return Long.compare(p2.getCreatedAtMillis(), p1.getCreatedAtMillis());
+        }
+    };
+
+    private PostSearcher() {}
+
+    /**
+     * Server responses are already close to newest-first, and List.sort (TimSort) finds
+     * the naturally sorted runs and merges them, so a sorted response costs one O(n)
+     * pass. With createdAt pre-parsed each comparison is a long compare. See
+     * PostSortBenchmarkTest before replacing this with a hand-rolled incremental sort.
+     * @param posts Posts in any order
+     * @return New list sorted newest first
+     */
+    public static List<Post> sortByDate(List<Post> posts) {
+        List<Post> sorted = new ArrayList<>(posts);
+        sorted.sort(NEWEST_FIRST);
+        return sorted;
+    }
+
+    /**
+     * Run a query over posts already in display order
+     * @param posts Corpus, newest first
+     * @param query Query to run
+     * @return Matching posts up to the query limit, plus the total match count
+     */
+    public static QueryResult search(List<Post> posts, PostQuery query) {
+        if (!query.hasText()) return page(posts, query);
+        return page(matchAll(posts, new SubstringMatcher(query.getText())), query);
+    }
+
+    /**
+     * Every post whose text matches, ignoring the lost/found filter
+     * @param candidates Posts to scan, in display order
+     * @param matcher Query compiled for this keystroke
+     */
+    static List<Post> matchAll(List<Post> candidates, SubstringMatcher matcher) {
+        List<Post> matches = new ArrayList<>();
+        for (int i = 0, size = candidates.size(); i < size; i++) {
+            Post post = candidates.get(i);
+            if (matcher.matches(post)) {
+                matches.add(post);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Like matchAll, but every matching title and description is scanned to the end and
+     * the offsets found are kept, so highlighting needs no second pass. A post that only
+     * matches by contact gets no ranges.
+     * @param ranges Receives the offsets of each matching post that has an id
+     */
+    static List<Post> matchAll(List<Post> candidates, SubstringMatcher matcher,
+                               Map<Integer, MatchRanges> ranges) {
+        List<Post> matches = new ArrayList<>();
+        for (int i = 0, size = candidates.size(); i < size; i++) {
+            Post post = candidates.get(i);
+            int[] title = matcher.rangesIn(post.getFoldedTitle());
+            int[] description = matcher.rangesIn(post.getFoldedDescription());
+            if (title != null || description != null) {
+                matches.add(post);
+                if (post.getId() != null) {
+                    ranges.put(post.getId(), new MatchRanges(title != null ? title : MatchRanges.NONE,
+                            description != null ? description : MatchRanges.NONE));
+                }
+            } else if (matcher.matches(post)) {
+                matches.add(post);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Count matches without collecting them; allocates nothing per post
+     */
+    static int countMatches(List<Post> candidates, SubstringMatcher matcher) {
+        int count = 0;
+        for (int i = 0, size = candidates.size(); i < size; i++) {
+            if (matcher.matches(candidates.get(i))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Apply the lost/found filter and page limit to a full list of text matches
+     */
+    static QueryResult page(List<Post> matches, PostQuery query) {
+        List<Post> results = new ArrayList<>();
+        int total = 0;
+        for (Post post : matches) {
+            if (!matchesFilter(post, query.getIsLost())) continue;
+            total++;
+            if (results.size() < query.getLimit()) {
+                results.add(post);
+            }
+        }
+        return new QueryResult(query, results, total);
+    }
+
+    /**
+     * Page through a cached result
+     * @param corpus Corpus the positions refer to
+     * @param positions Corpus positions of every match, in result order
+     */
+    static QueryResult page(List<Post> corpus, int[] positions, PostQuery query) {
+        int count = Math.min(positions.length, query.getLimit());
+        List<Post> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(corpus.get(positions[i]));
+        }
+        return new QueryResult(query, results, positions.length);
+    }
+
+    /**
+     * Page through a cached result whose scan kept its match offsets
+     * @param ranges Offsets of every match, by post id
+     */
+    static QueryResult page(List<Post> corpus, int[] positions, PostQuery query, Map<Integer, MatchRanges> ranges) {
+        QueryResult page = page(corpus, positions, query);
+        Map<Integer, MatchRanges> pageRanges = new HashMap<>();
+        for (Post post : page.getPosts()) {
+            MatchRanges postRanges = post.getId() != null ? ranges.get(post.getId()) : null;
+            if (postRanges != null) {
+                pageRanges.put(post.getId(), postRanges);
+            }
+        }
+        return new QueryResult(query, page.getPosts(), page.getTotalMatches(), pageRanges);
+    }
+
+    /**
+     * Apply the lost/found filter through a facet bitmap
+     * @param wholeList True if matches is the facet index's whole list, i.e. there is no text query
+     * @param isLost Filter, null for all
+     */
+    static List<Post> applyFilter(List<Post> matches, boolean wholeList, Boolean isLost, FacetIndex facets) {
+        if (isLost == null) return matches;
+        RoaringBitmap facet = facets.lostOrFound(isLost);
+        return wholeList ? facets.select(facet) : facets.filter(matches, facet);
+    }
+
+    /**
+     * Server search results that are not on screen yet, for appending below what the user
+     * is already looking at. Posts are matched by id; the server's order is kept.
+     * @param displayed Posts currently shown
+     * @param serverResults Response of the server search for the same query
+     * @param isLost Filter the results must still satisfy, null for all
+     */
+    public static List<Post> newServerMatches(List<Post> displayed, List<Post> serverResults, Boolean isLost) {
+        Set<Integer> seen = new HashSet<>();
+        for (Post post : displayed) {
+            if (post.getId() != null) {
+                seen.add(post.getId());
+            }
+        }
+
+        List<Post> additions = new ArrayList<>();
+        for (Post post : serverResults) {
+            // Without an id a post can't be told apart from one already shown
+            if (post.getId() == null || !matchesFilter(post, isLost)) continue;
+            if (seen.add(post.getId())) {
+                additions.add(post);
+            }
+        }
+        return additions;
+    }
+
+    static boolean matchesFilter(Post post, Boolean isLost) {
+        return isLost == null || isLost.equals(post.getIsLost());
+    }
+}
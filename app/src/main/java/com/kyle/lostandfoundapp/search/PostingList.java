@@ -0,0 +1,88 @@
+package com.kyle.lostandfoundapp.search;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of post ids backed by a primitive int[]. Appends are O(1) and the
+ * array is sorted lazily the first time it is read after out-of-order appends, so
+ * bulk loads in feed (date) order do not pay for insertion shifts.
+ */
+final class PostingList {
+
+    private int[] ids = new int[4];
+    private int size;
+    private boolean sorted = true;
+
+    void add(int id) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        if (size > 0 && ids[size - 1] >= id) {
+            sorted = false;
+        }
+        ids[size++] = id;
+    }
+
+    void remove(int id) {
+        int index = indexOf(id);
+        if (index < 0) return;
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return The backing array, sorted ascending and valid up to size(); do not modify
+     */
+    int[] sortedIds() {
+        ensureSorted();
+        return ids;
+    }
+
+    private int indexOf(int id) {
+        ensureSorted();
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        return index >= 0 ? index : -1;
+    }
+
+    private void ensureSorted() {
+        if (sorted) return;
+        Arrays.sort(ids, 0, size);
+        // Drop duplicates a re-add might have introduced
+        int write = 0;
+        for (int read = 0; read < size; read++) {
+            if (write == 0 || ids[write - 1] != ids[read]) {
+                ids[write++] = ids[read];
+            }
+        }
+        size = write;
+        sorted = true;
+    }
+
+    /**
+     * Intersect two sorted id arrays
+     */
+    static int[] intersect(int[] a, int aSize, int[] b, int bSize) {
+        int[] out = new int[Math.min(aSize, bSize)];
+        int i = 0, j = 0, n = 0;
+        while (i < aSize && j < bSize) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
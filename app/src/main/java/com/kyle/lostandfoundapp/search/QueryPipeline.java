@@ -0,0 +1,201 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A FieldQuery compiled against one list of posts into filtering stages, cheapest first:
+ * <ol>
+ *     <li>facet bitmaps (lost/found, status, owner and any chip filter), ANDed smallest
+ *     first</li>
+ *     <li>posting lists for word clauses, fewest postings first; each either scans its
+ *     postings or probes them with the posts still left, whichever is smaller</li>
+ *     <li>checks on the posts that are left: word clauses when there is no index to look
+ *     them up in (the admin screen), and substring clauses, shortest field first</li>
+ * </ol>
+ * Every stage only sees what survived the stages before it, and a run stops as soon as
+ * nothing is left. The feed runs it through PostQueryEngine with its index, the admin
+ * screen over its FacetIndex alone.
+ * Not thread-safe; run it on the thread that owns the FacetIndex.
+ */
+public final class QueryPipeline {
+
+    private static final int ALL_FIELDS =
+            (1 << RankedIndex.TITLE) | (1 << RankedIndex.DESCRIPTION) | (1 << RankedIndex.CONTACT);
+
+    /**
+     * A per-post check and roughly how much text it reads
+     */
+    private static final class Check {
+        final FieldQuery.Term term;
+        final Predicate<Post> test;
+        final int cost;
+
+        Check(FieldQuery.Term term, Predicate<Post> test, int cost) {
+            this.term = term;
+            this.test = test;
+            this.cost = cost;
+        }
+    }
+
+    private final FacetIndex facets;
+    private final RankedIndex postings;
+    private final boolean matchesNothing;
+    private final List<RoaringBitmap> bitmaps = new ArrayList<>();
+    private final List<FieldQuery.Term> lookups = new ArrayList<>();
+    private final List<Check> checks = new ArrayList<>();
+
+    /**
+     * Pipeline over a FacetIndex only; word clauses are checked post by post
+     */
+    public static QueryPipeline compile(FieldQuery query, FacetIndex facets) {
+        return new QueryPipeline(query, facets, null);
+    }
+
+    /**
+     * @param postings Index over the same posts as facets, for word clauses
+     */
+    static QueryPipeline compile(FieldQuery query, FacetIndex facets, RankedIndex postings) {
+        return new QueryPipeline(query, facets, postings);
+    }
+
+    private QueryPipeline(FieldQuery query, FacetIndex facets, RankedIndex postings) {
+        this.facets = facets;
+        this.postings = postings;
+        this.matchesNothing = query.matchesNothing();
+
+        for (Boolean kind : query.getKinds()) {
+            bitmaps.add(facets.lostOrFound(kind));
+        }
+        for (String status : query.getStatuses()) {
+            bitmaps.add(facets.status(status));
+        }
+        for (Integer owner : query.getOwners()) {
+            bitmaps.add(facets.ownedBy(owner));
+        }
+
+        for (FieldQuery.Term term : query.getTerms()) {
+            if (!term.substring && postings != null) {
+                lookups.add(term);
+            } else {
+                checks.add(check(term));
+            }
+        }
+        if (postings != null) {
+            lookups.sort(Comparator.comparingInt(term -> postings.postingCount(term.text, term.prefix)));
+        }
+        checks.sort(Comparator.comparingInt(check -> check.cost));
+    }
+
+    /**
+     * @param restrict Facet the results must also be in, e.g. the selected chip; null for none
+     * @return Matching posts in list order
+     */
+    public List<Post> run(RoaringBitmap restrict) {
+        if (matchesNothing) return new ArrayList<>();
+
+        List<RoaringBitmap> facetStages = new ArrayList<>(bitmaps);
+        if (restrict != null) facetStages.add(restrict);
+        facetStages.sort(Comparator.comparingInt(RoaringBitmap::getCardinality));
+
+        // Null while nothing has narrowed the list yet
+        RoaringBitmap candidates = null;
+        for (RoaringBitmap bitmap : facetStages) {
+            candidates = candidates == null ? bitmap : candidates.and(bitmap);
+            if (candidates.isEmpty()) return new ArrayList<>();
+        }
+        for (FieldQuery.Term term : lookups) {
+            candidates = postings.containing(term.text, fieldMask(term.field), term.prefix, candidates);
+            if (candidates.isEmpty()) return new ArrayList<>();
+        }
+
+        List<Post> posts = candidates != null ? facets.select(candidates) : facets.getPosts();
+        List<Post> matches = new ArrayList<>(checks.isEmpty() ? posts.size() : 16);
+        for (int i = 0, size = posts.size(); i < size; i++) {
+            Post post = posts.get(i);
+            if (passes(post)) {
+                matches.add(post);
+            }
+        }
+        return matches;
+    }
+
+    private boolean passes(Post post) {
+        for (int i = 0, size = checks.size(); i < size; i++) {
+            if (!checks.get(i).test.test(post)) return false;
+        }
+        return true;
+    }
+
+    private static Check check(FieldQuery.Term term) {
+        SubstringMatcher matcher = new SubstringMatcher(term.text);
+        Predicate<char[]> test = term.substring
+                ? matcher::matches
+                : text -> matcher.indexOfWord(text, 0, term.prefix) >= 0;
+        return new Check(term, post -> matches(post, term.field, test), cost(term.field));
+    }
+
+    private static boolean matches(Post post, FieldQuery.Field field, Predicate<char[]> test) {
+        switch (field) {
+            case TITLE:
+                return test.test(post.getFoldedTitle());
+            case DESCRIPTION:
+                return test.test(post.getFoldedDescription());
+            case CONTACT:
+                return test.test(post.getFoldedContact());
+            default:
+                return test.test(post.getFoldedTitle())
+                        || test.test(post.getFoldedDescription())
+                        || test.test(post.getFoldedContact());
+        }
+    }
+
+    /**
+     * Relative amount of text a check on the field reads; titles and contacts are one line
+     */
+    private static int cost(FieldQuery.Field field) {
+        switch (field) {
+            case TITLE:
+            case CONTACT:
+                return 1;
+            case DESCRIPTION:
+                return 4;
+            default:
+                return 6;
+        }
+    }
+
+    private static int fieldMask(FieldQuery.Field field) {
+        switch (field) {
+            case TITLE:
+                return 1 << RankedIndex.TITLE;
+            case DESCRIPTION:
+                return 1 << RankedIndex.DESCRIPTION;
+            case CONTACT:
+                return 1 << RankedIndex.CONTACT;
+            default:
+                return ALL_FIELDS;
+        }
+    }
+
+    /**
+     * Stages in the order they run, for logging
+     */
+    @Override
+    public String toString() {
+        StringBuilder plan = new StringBuilder("QueryPipeline{");
+        if (matchesNothing) return plan.append("matches nothing}").toString();
+        plan.append("facets=").append(bitmaps.size());
+        plan.append(", lookups=").append(lookups);
+        plan.append(", checks=[");
+        for (int i = 0; i < checks.size(); i++) {
+            if (i > 0) plan.append(", ");
+            plan.append(checks.get(i).term);
+        }
+        return plan.append("]}").toString();
+    }
+}
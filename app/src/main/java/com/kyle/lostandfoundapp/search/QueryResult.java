@@ -0,0 +1,44 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot handed back to the UI thread for one query
+ */
+public final class QueryResult {
+
+    private final PostQuery query;
+    private final List<Post> posts;
+    private final int totalMatches;
+    private final Map<Integer, MatchRanges> matchRanges;
+
+    public QueryResult(PostQuery query, List<Post> posts, int totalMatches) {
+        this(query, posts, totalMatches, Collections.emptyMap());
+    }
+
+    public QueryResult(PostQuery query, List<Post> posts, int totalMatches, Map<Integer, MatchRanges> matchRanges) {
+        this.query = query;
+        this.posts = Collections.unmodifiableList(posts);
+        this.totalMatches = totalMatches;
+        this.matchRanges = Collections.unmodifiableMap(matchRanges);
+    }
+
+    public PostQuery getQuery() { return query; }
+
+    public List<Post> getPosts() { return posts; }
+
+    /**
+     * Matches in the whole corpus, which can exceed getPosts().size() when paged
+     */
+    public int getTotalMatches() { return totalMatches; }
+
+    /**
+     * Where the query matched, by post id, for the posts in getPosts() that have an exact
+     * text match; empty without a text query
+     */
+    public Map<Integer, MatchRanges> getMatchRanges() { return matchRanges; }
+}
@@ -0,0 +1,116 @@
+package com.kyle.lostandfoundapp.search;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded LRU of finished queries: folded text + lost/found filter + corpus version to
+ * the corpus positions of every match, in result order, plus the match offsets when the
+ * scan recorded them. A hit is paged straight out of the corpus, so flipping between
+ * chips or retyping a recent query scans nothing.
+ * Positions are only meaningful for the corpus version they were computed against,
+ * which is part of the key; PostQueryEngine bumps the version exactly when the corpus
+ * text, facets or order change and clears the cache at the same time.
+ * Not thread-safe; PostQueryEngine only uses it from its worker thread.
+ */
+class QueryResultCache {
+
+    static final int MAX_ENTRIES = 32;
+
+    private static final class Key {
+        final long version;
+        final String text;
+        final Boolean isLost;
+
+        Key(long version, String text, Boolean isLost) {
+            this.version = version;
+            this.text = text;
+            this.isLost = isLost;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return version == other.version && text.equals(other.text)
+                    && Objects.equals(isLost, other.isLost);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = Long.hashCode(version) * 31 + text.hashCode();
+            return hash * 31 + (isLost == null ? 0 : isLost ? 1 : 2);
+        }
+    }
+
+    private static final class Value {
+        final int[] positions;
+        final Map<Integer, MatchRanges> ranges;
+
+        Value(int[] positions, Map<Integer, MatchRanges> ranges) {
+            this.positions = positions;
+            this.ranges = ranges;
+        }
+    }
+
+    // Access-ordered: iteration starts at the least recently used query
+    private final LinkedHashMap<Key, Value> entries = new LinkedHashMap<Key, Value>(MAX_ENTRIES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Value> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private int hits;
+    private int misses;
+
+    /**
+     * @return Positions of every match, or null if the query has not run on this version
+     */
+    int[] get(long version, String text, Boolean isLost) {
+        Value value = entries.get(new Key(version, text, isLost));
+        if (value != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return value != null ? value.positions : null;
+    }
+
+    /**
+     * Match offsets stored with a query; doesn't count as a lookup
+     * @return Offsets by post id, or null if none were recorded
+     */
+    Map<Integer, MatchRanges> getRanges(long version, String text, Boolean isLost) {
+        Value value = entries.get(new Key(version, text, isLost));
+        return value != null ? value.ranges : null;
+    }
+
+    void put(long version, String text, Boolean isLost, int[] positions) {
+        put(version, text, isLost, positions, null);
+    }
+
+    /**
+     * @param ranges Offsets the scan recorded by post id, or null
+     */
+    void put(long version, String text, Boolean isLost, int[] positions, Map<Integer, MatchRanges> ranges) {
+        entries.put(new Key(version, text, isLost), new Value(positions, ranges));
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    int getHits() {
+        return hits;
+    }
+
+    int getMisses() {
+        return misses;
+    }
+}
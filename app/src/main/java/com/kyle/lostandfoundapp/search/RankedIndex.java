@@ -0,0 +1,606 @@
+package com.kyle.lostandfoundapp.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+
+/**
+ * Relevance ranking for feed search. Title, description and contact are scored with
+ * BM25F: term frequencies are length-normalized per field, weighted (a word in the title
+ * says more than one in the contact line) and summed before saturation.
+ * A post matches when it has every query word, the last one as a prefix, the same rule
+ * as InvertedIndex.query. The top k are picked document-at-a-time: the postings of the
+ * words are walked in step from the shortest, galloping ahead, so only posts having all
+ * of them are visited. Every such post is still visited, because the result reports how
+ * many matched. Matches go into a bounded min-heap, and the MaxScore pruning is
+ * score-level only: each word knows the most it can add to any post's score, words are
+ * added strongest first, and a post's score stops being computed as soon as what the
+ * words left could add can't lift it past the heap's weakest entry. Pruning saves score
+ * arithmetic, not posting-list steps. Ranking orders the matches without widening them.
+ * Documents are added, replaced and removed one at a time like InvertedIndex.
+ * Not thread-safe.
+ */
+class RankedIndex {
+
+    static final int TITLE = 0;
+    static final int DESCRIPTION = 1;
+    static final int CONTACT = 2;
+    private static final int FIELDS = 3;
+
+    private static final float[] WEIGHTS = {3f, 1f, 0.5f};
+    private static final float B = 0.75f;
+    private static final float K1 = 1.2f;
+    // Prefix expansions of the token being typed walked side by side; more are merged
+    private static final int MAX_EXPANSIONS = 32;
+    // Per-field term frequency is packed into 10 bits
+    private static final int MAX_TF = 1023;
+
+    private static final TopK NO_MATCHES = new TopK(new int[0], new float[0], 0, 0);
+
+    /**
+     * Ids of the best posts, best first, how many accepted posts matched the query (all of
+     * them visited) and how many of those had to be scored in full to find the best
+     */
+    static final class TopK {
+        final int[] ids;
+        final float[] scores;
+        final int matches;
+        final int scored;
+
+        TopK(int[] ids, float[] scores, int matches, int scored) {
+            this.ids = ids;
+            this.scores = scores;
+            this.matches = matches;
+            this.scored = scored;
+        }
+    }
+
+    /**
+     * Postings of one term: (id << 32 | packed field frequencies), sorted by id lazily
+     */
+    private static final class Postings {
+        long[] entries = new long[2];
+        int size;
+        boolean sorted = true;
+        // Highest normalized frequency of any posting, valid while stamp == index version
+        float maxFrequency;
+        long stamp = -1;
+
+        void add(int id, int packed) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            long entry = (long) id << 32 | packed;
+            if (size > 0 && entries[size - 1] >= entry) {
+                sorted = false;
+            }
+            entries[size++] = entry;
+        }
+
+        void remove(int id) {
+            ensureSorted();
+            int index = find(id, 0);
+            if (index < size && idAt(index) == id) {
+                System.arraycopy(entries, index + 1, entries, index, size - index - 1);
+                size--;
+            }
+        }
+
+        void ensureSorted() {
+            if (!sorted) {
+                Arrays.sort(entries, 0, size);
+                sorted = true;
+            }
+        }
+
+        int idAt(int index) {
+            return (int) (entries[index] >>> 32);
+        }
+
+        int packedAt(int index) {
+            return (int) entries[index];
+        }
+
+        /**
+         * First index at or after from whose id is not below id (galloping, then binary)
+         */
+        int find(int id, int from) {
+            int step = 1;
+            int low = from;
+            int high = from;
+            while (high < size && idAt(high) < id) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            high = Math.min(high, size);
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (idAt(mid) < id) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * One query term during a top-k run
+     */
+    private static final class Cursor {
+        final Postings postings;
+        final float idf;
+        final float bound;
+        int index;
+
+        Cursor(Postings postings, float idf, float bound) {
+            this.postings = postings;
+            this.idf = idf;
+            this.bound = bound;
+        }
+
+        int doc() {
+            return index < postings.size ? postings.idAt(index) : Integer.MAX_VALUE;
+        }
+
+        int advance(int target) {
+            if (doc() < target) {
+                index = postings.find(target, index);
+            }
+            return doc();
+        }
+    }
+
+    /**
+     * What one query word needs of a post: its term, or for the word being typed any term
+     * it starts. Prefixes with many expansions are merged into one list of summed scores
+     * up front, so the walk never steps through dozens of cursors per post.
+     */
+    private static final class Group {
+        // Null when merged
+        final Cursor[] terms;
+        final int[] mergedIds;
+        final float[] mergedScores;
+        final float bound;
+        final int size;
+        int mergedIndex;
+
+        Group(Cursor[] terms) {
+            this.terms = terms;
+            this.mergedIds = null;
+            this.mergedScores = null;
+            float bound = 0;
+            int size = 0;
+            for (Cursor term : terms) {
+                bound += term.bound;
+                size += term.postings.size;
+            }
+            this.bound = bound;
+            this.size = size;
+        }
+
+        Group(int[] mergedIds, float[] mergedScores, float bound) {
+            this.terms = null;
+            this.mergedIds = mergedIds;
+            this.mergedScores = mergedScores;
+            this.bound = bound;
+            this.size = mergedIds.length;
+        }
+
+        int doc() {
+            if (terms == null) {
+                return mergedIndex < mergedIds.length ? mergedIds[mergedIndex] : Integer.MAX_VALUE;
+            }
+            int doc = Integer.MAX_VALUE;
+            for (Cursor term : terms) {
+                doc = Math.min(doc, term.doc());
+            }
+            return doc;
+        }
+
+        /**
+         * Move to the first post at or after target
+         */
+        int advance(int target) {
+            if (terms == null) {
+                int step = 1;
+                while (mergedIndex < mergedIds.length && mergedIds[mergedIndex] < target) {
+                    int next = Math.min(mergedIndex + step, mergedIds.length - 1);
+                    if (mergedIds[next] < target) {
+                        mergedIndex = next + 1;
+                        step <<= 1;
+                    } else {
+                        // Somewhere in (mergedIndex, next]; finish with a binary search
+                        int low = mergedIndex;
+                        int high = next;
+                        while (low < high) {
+                            int mid = (low + high) >>> 1;
+                            if (mergedIds[mid] < target) {
+                                low = mid + 1;
+                            } else {
+                                high = mid;
+                            }
+                        }
+                        mergedIndex = low;
+                    }
+                }
+                return doc();
+            }
+            int doc = Integer.MAX_VALUE;
+            for (Cursor term : terms) {
+                doc = Math.min(doc, term.advance(target));
+            }
+            return doc;
+        }
+    }
+
+    private final TreeMap<String, Postings> postings = new TreeMap<>();
+    private final Map<Integer, String[]> documentTerms = new HashMap<>();
+    private final Map<Integer, int[]> fieldLengths = new HashMap<>();
+    private final long[] totalLengths = new long[FIELDS];
+    // Bumped on every change; cached term bounds from older versions are recomputed
+    private long version;
+
+    /**
+     * Index a document, replacing whatever was indexed for the same id before
+     */
+    void put(int id, List<String> title, List<String> description, List<String> contact) {
+        remove(id);
+
+        List<List<String>> fields = new ArrayList<>(FIELDS);
+        fields.add(title);
+        fields.add(description);
+        fields.add(contact);
+        Map<String, int[]> frequencies = new HashMap<>();
+        int[] lengths = new int[FIELDS];
+        for (int field = 0; field < FIELDS; field++) {
+            for (String token : fields.get(field)) {
+                int[] tf = frequencies.get(token);
+                if (tf == null) {
+                    tf = new int[FIELDS];
+                    frequencies.put(token, tf);
+                }
+                tf[field]++;
+            }
+            lengths[field] = fields.get(field).size();
+            totalLengths[field] += lengths[field];
+        }
+
+        for (Map.Entry<String, int[]> term : frequencies.entrySet()) {
+            Postings list = postings.get(term.getKey());
+            if (list == null) {
+                list = new Postings();
+                postings.put(term.getKey(), list);
+            }
+            list.add(id, pack(term.getValue()));
+        }
+        documentTerms.put(id, frequencies.keySet().toArray(new String[0]));
+        fieldLengths.put(id, lengths);
+        version++;
+    }
+
+    void remove(int id) {
+        String[] terms = documentTerms.remove(id);
+        if (terms == null) return;
+        for (String term : terms) {
+            Postings list = postings.get(term);
+            list.remove(id);
+            if (list.size == 0) {
+                postings.remove(term);
+            }
+        }
+        int[] lengths = fieldLengths.remove(id);
+        for (int field = 0; field < FIELDS; field++) {
+            totalLengths[field] -= lengths[field];
+        }
+        version++;
+    }
+
+    int documentCount() {
+        return documentTerms.size();
+    }
+
+    /**
+     * Postings of the token, or of every term it starts; an upper bound on the size of
+     * containing()
+     */
+    int postingCount(String token, boolean prefix) {
+        int count = 0;
+        for (Postings list : postingsFor(token, prefix)) {
+            count += list.size;
+        }
+        return count;
+    }
+
+    /**
+     * Posts having the token in one of the fields
+     * @param fieldMask Bit (1 << field) for each field to look in
+     * @param prefix Also match every term the token starts
+     * @param within Only these posts, or null for all. When it is smaller than the postings
+     *               each of its posts is looked up instead of scanning the postings.
+     */
+    RoaringBitmap containing(String token, int fieldMask, boolean prefix, RoaringBitmap within) {
+        // Field bits of every field in the mask, at their packed positions
+        int bits = 0;
+        for (int field = 0; field < FIELDS; field++) {
+            if ((fieldMask & (1 << field)) != 0) bits |= MAX_TF << (field * 10);
+        }
+
+        List<Postings> lists = postingsFor(token, prefix);
+        RoaringBitmap result = new RoaringBitmap();
+        if (within != null && within.getCardinality() < postingCount(token, prefix)) {
+            int[] ids = within.toArray();
+            for (Postings list : lists) {
+                list.ensureSorted();
+                int index = 0;
+                for (int id : ids) {
+                    index = list.find(id, index);
+                    if (index == list.size) break;
+                    if (list.idAt(index) == id && (list.packedAt(index) & bits) != 0) {
+                        result.add(id);
+                    }
+                }
+            }
+            return result;
+        }
+
+        for (Postings list : lists) {
+            for (int i = 0; i < list.size; i++) {
+                int id = list.idAt(i);
+                if ((list.packedAt(i) & bits) != 0 && (within == null || within.contains(id))) {
+                    result.add(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    private List<Postings> postingsFor(String token, boolean prefix) {
+        if (prefix) {
+            return new ArrayList<>(postings.subMap(token, token + Character.MAX_VALUE).values());
+        }
+        Postings list = postings.get(token);
+        return list != null ? Collections.singletonList(list) : Collections.emptyList();
+    }
+
+    /**
+     * Best k of the posts having every query token
+     * @param queryTokens Normalized tokens; the last one is matched as a prefix
+     * @param accept Posts allowed in the result, e.g. the lost/found filter
+     */
+    TopK topK(List<String> queryTokens, int k, IntPredicate accept) {
+        return topK(queryTokens, k, accept, true);
+    }
+
+    /**
+     * @param prune False scores every match, for checking the pruning in tests
+     */
+    TopK topK(List<String> queryTokens, int k, IntPredicate accept, boolean prune) {
+        float[] averages = averageLengths();
+        List<Group> groups = groupsFor(queryTokens, averages);
+        if (groups == null || k <= 0) return NO_MATCHES;
+        int n = groups.size();
+
+        // Walked from the shortest postings; scored from the strongest word, so that
+        // remaining[i], the most words i.. can still add, falls fast
+        groups.sort((a, b) -> Integer.compare(a.size, b.size));
+        Group[] byBound = groups.toArray(new Group[0]);
+        Arrays.sort(byBound, (a, b) -> Float.compare(b.bound, a.bound));
+        float[] remaining = new float[n + 1];
+        for (int i = n - 1; i >= 0; i--) {
+            remaining[i] = remaining[i + 1] + byBound[i].bound;
+        }
+
+        // Min-heap of {score bits, id}: bits of non-negative floats order like the floats.
+        // On equal scores the older (lower id) post is evicted first. Posts are visited in
+        // id order, so a later post that ties the weakest entry is newer and replaces it;
+        // pruning therefore only gives up on posts that fall strictly below the threshold.
+        PriorityQueue<long[]> heap = new PriorityQueue<>(k + 1,
+                (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        float threshold = 0;
+        int matches = 0;
+        int scored = 0;
+
+        Group lead = groups.get(0);
+        int doc = lead.advance(0);
+        while (doc != Integer.MAX_VALUE) {
+            // Every other word must be in the same post; otherwise restart from where one is
+            int next = doc;
+            for (int i = 1; i < n && next == doc; i++) {
+                next = groups.get(i).advance(doc);
+            }
+            if (next != doc) {
+                doc = next == Integer.MAX_VALUE ? next : lead.advance(next);
+                continue;
+            }
+
+            if (accept.test(doc)) {
+                matches++;
+                float score = 0;
+                boolean viable = true;
+                // Score-level pruning: the post was visited and counted, only the rest of
+                // its score is skipped
+                for (int i = 0; i < n; i++) {
+                    if (prune && heap.size() == k && score + remaining[i] < threshold) {
+                        viable = false;
+                        break;
+                    }
+                    score += groupScore(byBound[i], doc, averages);
+                }
+                if (viable) {
+                    scored++;
+                    if (heap.size() < k || score >= threshold) {
+                        heap.add(new long[]{Float.floatToIntBits(score), doc});
+                        if (heap.size() > k) {
+                            heap.poll();
+                        }
+                        if (heap.size() == k) {
+                            threshold = Float.intBitsToFloat((int) heap.peek()[0]);
+                        }
+                    }
+                }
+            }
+            doc = doc == Integer.MAX_VALUE - 1 ? Integer.MAX_VALUE : lead.advance(doc + 1);
+        }
+
+        int count = heap.size();
+        int[] ids = new int[count];
+        float[] scores = new float[count];
+        for (int i = count - 1; i >= 0; i--) {
+            long[] entry = heap.poll();
+            ids[i] = (int) entry[1];
+            scores[i] = Float.intBitsToFloat((int) entry[0]);
+        }
+        return new TopK(ids, scores, matches, scored);
+    }
+
+    /**
+     * @return One group per distinct query word, or null when one of them is in no post
+     */
+    private List<Group> groupsFor(List<String> queryTokens, float[] averages) {
+        List<Group> groups = new ArrayList<>();
+        int last = queryTokens.size() - 1;
+        List<Postings> required = new ArrayList<>();
+
+        for (int i = 0; i < last; i++) {
+            Postings list = postings.get(queryTokens.get(i));
+            if (list == null) return null;
+            if (!required.contains(list)) {
+                required.add(list);
+                groups.add(new Group(new Cursor[]{cursor(list, averages)}));
+            }
+        }
+
+        String prefix = queryTokens.get(last);
+        List<Postings> expanded = new ArrayList<>(postings.subMap(prefix, prefix + Character.MAX_VALUE).values());
+        if (expanded.isEmpty()) return null;
+        for (Postings list : expanded) {
+            // An earlier word already starts with the prefix, so every match has an expansion
+            if (required.contains(list)) return groups;
+        }
+        if (expanded.size() > MAX_EXPANSIONS) {
+            groups.add(merged(expanded, averages));
+        } else {
+            Cursor[] terms = new Cursor[expanded.size()];
+            for (int i = 0; i < terms.length; i++) {
+                terms[i] = cursor(expanded.get(i), averages);
+            }
+            groups.add(new Group(terms));
+        }
+        return groups;
+    }
+
+    /**
+     * Every post having one of the lists' terms, with their scores summed
+     */
+    private Group merged(List<Postings> lists, float[] averages) {
+        int total = 0;
+        for (Postings list : lists) {
+            total += list.size;
+        }
+        // (id << 32 | score bits), so sorting groups each post's scores together
+        long[] entries = new long[total];
+        int n = 0;
+        for (Postings list : lists) {
+            Cursor cursor = cursor(list, averages);
+            for (cursor.index = 0; cursor.index < list.size; cursor.index++) {
+                float score = termScore(cursor, cursor.doc(), averages);
+                entries[n++] = (long) cursor.doc() << 32 | (Float.floatToIntBits(score) & 0xffffffffL);
+            }
+        }
+        Arrays.sort(entries);
+
+        int[] ids = new int[total];
+        float[] scores = new float[total];
+        int size = 0;
+        float bound = 0;
+        for (long entry : entries) {
+            int id = (int) (entry >>> 32);
+            float score = Float.intBitsToFloat((int) entry);
+            if (size > 0 && ids[size - 1] == id) {
+                scores[size - 1] += score;
+            } else {
+                ids[size] = id;
+                scores[size++] = score;
+            }
+            bound = Math.max(bound, scores[size - 1]);
+        }
+        return new Group(Arrays.copyOf(ids, size), Arrays.copyOf(scores, size), bound);
+    }
+
+    private float groupScore(Group group, int doc, float[] averages) {
+        if (group.terms == null) {
+            return group.mergedScores[group.mergedIndex];
+        }
+        float score = 0;
+        for (Cursor term : group.terms) {
+            if (term.doc() == doc) {
+                score += termScore(term, doc, averages);
+            }
+        }
+        return score;
+    }
+
+    private Cursor cursor(Postings list, float[] averages) {
+        list.ensureSorted();
+        int documents = documentTerms.size();
+        float idf = (float) Math.log(1 + (documents - list.size + 0.5) / (list.size + 0.5));
+
+        if (list.stamp != version) {
+            float max = 0;
+            for (int i = 0; i < list.size; i++) {
+                max = Math.max(max, normalizedFrequency(list.packedAt(i), fieldLengths.get(list.idAt(i)), averages));
+            }
+            list.maxFrequency = max;
+            list.stamp = version;
+        }
+        return new Cursor(list, idf, saturate(idf, list.maxFrequency));
+    }
+
+    private float termScore(Cursor cursor, int doc, float[] averages) {
+        int packed = cursor.postings.packedAt(cursor.index);
+        return saturate(cursor.idf, normalizedFrequency(packed, fieldLengths.get(doc), averages));
+    }
+
+    private float[] averageLengths() {
+        float[] averages = new float[FIELDS];
+        int documents = Math.max(1, documentTerms.size());
+        for (int field = 0; field < FIELDS; field++) {
+            averages[field] = Math.max(1f, (float) totalLengths[field] / documents);
+        }
+        return averages;
+    }
+
+    /**
+     * Weighted, length-normalized term frequency summed over the fields (BM25F)
+     */
+    private static float normalizedFrequency(int packed, int[] lengths, float[] averages) {
+        float frequency = 0;
+        for (int field = 0; field < FIELDS; field++) {
+            int tf = (packed >>> (field * 10)) & MAX_TF;
+            if (tf == 0) continue;
+            frequency += WEIGHTS[field] * tf / (1 - B + B * lengths[field] / averages[field]);
+        }
+        return frequency;
+    }
+
+    private static float saturate(float idf, float frequency) {
+        return idf * frequency * (K1 + 1) / (frequency + K1);
+    }
+
+    private static int pack(int[] tf) {
+        int packed = 0;
+        for (int field = 0; field < FIELDS; field++) {
+            packed |= Math.min(tf[field], MAX_TF) << (field * 10);
+        }
+        return packed;
+    }
+}
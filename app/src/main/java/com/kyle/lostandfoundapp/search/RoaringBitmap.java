@@ -0,0 +1,300 @@
+package com.kyle.lostandfoundapp.search;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of non-negative ints in the style of Roaring bitmaps. Values are split
+ * by their high 16 bits into chunks; a chunk holds a sorted char[] while it has at most
+ * 4096 values and switches to a 1024-word bitset above that. Post ids are small and
+ * dense, so a facet over a few thousand posts fits in one or two chunks and an AND is
+ * a merge of short sorted arrays or a word-wise AND.
+ * Not thread-safe.
+ */
+public final class RoaringBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+
+    private int[] keys = new int[2];
+    private Container[] containers = new Container[2];
+    private int size;
+    private int cardinality;
+
+    public void add(int value) {
+        int index = indexOf(value >>> 16);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, value >>> 16, new ArrayContainer());
+        }
+        Container container = containers[index];
+        if (container.add((char) value)) {
+            cardinality++;
+            if (container instanceof ArrayContainer && container.cardinality() > ARRAY_MAX) {
+                containers[index] = ((ArrayContainer) container).toBitmap();
+            }
+        }
+    }
+
+    public void remove(int value) {
+        int index = indexOf(value >>> 16);
+        if (index < 0) return;
+        Container container = containers[index];
+        if (!container.remove((char) value)) return;
+        cardinality--;
+        if (container.cardinality() == 0) {
+            removeContainer(index);
+        } else if (container instanceof BitmapContainer && container.cardinality() <= ARRAY_MAX) {
+            containers[index] = ((BitmapContainer) container).toArray();
+        }
+    }
+
+    public boolean contains(int value) {
+        int index = indexOf(value >>> 16);
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    public int getCardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * @return New bitmap with the values present in both
+     */
+    public RoaringBitmap and(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.insertContainer(result.size, keys[i], container);
+                    result.cardinality += container.cardinality();
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Values in ascending order
+     */
+    public int[] toArray() {
+        int[] values = new int[cardinality];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            n = containers[i].copyTo(values, n, keys[i] << 16);
+        }
+        return values;
+    }
+
+    private int indexOf(int key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertContainer(int index, int key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        size--;
+        containers[size] = null;
+    }
+
+    private abstract static class Container {
+        abstract boolean add(char value);
+
+        abstract boolean remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract Container and(Container other);
+
+        abstract int copyTo(int[] out, int offset, int high);
+    }
+
+    /**
+     * Sparse chunk: sorted values
+     */
+    private static final class ArrayContainer extends Container {
+        char[] values = new char[4];
+        int count;
+
+        @Override
+        boolean add(char value) {
+            int index = Arrays.binarySearch(values, 0, count, value);
+            if (index >= 0) return false;
+            index = -index - 1;
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            System.arraycopy(values, index, values, index + 1, count - index);
+            values[index] = value;
+            count++;
+            return true;
+        }
+
+        @Override
+        boolean remove(char value) {
+            int index = Arrays.binarySearch(values, 0, count, value);
+            if (index < 0) return false;
+            System.arraycopy(values, index + 1, values, index, count - index - 1);
+            count--;
+            return true;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, count, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return count;
+        }
+
+        @Override
+        Container and(Container other) {
+            ArrayContainer result = new ArrayContainer();
+            result.values = new char[Math.max(1, count)];
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                int i = 0, j = 0;
+                while (i < count && j < array.count) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result.values[result.count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    if (other.contains(values[i])) {
+                        result.values[result.count++] = values[i];
+                    }
+                }
+            }
+            return result;
+        }
+
+        @Override
+        int copyTo(int[] out, int offset, int high) {
+            for (int i = 0; i < count; i++) {
+                out[offset++] = high | values[i];
+            }
+            return offset;
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < count; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    /**
+     * Dense chunk: one bit per possible low value
+     */
+    private static final class BitmapContainer extends Container {
+        final long[] words = new long[BITMAP_WORDS];
+        int count;
+
+        @Override
+        boolean add(char value) {
+            long bit = 1L << value;
+            int word = value >>> 6;
+            if ((words[word] & bit) != 0) return false;
+            words[word] |= bit;
+            count++;
+            return true;
+        }
+
+        @Override
+        boolean remove(char value) {
+            long bit = 1L << value;
+            int word = value >>> 6;
+            if ((words[word] & bit) == 0) return false;
+            words[word] &= ~bit;
+            count--;
+            return true;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return count;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            BitmapContainer bitmap = (BitmapContainer) other;
+            BitmapContainer result = new BitmapContainer();
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result.words[i] = words[i] & bitmap.words[i];
+                result.count += Long.bitCount(result.words[i]);
+            }
+            return result.count <= ARRAY_MAX ? result.toArray() : result;
+        }
+
+        @Override
+        int copyTo(int[] out, int offset, int high) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    int bit = Long.numberOfTrailingZeros(word);
+                    out[offset++] = high | (i << 6) | bit;
+                    word &= word - 1;
+                }
+            }
+            return offset;
+        }
+
+        ArrayContainer toArray() {
+            ArrayContainer array = new ArrayContainer();
+            array.values = new char[Math.max(1, count)];
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    int bit = Long.numberOfTrailingZeros(word);
+                    array.values[array.count++] = (char) ((i << 6) | bit);
+                    word &= word - 1;
+                }
+            }
+            return array;
+        }
+    }
+}
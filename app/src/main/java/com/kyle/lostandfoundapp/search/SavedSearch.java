@@ -0,0 +1,29 @@
+package com.kyle.lostandfoundapp.search;
+
+/**
+ * A search the user asked to be alerted about: query text plus the kind of post to
+ * watch for. Stored as JSON by SavedSearchAlerts, so fields stay plain.
+ */
+public final class SavedSearch {
+
+    private final long id;
+    private final String text;
+    private final Boolean isLost; // null = any post, true = lost, false = found
+
+    public SavedSearch(long id, String text, Boolean isLost) {
+        this.id = id;
+        this.text = text != null ? text.trim() : "";
+        this.isLost = isLost;
+    }
+
+    public long getId() { return id; }
+
+    public String getText() { return text; }
+
+    public Boolean getIsLost() { return isLost; }
+
+    @Override
+    public String toString() {
+        return "SavedSearch{id=" + id + ", text='" + text + "', isLost=" + isLost + "}";
+    }
+}
@@ -0,0 +1,166 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+import com.kyle.lostandfoundapp.utils.TextFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Query-side index for standing searches: instead of running every saved search over the
+ * feed, each new or edited post is run against the saved searches. Every search is
+ * compiled once into folded tokens and filed under its longest token (the most selective
+ * one). A post then only looks up the prefixes of its own tokens, and just the few
+ * searches found that way are checked in full, so the cost per post depends on the post's
+ * length rather than on how many searches are saved.
+ * A search matches when every one of its tokens is a prefix of some token of the post
+ * ("umbrel" matches "umbrella"), and the post is of the kind it watches for. Searches in
+ * scripts without word boundaries fall back to substring matching, like the feed does.
+ * Not thread-safe.
+ */
+public class SavedSearchIndex {
+
+    private static final class Compiled {
+        final SavedSearch search;
+        final String anchor;
+        final String[] tokens;
+        final SubstringMatcher substring;
+        // Last match() call that looked at this search, so each is checked once per post
+        int stamp;
+
+        Compiled(SavedSearch search, String anchor, String[] tokens, SubstringMatcher substring) {
+            this.search = search;
+            this.anchor = anchor;
+            this.tokens = tokens;
+            this.substring = substring;
+        }
+    }
+
+    private final Map<String, List<Compiled>> byAnchor = new HashMap<>();
+    // Lengths some anchor has; prefixes of other lengths are not looked up
+    private final BitSet anchorLengths = new BitSet();
+    private final List<Compiled> substringSearches = new ArrayList<>();
+    private final Map<Long, Compiled> byId = new HashMap<>();
+    private int stamp;
+
+    /**
+     * Add a search, replacing any search with the same id
+     * @return False if the search has nothing to match on (e.g. only punctuation)
+     */
+    public boolean add(SavedSearch search) {
+        remove(search.getId());
+
+        String text = TextFolder.foldToString(search.getText());
+        if (PostIndex.needsSubstringMatch(text)) {
+            Compiled compiled = new Compiled(search, null, null, new SubstringMatcher(text));
+            substringSearches.add(compiled);
+            byId.put(search.getId(), compiled);
+            return true;
+        }
+
+        List<String> tokens = Tokenizer.tokenize(text);
+        if (tokens.isEmpty()) return false;
+
+        String anchor = tokens.get(0);
+        for (String token : tokens) {
+            if (token.length() > anchor.length()) {
+                anchor = token;
+            }
+        }
+        Compiled compiled = new Compiled(search, anchor, tokens.toArray(new String[0]), null);
+        List<Compiled> anchored = byAnchor.get(anchor);
+        if (anchored == null) {
+            anchored = new ArrayList<>(1);
+            byAnchor.put(anchor, anchored);
+        }
+        anchored.add(compiled);
+        anchorLengths.set(anchor.length());
+        byId.put(search.getId(), compiled);
+        return true;
+    }
+
+    public void remove(long id) {
+        Compiled compiled = byId.remove(id);
+        if (compiled == null) return;
+
+        if (compiled.substring != null) {
+            substringSearches.remove(compiled);
+            return;
+        }
+        List<Compiled> anchored = byAnchor.get(compiled.anchor);
+        anchored.remove(compiled);
+        if (anchored.isEmpty()) {
+            byAnchor.remove(compiled.anchor);
+        }
+        // anchorLengths may keep a length nothing uses; that only costs a missed lookup
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * Saved searches the post satisfies
+     * @param post New or edited post
+     */
+    public List<SavedSearch> match(Post post) {
+        List<SavedSearch> matches = new ArrayList<>();
+        stamp++;
+
+        String[] tokens = PostIndex.tokensOf(post).toArray(new String[0]);
+        Arrays.sort(tokens);
+        String previous = null;
+        for (String token : tokens) {
+            if (token.equals(previous)) continue;
+            previous = token;
+
+            for (int length = anchorLengths.nextSetBit(1);
+                 length != -1 && length <= token.length();
+                 length = anchorLengths.nextSetBit(length + 1)) {
+                List<Compiled> anchored = byAnchor.get(token.substring(0, length));
+                if (anchored == null) continue;
+                for (int i = 0, size = anchored.size(); i < size; i++) {
+                    Compiled compiled = anchored.get(i);
+                    if (compiled.stamp == stamp) continue;
+                    compiled.stamp = stamp;
+                    if (watches(compiled.search, post) && allTokensMatch(compiled.tokens, tokens)) {
+                        matches.add(compiled.search);
+                    }
+                }
+            }
+        }
+
+        for (int i = 0, size = substringSearches.size(); i < size; i++) {
+            Compiled compiled = substringSearches.get(i);
+            if (watches(compiled.search, post) && compiled.substring.matches(post)) {
+                matches.add(compiled.search);
+            }
+        }
+        return matches;
+    }
+
+    private static boolean watches(SavedSearch search, Post post) {
+        return PostSearcher.matchesFilter(post, search.getIsLost());
+    }
+
+    /**
+     * @param postTokens Sorted; the first token not below a query token is the only one
+     * that can start with it
+     */
+    private static boolean allTokensMatch(String[] queryTokens, String[] postTokens) {
+        for (String queryToken : queryTokens) {
+            int index = Arrays.binarySearch(postTokens, queryToken);
+            if (index < 0) {
+                index = -index - 1;
+                if (index == postTokens.length || !postTokens[index].startsWith(queryToken)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
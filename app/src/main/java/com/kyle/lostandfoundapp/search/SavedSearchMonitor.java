@@ -0,0 +1,90 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Runs saved searches against each feed refresh, looking only at the posts that arrived or
+ * changed since the previous refresh. Within a process, changes are found by comparing
+ * each post's text and kind with what was seen last time. The first refresh after a
+ * restart has nothing to compare with, so there only posts with an id above the persisted
+ * high-water mark count as new (the server hands out increasing ids). The previous
+ * refresh's posts are kept for the comparison, so an edit is never missed the way it
+ * could be with a hash of the text.
+ * Not thread-safe.
+ */
+public class SavedSearchMonitor {
+
+    private final SavedSearchIndex index = new SavedSearchIndex();
+    // Post id -> the post as matched against last time
+    private Map<Integer, Post> seen;
+    private int highWaterId;
+
+    /**
+     * @param highWaterId Highest post id seen by an earlier process, 0 if none
+     */
+    public SavedSearchMonitor(int highWaterId) {
+        this.highWaterId = highWaterId;
+    }
+
+    public SavedSearchIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Highest post id seen so far; persist it so a restart doesn't re-alert old posts
+     */
+    public int getHighWaterId() {
+        return highWaterId;
+    }
+
+    /**
+     * Match the new and changed posts of a refresh against the saved searches
+     * @param posts Every post of the refresh, in any order
+     * @return Each new or changed post that matched, with the searches it matched
+     */
+    public Map<Post, List<SavedSearch>> onRefresh(List<Post> posts) {
+        Map<Post, List<SavedSearch>> alerts = new LinkedHashMap<>();
+        Map<Integer, Post> current = new HashMap<>(posts.size() * 2);
+        int maxId = highWaterId;
+
+        for (int i = 0, size = posts.size(); i < size; i++) {
+            Post post = posts.get(i);
+            Integer id = post.getId();
+            if (id == null) continue;
+
+            current.put(id, post);
+            maxId = Math.max(maxId, id);
+
+            boolean fresh;
+            if (seen == null) {
+                fresh = id > highWaterId;
+            } else {
+                Post previous = seen.get(id);
+                fresh = previous == null || (previous != post && !sameMatchFields(previous, post));
+            }
+            if (!fresh || index.size() == 0) continue;
+
+            List<SavedSearch> matches = index.match(post);
+            if (!matches.isEmpty()) {
+                alerts.put(post, matches);
+            }
+        }
+
+        seen = current;
+        highWaterId = maxId;
+        return alerts;
+    }
+
+    private static boolean sameMatchFields(Post a, Post b) {
+        return Objects.equals(a.getTitle(), b.getTitle())
+                && Objects.equals(a.getDescription(), b.getDescription())
+                && Objects.equals(a.getContact(), b.getContact())
+                && Objects.equals(a.getIsLost(), b.getIsLost());
+    }
+}
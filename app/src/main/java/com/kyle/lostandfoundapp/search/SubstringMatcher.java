@@ -0,0 +1,126 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+import com.kyle.lostandfoundapp.utils.TextFolder;
+
+import java.util.Arrays;
+
+/**
+ * A search query compiled once per keystroke into a Boyer-Moore-Horspool matcher over
+ * folded text. Matching a post reads its pre-folded projections and allocates nothing.
+ */
+public final class SubstringMatcher {
+
+    // Bad-character table indexed by the low byte of a char. Chars sharing a bucket keep
+    // the smallest shift, which is always safe.
+    private static final int TABLE_MASK = 0xFF;
+
+    private final char[] pattern;
+    private final int[] shift = new int[TABLE_MASK + 1];
+
+    /**
+     * @param query Raw query text; folded here
+     */
+    public SubstringMatcher(String query) {
+        pattern = TextFolder.fold(query);
+        int m = pattern.length;
+        Arrays.fill(shift, Math.max(m, 1));
+        for (int i = 0; i < m - 1; i++) {
+            shift[pattern[i] & TABLE_MASK] = m - 1 - i;
+        }
+    }
+
+    public int length() {
+        return pattern.length;
+    }
+
+    /**
+     * @return The folded query, e.g. for trigram lookup; do not modify
+     */
+    char[] pattern() {
+        return pattern;
+    }
+
+    /**
+     * @param text Folded text
+     * @param from Index to start searching at
+     * @return Index of the first match at or after from, or -1
+     */
+    public int indexIn(char[] text, int from) {
+        int m = pattern.length;
+        if (m == 0) return from <= text.length ? from : -1;
+
+        int last = m - 1;
+        int i = from;
+        while (i + last < text.length) {
+            char tail = text[i + last];
+            if (tail == pattern[last]) {
+                int j = last - 1;
+                while (j >= 0 && text[i + j] == pattern[j]) {
+                    j--;
+                }
+                if (j < 0) return i;
+            }
+            i += shift[tail & TABLE_MASK];
+        }
+        return -1;
+    }
+
+    public boolean matches(char[] text) {
+        return indexIn(text, 0) >= 0;
+    }
+
+    /**
+     * Every match in one pass over the text, for scans that keep their offsets
+     * @param text Folded text
+     * @return Start and end offsets, alternating, with touching matches joined; null when
+     * there is no match or nothing to point at
+     */
+    int[] rangesIn(char[] text) {
+        int m = pattern.length;
+        if (m == 0) return null;
+        int at = indexIn(text, 0);
+        if (at < 0) return null;
+
+        int[] ranges = new int[2];
+        int size = 0;
+        for (; at >= 0; at = indexIn(text, at + m)) {
+            if (size > 0 && ranges[size - 1] == at) {
+                ranges[size - 1] = at + m;
+                continue;
+            }
+            if (size == ranges.length) {
+                ranges = Arrays.copyOf(ranges, size * 2);
+            }
+            ranges[size++] = at;
+            ranges[size++] = at + m;
+        }
+        return size == ranges.length ? ranges : Arrays.copyOf(ranges, size);
+    }
+
+    /**
+     * Like indexIn, but only matches that start a word and, unless prefix is set, end one:
+     * the token rule of the index, applied to the text itself
+     * @param text Folded text
+     */
+    public int indexOfWord(char[] text, int from, boolean prefix) {
+        int m = pattern.length;
+        for (int at = indexIn(text, from); at >= 0; at = indexIn(text, at + 1)) {
+            int end = at + m;
+            if ((at == 0 || !Tokenizer.isTokenChar(text[at - 1]))
+                    && (prefix || end == text.length || !Tokenizer.isTokenChar(text[end]))) {
+                return at;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Substring match on title, description and contact
+     */
+    public boolean matches(Post post) {
+        return matches(post.getFoldedTitle())
+                || matches(post.getFoldedDescription())
+                || matches(post.getFoldedContact());
+    }
+}
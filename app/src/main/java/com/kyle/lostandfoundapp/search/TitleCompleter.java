@@ -0,0 +1,212 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+import com.kyle.lostandfoundapp.utils.TextFolder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Search-box completions from the words of post titles, most frequent first. Each feed
+ * update only re-counts the titles of posts that were added, edited or deleted. Word
+ * counts are exact, but only words seen at least getMinCount() times are kept in the
+ * CompletionTrie: whenever the trie outgrows its memory budget the threshold goes up,
+ * dropping the rarest words first, and it comes back down once there is room again.
+ * update() runs on one thread at a time (PostQueryEngine's worker) and ends by publishing
+ * a copy of the trie, with its figures, that is never changed again. complete() and the
+ * getters only read what was published, so the search box can call them from the main
+ * thread while an update is under way.
+ */
+public class TitleCompleter {
+
+    // Plenty for every title word of a large feed on a phone
+    public static final int DEFAULT_MAX_BYTES = 256 * 1024;
+
+    // Single letters complete to almost anything
+    private static final int MIN_TERM_LENGTH = 2;
+
+    private final CompletionTrie trie = new CompletionTrie();
+    private final Map<String, Integer> counts = new HashMap<>();
+    private final Map<Integer, Post> postsById = new HashMap<>();
+    private final long maxBytes;
+    private int minCount = 1;
+    private long trieBytes;
+    // What other threads read: replaced after each update, never changed
+    private volatile Snapshot published;
+
+    /**
+     * The trie as of the last update, with the figures that describe it
+     */
+    private static final class Snapshot {
+        final CompletionTrie trie;
+        final int vocabularySize;
+        final int minCount;
+        final long bytes;
+
+        Snapshot(CompletionTrie trie, int vocabularySize, int minCount, long bytes) {
+            this.trie = trie;
+            this.vocabularySize = vocabularySize;
+            this.minCount = minCount;
+            this.bytes = bytes;
+        }
+    }
+
+    public TitleCompleter() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public TitleCompleter(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trieBytes = trie.estimateBytes();
+        published = new Snapshot(trie.copy(), 0, minCount, trieBytes);
+    }
+
+    /**
+     * Bring the counts in line with a full post list
+     * @param posts Every loaded post, in any order
+     */
+    public void update(List<Post> posts) {
+        Map<Integer, Post> previous = new HashMap<>(postsById);
+        postsById.clear();
+        Map<String, Integer> changes = new HashMap<>();
+
+        for (int i = 0, size = posts.size(); i < size; i++) {
+            Post post = posts.get(i);
+            Integer id = post.getId();
+            if (id == null) continue;
+
+            Post old = previous.remove(id);
+            if (old == null) {
+                count(post, 1, changes);
+            } else if (old != post && !Objects.equals(old.getTitle(), post.getTitle())) {
+                count(old, -1, changes);
+                count(post, 1, changes);
+            }
+            postsById.put(id, post);
+        }
+        for (Post gone : previous.values()) {
+            count(gone, -1, changes);
+        }
+        if (changes.isEmpty()) return;
+
+        for (Map.Entry<String, Integer> change : changes.entrySet()) {
+            if (change.getValue() == 0) continue;
+            Integer before = counts.get(change.getKey());
+            int count = (before != null ? before : 0) + change.getValue();
+            if (count > 0) {
+                counts.put(change.getKey(), count);
+            } else {
+                counts.remove(change.getKey());
+            }
+            trie.set(change.getKey(), count >= minCount ? count : 0);
+        }
+        enforceBudget();
+        published = new Snapshot(trie.copy(), counts.size(), minCount, trieBytes);
+    }
+
+    /**
+     * Whole-query completions for what is typed so far: the last word is completed
+     * and the rest of the query kept as typed
+     * @param query Search box text
+     * @param limit Maximum number of completions
+     */
+    public List<String> complete(String query, int limit) {
+        List<String> completions = new ArrayList<>();
+        String folded = TextFolder.foldToString(query);
+        // Nothing to complete once the user has moved past the last word
+        if (folded.isEmpty() || !Tokenizer.isTokenChar(folded.charAt(folded.length() - 1))) {
+            return completions;
+        }
+
+        int start = folded.length();
+        while (start > 0 && Tokenizer.isTokenChar(folded.charAt(start - 1))) {
+            start--;
+        }
+        String prefix = folded.substring(start);
+        if (prefix.length() < MIN_TERM_LENGTH) return completions;
+
+        // Folding maps char to char, so the typed text lines up with the folded one
+        String head = query.substring(0, start);
+        for (String term : published.trie.complete(prefix, limit + 1)) {
+            if (term.equals(prefix)) continue;
+            if (completions.size() == limit) break;
+            completions.add(head + term);
+        }
+        return completions;
+    }
+
+    /**
+     * Distinct title words in the trie
+     */
+    public int getTermCount() {
+        return published.trie.size();
+    }
+
+    /**
+     * Distinct title words counted, including those too rare for the trie
+     */
+    public int getVocabularySize() {
+        return published.vocabularySize;
+    }
+
+    public long getMemoryBytes() {
+        return published.bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Times a word must appear in titles to be offered
+     */
+    public int getMinCount() {
+        return published.minCount;
+    }
+
+    private static void count(Post post, int delta, Map<String, Integer> changes) {
+        // Each word counts once per title
+        Set<String> words = new HashSet<>();
+        List<String> tokens = new ArrayList<>();
+        Tokenizer.tokenize(post.getFoldedTitle(), tokens);
+        for (String token : tokens) {
+            if (token.length() >= MIN_TERM_LENGTH && words.add(token)) {
+                Integer change = changes.get(token);
+                changes.put(token, (change != null ? change : 0) + delta);
+            }
+        }
+    }
+
+    private void enforceBudget() {
+        trieBytes = trie.estimateBytes();
+
+        // Room again: bring back the words that were dropped last
+        while (minCount > 1 && trieBytes < maxBytes / 2) {
+            minCount--;
+            setTerms(minCount, minCount);
+            trieBytes = trie.estimateBytes();
+        }
+        // Over budget: drop the rarest words
+        while (trieBytes > maxBytes && trie.size() > 0) {
+            setTerms(minCount, 0);
+            minCount++;
+            trieBytes = trie.estimateBytes();
+        }
+    }
+
+    /**
+     * Set every word counted exactly `count` times to trieCount in the trie
+     */
+    private void setTerms(int count, int trieCount) {
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            if (entry.getValue() == count) {
+                trie.set(entry.getKey(), trieCount);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.utils.TextFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits folded post text into search tokens: runs of letters, digits and combining
+ * marks (so Khmer vowel signs stay attached to their consonant).
+ */
+final class Tokenizer {
+
+    private Tokenizer() {}
+
+    /**
+     * @param text Raw query text; folded before splitting
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(TextFolder.fold(text), tokens);
+        return tokens;
+    }
+
+    /**
+     * @param folded Text already folded with TextFolder
+     */
+    static void tokenize(char[] folded, List<String> out) {
+        int start = -1;
+        for (int i = 0; i < folded.length; i++) {
+            if (isTokenChar(folded[i])) {
+                if (start < 0) start = i;
+            } else if (start >= 0) {
+                out.add(new String(folded, start, i - start));
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            out.add(new String(folded, start, folded.length - start));
+        }
+    }
+
+    static boolean isTokenChar(char c) {
+        if (Character.isLetterOrDigit(c)) return true;
+        int type = Character.getType(c);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK;
+    }
+}
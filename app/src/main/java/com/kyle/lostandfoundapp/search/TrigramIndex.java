@@ -0,0 +1,108 @@
+package com.kyle.lostandfoundapp.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps character trigrams of folded post text to sorted lists of post ids. Used for
+ * scripts written without spaces between words (Khmer, Thai, CJK...), where a word-token
+ * index cannot reproduce substring matching: any post containing the query as a substring
+ * contains all of the query's trigrams, so intersecting their postings gives a small
+ * candidate set that is then verified with an exact substring check.
+ * Not thread-safe.
+ */
+class TrigramIndex {
+
+    static final int GRAM = 3;
+
+    private static final int[] EMPTY = new int[0];
+
+    private final Map<Long, PostingList> postings = new HashMap<>();
+    private final Map<Integer, long[]> documentTrigrams = new HashMap<>();
+
+    /**
+     * Index a document, replacing whatever was indexed for the same id before
+     * @param id Post ID
+     * @param fields Folded text fields; trigrams never span two fields
+     */
+    void put(int id, char[]... fields) {
+        remove(id);
+        long[] grams = distinctTrigrams(fields);
+        for (long gram : grams) {
+            PostingList list = postings.get(gram);
+            if (list == null) {
+                list = new PostingList();
+                postings.put(gram, list);
+            }
+            list.add(id);
+        }
+        documentTrigrams.put(id, grams);
+    }
+
+    void remove(int id) {
+        long[] grams = documentTrigrams.remove(id);
+        if (grams == null) return;
+        for (long gram : grams) {
+            PostingList list = postings.get(gram);
+            if (list == null) continue;
+            list.remove(id);
+            if (list.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    int documentCount() {
+        return documentTrigrams.size();
+    }
+
+    /**
+     * Ids of documents containing every trigram of the query. A superset of the real
+     * matches: callers must verify each candidate.
+     * @param foldedQuery Folded query, at least GRAM chars long
+     * @return Sorted candidate ids
+     */
+    int[] candidates(char[] foldedQuery) {
+        long[] grams = distinctTrigrams(foldedQuery);
+        PostingList[] lists = new PostingList[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            lists[i] = postings.get(grams[i]);
+            if (lists[i] == null) return EMPTY;
+        }
+        // Smallest first so the running intersection shrinks fast
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size(), b.size()));
+
+        int[] result = Arrays.copyOf(lists[0].sortedIds(), lists[0].size());
+        for (int i = 1; i < lists.length && result.length > 0; i++) {
+            result = PostingList.intersect(result, result.length, lists[i].sortedIds(), lists[i].size());
+        }
+        return result;
+    }
+
+    private static long[] distinctTrigrams(char[]... fields) {
+        int capacity = 0;
+        for (char[] field : fields) {
+            capacity += Math.max(0, field.length - GRAM + 1);
+        }
+        long[] grams = new long[capacity];
+        int n = 0;
+        for (char[] field : fields) {
+            for (int i = 0; i + GRAM <= field.length; i++) {
+                grams[n++] = pack(field[i], field[i + 1], field[i + 2]);
+            }
+        }
+        Arrays.sort(grams, 0, n);
+        int write = 0;
+        for (int read = 0; read < n; read++) {
+            if (write == 0 || grams[write - 1] != grams[read]) {
+                grams[write++] = grams[read];
+            }
+        }
+        return Arrays.copyOf(grams, write);
+    }
+
+    private static long pack(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+}
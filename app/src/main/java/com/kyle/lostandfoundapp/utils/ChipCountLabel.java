@@ -0,0 +1,26 @@
+package com.kyle.lostandfoundapp.utils;
+
+import com.google.android.material.chip.Chip;
+import com.kyle.lostandfoundapp.R;
+
+/**
+ * Appends a live count to a filter chip's label, e.g. "Lost Items (12)". The label the
+ * chip was inflated with is remembered so repeated updates don't stack counts.
+ */
+public class ChipCountLabel {
+
+    private final Chip chip;
+    private final CharSequence baseLabel;
+    private int count = -1;
+
+    public ChipCountLabel(Chip chip) {
+        this.chip = chip;
+        this.baseLabel = chip.getText();
+    }
+
+    public void setCount(int newCount) {
+        if (newCount == count) return;
+        count = newCount;
+        chip.setText(chip.getContext().getString(R.string.chip_with_count, baseLabel, newCount));
+    }
+}
@@ -0,0 +1,189 @@
+package com.kyle.lostandfoundapp.utils;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Parses the server's timestamp strings into epoch millis. The common ISO-8601 shapes
+ * ("2024-03-05T10:15:30", with optional fraction, 'T' or space, and optional "Z" or
+ * "+07:00" offset) are parsed by hand without allocating; anything else goes through a
+ * few per-thread SimpleDateFormat fallbacks. Times without an offset are local time, as
+ * the app always treated them.
+ */
+public final class DateParser {
+
+    public static final long UNKNOWN = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    // SimpleDateFormat is not thread-safe and parsing happens on the OkHttp threads
+    private static final ThreadLocal<SimpleDateFormat[]> FALLBACKS = new ThreadLocal<SimpleDateFormat[]>() {
+        @Override
+        protected SimpleDateFormat[] initialValue() {
+            return new SimpleDateFormat[] {
+                    new SimpleDateFormat("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US),
+                    new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US),
+                    new SimpleDateFormat("MMM dd, yyyy h:mm:ss a", Locale.US),
+                    new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.US)
+            };
+        }
+    };
+
+    private DateParser() {}
+
+    /**
+     * @param text Timestamp from the server, may be null
+     * @return Epoch millis, or UNKNOWN if the text is not a recognizable date
+     */
+    public static long parseMillis(String text) {
+        return parseMillis(text, TimeZone.getDefault());
+    }
+
+    /**
+     * @param text Timestamp, may be null
+     * @param localZone Zone for timestamps that carry no offset
+     * @return Epoch millis, or UNKNOWN if the text is not a recognizable date
+     */
+    public static long parseMillis(String text, TimeZone localZone) {
+        if (text == null) return UNKNOWN;
+        text = text.trim();
+        if (text.isEmpty()) return UNKNOWN;
+
+        long millis = parseIso(text, localZone);
+        if (millis != UNKNOWN) return millis;
+
+        millis = parseEpoch(text);
+        if (millis != UNKNOWN) return millis;
+
+        for (SimpleDateFormat format : FALLBACKS.get()) {
+            format.setTimeZone(localZone);
+            ParsePosition position = new ParsePosition(0);
+            Date date = format.parse(text, position);
+            if (date != null && position.getIndex() == text.length()) {
+                return date.getTime();
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * yyyy-MM-dd[('T'|' ')HH:mm[:ss[.fraction]]][Z|(+|-)HH[:]mm|(+|-)HH]
+     */
+    private static long parseIso(String s, TimeZone localZone) {
+        int length = s.length();
+        if (length < 10 || s.charAt(4) != '-' || s.charAt(7) != '-') return UNKNOWN;
+
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 2);
+        int day = digits(s, 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) return UNKNOWN;
+
+        int hour = 0, minute = 0, second = 0, millis = 0;
+        int i = 10;
+        if (i < length && (s.charAt(i) == 'T' || s.charAt(i) == ' ')) {
+            if (length < i + 6 || s.charAt(i + 3) != ':') return UNKNOWN;
+            hour = digits(s, i + 1, 2);
+            minute = digits(s, i + 4, 2);
+            i += 6;
+            if (i < length && s.charAt(i) == ':') {
+                second = digits(s, i + 1, 2);
+                i += 3;
+                if (i < length && (s.charAt(i) == '.' || s.charAt(i) == ',')) {
+                    // Keep milliseconds, ignore any finer digits
+                    int start = ++i;
+                    while (i < length && isDigit(s.charAt(i))) {
+                        if (i - start < 3) millis = millis * 10 + (s.charAt(i) - '0');
+                        i++;
+                    }
+                    if (i == start) return UNKNOWN;
+                    for (int pad = i - start; pad < 3; pad++) millis *= 10;
+                }
+            }
+            if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60) {
+                return UNKNOWN;
+            }
+        }
+
+        long local = daysFromCivil(year, month, day) * MILLIS_PER_DAY
+                + ((hour * 60L + minute) * 60L + second) * 1000L + millis;
+
+        if (i == length) {
+            return local - zoneOffset(localZone, local);
+        }
+
+        char sign = s.charAt(i);
+        if (sign == 'Z' || sign == 'z') {
+            return i + 1 == length ? local : UNKNOWN;
+        }
+        if (sign != '+' && sign != '-') return UNKNOWN;
+
+        int offsetHours = digits(s, i + 1, 2);
+        int offsetMinutes = 0;
+        int rest = length - (i + 3);
+        if (rest == 3 && s.charAt(i + 3) == ':') {
+            offsetMinutes = digits(s, i + 4, 2);
+        } else if (rest == 2) {
+            offsetMinutes = digits(s, i + 3, 2);
+        } else if (rest != 0) {
+            return UNKNOWN;
+        }
+        if (offsetHours < 0 || offsetHours > 18 || offsetMinutes < 0 || offsetMinutes > 59) return UNKNOWN;
+
+        long offset = (offsetHours * 60L + offsetMinutes) * 60_000L;
+        return sign == '+' ? local - offset : local + offset;
+    }
+
+    /**
+     * Offset of the zone at a wall-clock time, resolving DST transitions the way
+     * SimpleDateFormat does
+     */
+    private static long zoneOffset(TimeZone zone, long localMillis) {
+        int guess = zone.getOffset(localMillis - zone.getRawOffset());
+        return zone.getOffset(localMillis - guess);
+    }
+
+    /**
+     * Bare numbers are epoch seconds (10 digits) or millis (13 digits)
+     */
+    private static long parseEpoch(String s) {
+        int length = s.length();
+        if (length != 10 && length != 13) return UNKNOWN;
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (!isDigit(c)) return UNKNOWN;
+            value = value * 10 + (c - '0');
+        }
+        return length == 10 ? value * 1000L : value;
+    }
+
+    /**
+     * Days since 1970-01-01 in the proleptic Gregorian calendar
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int digits(String s, int start, int count) {
+        if (start + count > s.length()) return -1;
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = s.charAt(i);
+            if (!isDigit(c)) return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,198 @@
+package com.kyle.lostandfoundapp.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.kyle.lostandfoundapp.model.Post;
+import com.kyle.lostandfoundapp.search.DuplicateIndex;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Warns about reposts: keeps a DuplicateIndex of the feed's posts, fed by every feed
+ * refresh, and answers whether a post about to be created closely resembles one that
+ * already exists. The index is saved to app storage after each change and restored on
+ * start, so signatures are only computed for posts that are new or edited. Signing and
+ * saving happen outside the index lock, so the lookup on Submit never waits behind them.
+ */
+public class DuplicatePostDetector {
+
+    private static final String TAG = "DuplicatePostDetector";
+
+    private static final String FILE_NAME = "post_signatures.bin";
+    // Reposts typically share most of their wording; unrelated posts about the same
+    // kind of item ("black wallet") rarely get this close
+    public static final float DEFAULT_MIN_SIMILARITY = 0.7f;
+    // How long the lookup on the main thread may wait for the index before skipping
+    private static final long LOOKUP_WAIT_MS = 20;
+
+    private static DuplicatePostDetector instance;
+
+    private final File file;
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+    // Guarded by lock; only changed on ioExecutor
+    private final DuplicateIndex index = new DuplicateIndex();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile boolean loaded = false;
+
+    private DuplicatePostDetector(Context context) {
+        file = new File(context.getFilesDir(), FILE_NAME);
+        ioExecutor.execute(this::load);
+    }
+
+    public static synchronized DuplicatePostDetector getInstance(Context context) {
+        if (instance == null) {
+            instance = new DuplicatePostDetector(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Re-index a feed refresh in the background and save it if anything changed
+     * @param posts Every post of the refresh
+     */
+    public void onFeedRefreshed(List<Post> posts) {
+        List<Post> snapshot = new ArrayList<>(posts);
+        ioExecutor.execute(() -> {
+            long start = System.nanoTime();
+            DuplicateIndex.Refresh refresh;
+            lock.lock();
+            try {
+                refresh = index.prepare(snapshot);
+            } finally {
+                lock.unlock();
+            }
+            // Nothing else changes the index meanwhile; only lookups can run
+            refresh.sign();
+            boolean changed;
+            lock.lock();
+            try {
+                changed = index.apply(refresh);
+            } finally {
+                lock.unlock();
+            }
+            Log.d(TAG, "Indexed " + snapshot.size() + " posts (" + refresh.unsignedCount() + " signed) in "
+                    + (System.nanoTime() - start) / 1000 + " us, changed: " + changed);
+            if (changed) {
+                save();
+            }
+        });
+    }
+
+    /**
+     * Add a post the server just confirmed, so an immediate repost is caught too
+     */
+    public void onPostCreated(Post post) {
+        if (post == null || post.getId() == null) return;
+        ioExecutor.execute(() -> {
+            boolean changed;
+            lock.lock();
+            try {
+                changed = index.add(post);
+            } finally {
+                lock.unlock();
+            }
+            if (changed) {
+                save();
+            }
+        });
+    }
+
+    /**
+     * Existing posts of the same kind that the new one closely resembles, most similar
+     * first. Empty until the saved signatures have been loaded, and if a refresh is being
+     * applied right now.
+     */
+    public List<DuplicateIndex.Duplicate> findDuplicates(String title, String description, boolean isLost) {
+        if (!loaded) {
+            Log.d(TAG, "Signatures not loaded yet, skipping duplicate check");
+            return Collections.emptyList();
+        }
+        long start = System.nanoTime();
+        try {
+            if (!lock.tryLock(LOOKUP_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                Log.d(TAG, "Signatures busy, skipping duplicate check");
+                return Collections.emptyList();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        }
+        List<DuplicateIndex.Duplicate> duplicates;
+        int size;
+        try {
+            duplicates = index.findDuplicates(title, description, isLost, DEFAULT_MIN_SIMILARITY);
+            size = index.size();
+        } finally {
+            lock.unlock();
+        }
+        Log.d(TAG, "Duplicate lookup over " + size + " posts in "
+                + (System.nanoTime() - start) / 1000 + " us, " + duplicates.size() + " found");
+        return duplicates;
+    }
+
+    private void load() {
+        if (file.exists()) {
+            long start = System.currentTimeMillis();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                lock.lock();
+                try {
+                    if (!index.readFrom(in)) {
+                        Log.d(TAG, "Discarding signatures from an older format");
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                Log.d(TAG, "Loaded " + index.size() + " signatures in "
+                        + (System.currentTimeMillis() - start) + "ms");
+            } catch (IOException e) {
+                Log.e(TAG, "Discarding unreadable signatures", e);
+                lock.lock();
+                try {
+                    index.update(Collections.emptyList());
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+        loaded = true;
+    }
+
+    private void save() {
+        DuplicateIndex.Snapshot snapshot;
+        lock.lock();
+        try {
+            snapshot = index.snapshot();
+        } finally {
+            lock.unlock();
+        }
+
+        // Write aside and rename, so a crash mid-write never leaves a torn file
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            snapshot.writeTo(out);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save signatures", e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            Log.e(TAG, "Failed to replace " + file);
+            temp.delete();
+        }
+    }
+}
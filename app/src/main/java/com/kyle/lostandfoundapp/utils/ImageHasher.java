@@ -0,0 +1,265 @@
+package com.kyle.lostandfoundapp.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.kyle.lostandfoundapp.model.Post;
+import com.kyle.lostandfoundapp.search.ImageHash;
+import com.kyle.lostandfoundapp.search.ImageHashIndex;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Perceptual hashes of post images, for finding posts whose photos look alike. Images
+ * are hashed from small bitmaps Glide has already decoded: the feed thumbnails, the upload
+ * preview, and on the detail screen a thumbnail-sized decode. Those requests disallow
+ * hardware bitmaps, so the pixels can be read without a GPU readback. The hashes are kept
+ * in an ImageHashIndex, saved to app storage and restored on start, so each image is only
+ * hashed once.
+ */
+public class ImageHasher {
+
+    private static final String TAG = "ImageHasher";
+
+    private static final String FILE_NAME = "image_hashes.bin";
+    // Side of the square the hash is taken from
+    private static final int SAMPLE_SIZE = 32;
+    // At most this many of the 64 bits differ between photos of the same thing
+    public static final int MAX_DISTANCE = 10;
+    // Side to decode an image at for hashing when no thumbnail size is known
+    public static final int DECODE_SIZE = 128;
+
+    public interface HashCallback {
+        void onHashed(long hash);
+    }
+
+    private static ImageHasher instance;
+
+    private final File file;
+    private final ExecutorService hashExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Guards itself
+    private final ImageHashIndex index = new ImageHashIndex();
+    private boolean savePending = false;
+
+    private ImageHasher(Context context) {
+        file = new File(context.getFilesDir(), FILE_NAME);
+        hashExecutor.execute(this::load);
+    }
+
+    public static synchronized ImageHasher getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImageHasher(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Whether the post's current image still has to be hashed, so callers can skip
+     * decoding an image just for hashing
+     */
+    public boolean needsHash(Post post) {
+        if (post.getId() == null || post.getImagePath() == null) return false;
+        synchronized (index) {
+            return index.needsHash(post.getId(), post.getImagePath().hashCode());
+        }
+    }
+
+    /**
+     * Hash a post's image from a drawable Glide just delivered, unless it already has a
+     * hash for that image. Call on the main thread from onResourceReady of a small request
+     * made with disallowHardwareConfig.
+     * @param onIndexed Run on the main thread once the hash is indexed, may be null
+     */
+    public void hashPostImage(Post post, Drawable drawable, Runnable onIndexed) {
+        if (!needsHash(post)) return;
+        int postId = post.getId();
+        int sourceHash = post.getImagePath().hashCode();
+        hash(drawable, hash -> {
+            synchronized (index) {
+                index.put(postId, sourceHash, hash);
+            }
+            scheduleSave();
+            if (onIndexed != null) {
+                mainHandler.post(onIndexed);
+            }
+        });
+    }
+
+    /**
+     * Record the hash of an image taken before its post existed, e.g. an upload preview
+     */
+    public void recordPostImage(Post post, long hash) {
+        if (post.getId() == null || post.getImagePath() == null) return;
+        hashExecutor.execute(() -> {
+            synchronized (index) {
+                index.put(post.getId(), post.getImagePath().hashCode(), hash);
+            }
+            scheduleSave();
+        });
+    }
+
+    /**
+     * Hash a decoded image. Only a small downscaled copy is taken and read on the calling
+     * thread, so Glide is free to recycle the original; the hash itself is computed on the
+     * background executor, which then runs the callback.
+     * @return False if the drawable holds no bitmap (e.g. still a placeholder), holds a
+     * hardware bitmap, or could not be sampled
+     */
+    public boolean hash(Drawable drawable, HashCallback callback) {
+        if (!(drawable instanceof BitmapDrawable)) return false;
+        Bitmap bitmap = ((BitmapDrawable) drawable).getBitmap();
+        if (bitmap == null || bitmap.isRecycled() || bitmap.getWidth() == 0 || bitmap.getHeight() == 0) {
+            return false;
+        }
+
+        // Reading a hardware bitmap means copying it back from the GPU at full size, which
+        // is too slow for the main thread; hashed requests disallow them instead
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && bitmap.getConfig() == Bitmap.Config.HARDWARE) {
+            Log.w(TAG, "Skipping hardware bitmap; load hashed images with disallowHardwareConfig");
+            return false;
+        }
+
+        int[] pixels;
+        int width;
+        int height;
+        try {
+            // The centre square, so a centre-cropped thumbnail and the full photo hash alike
+            int side = Math.min(bitmap.getWidth(), bitmap.getHeight());
+            Matrix matrix = new Matrix();
+            matrix.setScale((float) SAMPLE_SIZE / side, (float) SAMPLE_SIZE / side);
+            // May return the bitmap itself when it is already the sample size
+            Bitmap sample = Bitmap.createBitmap(bitmap, (bitmap.getWidth() - side) / 2,
+                    (bitmap.getHeight() - side) / 2, side, side, matrix, true);
+
+            width = sample.getWidth();
+            height = sample.getHeight();
+            pixels = new int[width * height];
+            sample.getPixels(pixels, 0, width, 0, 0, width, height);
+            if (sample != bitmap) {
+                sample.recycle();
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to sample image for hashing", e);
+            return false;
+        }
+
+        hashExecutor.execute(() -> {
+            try {
+                callback.onHashed(ImageHash.dHash(pixels, width, height));
+            } catch (RuntimeException e) {
+                // A failed hash only means one image without similar-image matches
+                Log.e(TAG, "Failed to hash image", e);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Forget the hashes of posts that no longer exist
+     * @param posts Every post of a feed refresh
+     */
+    public void onFeedRefreshed(List<Post> posts) {
+        Set<Integer> ids = new HashSet<>();
+        for (Post post : posts) {
+            if (post.getId() != null && post.getImagePath() != null) {
+                ids.add(post.getId());
+            }
+        }
+        hashExecutor.execute(() -> {
+            boolean changed;
+            synchronized (index) {
+                changed = index.retainAll(ids);
+            }
+            if (changed) {
+                scheduleSave();
+            }
+        });
+    }
+
+    /**
+     * Ids of posts whose image looks like this post's, closest first. Empty while the
+     * post's own image hasn't been hashed yet.
+     */
+    public List<Integer> findSimilar(int postId, int limit) {
+        long start = System.nanoTime();
+        List<Integer> similar;
+        synchronized (index) {
+            Long hash = index.getHash(postId);
+            if (hash == null) return Collections.emptyList();
+            similar = index.findSimilar(hash, MAX_DISTANCE, postId);
+        }
+        Log.d(TAG, "Similar image lookup over " + index.size() + " hashes in "
+                + (System.nanoTime() - start) / 1000 + " us, " + similar.size() + " found");
+        return similar.size() > limit ? new ArrayList<>(similar.subList(0, limit)) : similar;
+    }
+
+    private void load() {
+        if (!file.exists()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            synchronized (index) {
+                if (!index.readFrom(in)) {
+                    Log.d(TAG, "Discarding image hashes from an older format");
+                }
+            }
+            Log.d(TAG, "Loaded " + index.size() + " image hashes");
+        } catch (IOException e) {
+            Log.e(TAG, "Discarding unreadable image hashes", e);
+            synchronized (index) {
+                index.retainAll(Collections.emptySet());
+            }
+        }
+    }
+
+    /**
+     * Save once the hashes queued behind this one are done, so a screenful of new
+     * thumbnails costs one write
+     */
+    private void scheduleSave() {
+        if (savePending) return;
+        savePending = true;
+        hashExecutor.execute(() -> {
+            savePending = false;
+            save();
+        });
+    }
+
+    private void save() {
+        // Write aside and rename, so a crash mid-write never leaves a torn file
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            synchronized (index) {
+                index.writeTo(out);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save image hashes", e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            Log.e(TAG, "Failed to replace " + file);
+            temp.delete();
+        }
+    }
+}
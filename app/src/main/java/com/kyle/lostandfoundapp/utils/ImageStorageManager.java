@@ -0,0 +1,287 @@
+package com.kyle.lostandfoundapp.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * Owns the image files the app writes itself: gallery picks copied for upload and
+ * full-size camera captures. Files are tracked in LRU order and evicted once the
+ * total exceeds the budget. Files belonging to an upload in progress are pinned and
+ * never evicted; once the server confirms the upload they are deleted.
+ * Files left by earlier sessions are found by one scan on the I/O thread at startup;
+ * nothing else lists directories, so no call blocks on the disk.
+ */
+public class ImageStorageManager {
+
+    private static final String TAG = "ImageStorageManager";
+
+    private static final String UPLOAD_DIR = "upload_images";
+    private static final String CAPTURE_DIR = "captured_photos";
+    // Names older versions gave the files they wrote straight into the cache and external
+    // files roots. Uploads copied under the picked image's own name can't be told apart
+    // from other files there and are left alone.
+    private static final Pattern LEGACY_UPLOAD = Pattern.compile("image_\\d+\\.jpg");
+    private static final Pattern LEGACY_CAPTURE = Pattern.compile("photo_\\d+\\.jpg");
+
+    // Default on-disk budget for all tracked images
+    public static final long DEFAULT_BUDGET_BYTES = 50L * 1024 * 1024;
+
+    private static ImageStorageManager instance;
+
+    private final File uploadDir;
+    private final File captureDir;
+    private final File legacyUploadRoot;
+    private final File legacyCaptureRoot;
+    private final long budgetBytes;
+
+    // Access-ordered: iteration starts at the least recently used file
+    private final LinkedHashMap<String, Long> trackedFiles = new LinkedHashMap<>(32, 0.75f, true);
+    private final Set<String> pinnedFiles = new HashSet<>();
+    // Released while the startup scan was running, so it must not track them again
+    private final Set<String> releasedDuringScan = new HashSet<>();
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+
+    private boolean scanned = false;
+    private long usageBytes = 0;
+    private long evictedBytes = 0;
+    private int evictedFiles = 0;
+
+    private ImageStorageManager(Context context, long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        uploadDir = new File(context.getCacheDir(), UPLOAD_DIR);
+
+        File externalDir = context.getExternalFilesDir(null);
+        File captureRoot = externalDir != null ? externalDir : context.getFilesDir();
+        captureDir = new File(captureRoot, CAPTURE_DIR);
+
+        // Older versions wrote straight into these roots and never cleaned up
+        legacyUploadRoot = context.getCacheDir();
+        legacyCaptureRoot = externalDir;
+
+        // Pick up whatever earlier sessions left behind without blocking the caller
+        ioExecutor.execute(this::scan);
+        trimAsync();
+    }
+
+    public static synchronized ImageStorageManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImageStorageManager(context.getApplicationContext(), DEFAULT_BUDGET_BYTES);
+        }
+        return instance;
+    }
+
+    /**
+     * Create a file for a gallery image copied for upload
+     * @param fileName Display name of the picked image
+     * @return File in the managed upload directory
+     */
+    public File newUploadFile(String fileName) {
+        ensureDir(uploadDir);
+        return new File(uploadDir, System.currentTimeMillis() + "_" + fileName);
+    }
+
+    /**
+     * Create a file for the camera app to write a full-size photo into
+     * @return File in the managed capture directory
+     */
+    public File newCaptureFile() {
+        ensureDir(captureDir);
+        return new File(captureDir, "photo_" + System.currentTimeMillis() + ".jpg");
+    }
+
+    /**
+     * Start tracking a file once it has been written, then trim in the background
+     * @param file File created through newUploadFile or newCaptureFile
+     */
+    public void register(File file) {
+        if (file == null || !file.exists()) return;
+        synchronized (this) {
+            Long previous = trackedFiles.put(file.getAbsolutePath(), file.length());
+            usageBytes += file.length() - (previous != null ? previous : 0);
+        }
+        Log.d(TAG, "Registered " + file.getName() + ", usage: " + usageBytes + " bytes");
+        trimAsync();
+    }
+
+    /**
+     * Mark a file as recently used and protect it from eviction until released
+     * @param file File about to be uploaded
+     */
+    public synchronized void pin(File file) {
+        if (file == null) return;
+        String path = file.getAbsolutePath();
+        pinnedFiles.add(path);
+        trackedFiles.get(path); // refresh LRU position
+    }
+
+    /**
+     * Allow a pinned file to be evicted again, e.g. after a failed upload
+     * @param file Previously pinned file
+     */
+    public synchronized void unpin(File file) {
+        if (file == null) return;
+        pinnedFiles.remove(file.getAbsolutePath());
+    }
+
+    /**
+     * Delete a file whose upload the server has confirmed
+     * @param file Temp copy or captured photo
+     */
+    public void release(File file) {
+        if (file == null) return;
+        synchronized (this) {
+            String path = file.getAbsolutePath();
+            pinnedFiles.remove(path);
+            if (!scanned) {
+                releasedDuringScan.add(path);
+            }
+            Long size = trackedFiles.remove(path);
+            if (size != null) {
+                usageBytes -= size;
+            }
+        }
+        ioExecutor.execute(() -> {
+            if (file.exists() && !file.delete()) {
+                Log.w(TAG, "Could not delete " + file.getAbsolutePath());
+            }
+        });
+    }
+
+    /**
+     * Trim to budget on the I/O thread
+     */
+    public void trimAsync() {
+        ioExecutor.execute(this::trimToBudget);
+    }
+
+    /**
+     * Evict least recently used, unpinned files until usage fits the budget.
+     * Touches the disk, so call it off the main thread.
+     */
+    public void trimToBudget() {
+        List<File> victims = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Long>> iterator = trackedFiles.entrySet().iterator();
+            while (usageBytes > budgetBytes && iterator.hasNext()) {
+                Map.Entry<String, Long> entry = iterator.next();
+                if (pinnedFiles.contains(entry.getKey())) continue;
+
+                iterator.remove();
+                usageBytes -= entry.getValue();
+                evictedBytes += entry.getValue();
+                evictedFiles++;
+                victims.add(new File(entry.getKey()));
+            }
+        }
+
+        for (File victim : victims) {
+            if (!victim.delete()) {
+                Log.w(TAG, "Could not evict " + victim.getAbsolutePath());
+            }
+        }
+        if (!victims.isEmpty()) {
+            Log.d(TAG, "Evicted " + victims.size() + " files, usage now " + usageBytes + " bytes");
+        }
+    }
+
+    // Disk-usage metrics; until the startup scan is done they only count this session's files
+
+    public synchronized long getUsageBytes() {
+        return usageBytes;
+    }
+
+    public synchronized int getTrackedFileCount() {
+        return trackedFiles.size();
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public synchronized long getEvictedBytes() {
+        return evictedBytes;
+    }
+
+    public synchronized int getEvictedFileCount() {
+        return evictedFiles;
+    }
+
+    public synchronized void logUsage() {
+        Log.d(TAG, "=== Image Storage ===");
+        Log.d(TAG, "Tracked files: " + trackedFiles.size() + " (" + pinnedFiles.size() + " pinned)");
+        Log.d(TAG, "Usage: " + usageBytes + " / " + budgetBytes + " bytes");
+        Log.d(TAG, "Evicted: " + evictedFiles + " files, " + evictedBytes + " bytes");
+    }
+
+    /**
+     * Seed the LRU from disk, oldest first, ahead of anything registered meanwhile. Runs
+     * once, first thing on the I/O thread; the listing happens outside the lock.
+     */
+    private void scan() {
+        List<File> found = new ArrayList<>();
+        collectImages(uploadDir, null, found);
+        collectImages(captureDir, null, found);
+        collectImages(legacyUploadRoot, LEGACY_UPLOAD, found);
+        if (legacyCaptureRoot != null) {
+            collectImages(legacyCaptureRoot, LEGACY_CAPTURE, found);
+        }
+        found.sort((a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+
+        LinkedHashMap<String, Long> sizes = new LinkedHashMap<>();
+        for (File file : found) {
+            sizes.put(file.getAbsolutePath(), file.length());
+        }
+
+        synchronized (this) {
+            // Registered this session, so more recent than anything left on disk
+            LinkedHashMap<String, Long> registered = new LinkedHashMap<>(trackedFiles);
+            trackedFiles.clear();
+            for (Map.Entry<String, Long> entry : sizes.entrySet()) {
+                if (releasedDuringScan.contains(entry.getKey()) || registered.containsKey(entry.getKey())) continue;
+                trackedFiles.put(entry.getKey(), entry.getValue());
+                usageBytes += entry.getValue();
+            }
+            trackedFiles.putAll(registered);
+            releasedDuringScan.clear();
+            scanned = true;
+        }
+        Log.d(TAG, "Scanned " + found.size() + " image files, usage: " + getUsageBytes() + " bytes");
+    }
+
+    /**
+     * @param names Names to accept, or null for any image in an app-owned directory
+     */
+    private static void collectImages(File dir, Pattern names, List<File> out) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (file.isFile() && isImageFile(file.getName())
+                    && (names == null || names.matcher(file.getName()).matches())) {
+                out.add(file);
+            }
+        }
+    }
+
+    private static boolean isImageFile(String name) {
+        String lower = name.toLowerCase();
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png");
+    }
+
+    private static void ensureDir(File dir) {
+        if (!dir.exists() && !dir.mkdirs()) {
+            Log.w(TAG, "Could not create " + dir.getAbsolutePath());
+        }
+    }
+}
@@ -184,11 +184,21 @@ public class LocaleManager {
     public static void applyLocaleToActivity(Activity activity) {
         String language = getLocale(activity);
         Log.d(TAG, "Applying locale to activity: " + language);
+        applyLocale(activity, language);
+        Log.d(TAG, "Locale applied to activity successfully");
+    }
 
+    /**
+     * Switch a context's existing resources to a language in place, e.g. the Application
+     * context once the stored language has been loaded
+     * @param context Context whose resources to update
+     * @param language Language code
+     */
+    public static void applyLocale(Context context, String language) {
         Locale locale = getLocaleFromLanguageCode(language);
         Locale.setDefault(locale);
 
-        Configuration config = activity.getResources().getConfiguration();
+        Configuration config = context.getResources().getConfiguration();
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
             config.setLocale(locale);
@@ -197,7 +207,6 @@ public class LocaleManager {
             config.locale = locale;
         }
 
-        activity.getResources().updateConfiguration(config, activity.getResources().getDisplayMetrics());
-        Log.d(TAG, "Locale applied to activity successfully");
+        context.getResources().updateConfiguration(config, context.getResources().getDisplayMetrics());
     }
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+package com.kyle.lostandfoundapp.utils;
+
+import android.util.Log;
+
+import com.kyle.lostandfoundapp.model.Post;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-process registry used to hand a tapped Post from a list screen to PostDetailActivity
+ * without serializing it into the Intent. Entries live only as long as the process, so the
+ * detail screen must still fall back to the network when nothing is found (e.g. after
+ * process death and activity restore).
+ */
+public class PostHandoff {
+
+    private static final String TAG = "PostHandoff";
+
+    // Only a handful of taps can be in flight at once
+    private static final int MAX_ENTRIES = 8;
+
+    private static final Map<Integer, Entry> entries = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Snapshot of what the list row already had on screen
+     */
+    public static class Entry {
+        private final Post post;
+        private final int thumbWidth;
+        private final int thumbHeight;
+
+        Entry(Post post, int thumbWidth, int thumbHeight) {
+            this.post = post;
+            this.thumbWidth = thumbWidth;
+            this.thumbHeight = thumbHeight;
+        }
+
+        public Post getPost() { return post; }
+
+        public int getThumbWidth() { return thumbWidth; }
+
+        public int getThumbHeight() { return thumbHeight; }
+
+        /**
+         * The row's decoded thumbnail is addressable in Glide's memory cache only if we
+         * know the exact size it was decoded at.
+         */
+        public boolean hasThumbnail() {
+            return thumbWidth > 0 && thumbHeight > 0;
+        }
+    }
+
+    private PostHandoff() {}
+
+    /**
+     * Register a post for the next detail screen
+     * @param post Post that was tapped
+     * @param thumbWidth Width the row thumbnail was decoded at, or 0 if none
+     * @param thumbHeight Height the row thumbnail was decoded at, or 0 if none
+     */
+    public static synchronized void put(Post post, int thumbWidth, int thumbHeight) {
+        if (post == null || post.getId() == null) return;
+        entries.put(post.getId(), new Entry(post, thumbWidth, thumbHeight));
+        Log.d(TAG, "Handoff registered for post " + post.getId());
+    }
+
+    /**
+     * Remove and return the handoff for a post
+     * @param postId Post ID from the Intent
+     * @return Entry, or null if none was registered in this process
+     */
+    public static synchronized Entry take(int postId) {
+        return entries.remove(postId);
+    }
+}
@@ -0,0 +1,174 @@
+package com.kyle.lostandfoundapp.utils;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.kyle.lostandfoundapp.R;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Shared "5 minutes ago" / "Mar 05, 2024" label engine. A timestamp is first reduced to
+ * a bucket (just now, N minutes, N hours, N days, or a calendar day); labels are built
+ * once per bucket and locale and reused by every row that falls in the same bucket.
+ * A minute tick aligned to the wall clock lets lists refresh only the rows whose bucket
+ * moved. Main thread only.
+ */
+public class RelativeTimeFormatter {
+
+    private static final String TAG = "RelativeTimeFormatter";
+
+    public static final long NO_BUCKET = -1;
+
+    private static final long MINUTE_MILLIS = 60 * 1000L;
+    private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    private static final int KIND_JUST_NOW = 0;
+    private static final int KIND_MINUTES = 1;
+    private static final int KIND_HOURS = 2;
+    private static final int KIND_DAYS = 3;
+    private static final int KIND_DATE = 4;
+    private static final int KIND_SHIFT = 48;
+
+    // Absolute dates are the only open-ended buckets
+    private static final int MAX_LABELS_PER_LOCALE = 256;
+
+    private static RelativeTimeFormatter instance;
+
+    private final Map<Locale, Map<Long, String>> labels = new HashMap<>();
+    private final Map<Locale, SimpleDateFormat> dateFormats = new HashMap<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final List<Runnable> tickListeners = new ArrayList<>();
+    private final Runnable tick = this::onMinuteTick;
+
+    private RelativeTimeFormatter() {}
+
+    public static synchronized RelativeTimeFormatter getInstance() {
+        if (instance == null) {
+            instance = new RelativeTimeFormatter();
+        }
+        return instance;
+    }
+
+    /**
+     * @param millis Timestamp in epoch millis
+     * @param now Current time in epoch millis
+     * @return Bucket the label depends on; equal buckets have equal labels
+     */
+    public long bucketOf(long millis, long now) {
+        long diff = now - millis;
+        if (diff < MINUTE_MILLIS) return bucket(KIND_JUST_NOW, 0);
+        if (diff < HOUR_MILLIS) return bucket(KIND_MINUTES, diff / MINUTE_MILLIS);
+        if (diff < DAY_MILLIS) return bucket(KIND_HOURS, diff / HOUR_MILLIS);
+        if (diff < 7 * DAY_MILLIS) return bucket(KIND_DAYS, diff / DAY_MILLIS);
+
+        // Local calendar day, so every post from the same day shares one label
+        long offset = TimeZone.getDefault().getOffset(millis);
+        return bucket(KIND_DATE, Math.floorDiv(millis + offset, DAY_MILLIS));
+    }
+
+    /**
+     * @param context Context whose configuration carries the UI locale
+     * @param bucket Result of bucketOf
+     */
+    public String label(Context context, long bucket) {
+        Locale locale = context.getResources().getConfiguration().getLocales().get(0);
+        Map<Long, String> cache = labels.get(locale);
+        if (cache == null) {
+            cache = new LinkedHashMap<Long, String>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                    return size() > MAX_LABELS_PER_LOCALE;
+                }
+            };
+            labels.put(locale, cache);
+        }
+
+        String label = cache.get(bucket);
+        if (label == null) {
+            label = buildLabel(context, locale, bucket);
+            cache.put(bucket, label);
+        }
+        return label;
+    }
+
+    public String format(Context context, long millis) {
+        return label(context, bucketOf(millis, System.currentTimeMillis()));
+    }
+
+    private String buildLabel(Context context, Locale locale, long bucket) {
+        int kind = (int) (bucket >>> KIND_SHIFT);
+        long value = bucket & ((1L << KIND_SHIFT) - 1);
+        switch (kind) {
+            case KIND_JUST_NOW:
+                return context.getString(R.string.time_just_now);
+            case KIND_MINUTES:
+                return context.getString(R.string.time_minutes_ago, (int) value);
+            case KIND_HOURS:
+                return context.getString(R.string.time_hours_ago, (int) value);
+            case KIND_DAYS:
+                return context.getString(R.string.time_days_ago, (int) value);
+            default:
+                SimpleDateFormat format = dateFormats.get(locale);
+                if (format == null) {
+                    format = new SimpleDateFormat("MMM dd, yyyy", locale);
+                    dateFormats.put(locale, format);
+                }
+                // Noon of that local day, safely inside it whatever the DST offset
+                long localMidnight = value * DAY_MILLIS;
+                long millis = localMidnight - TimeZone.getDefault().getOffset(localMidnight) + DAY_MILLIS / 2;
+                return format.format(new Date(millis));
+        }
+    }
+
+    private static long bucket(int kind, long value) {
+        return ((long) kind << KIND_SHIFT) | value;
+    }
+
+    // Minute tick
+
+    /**
+     * Call listener on every wall-clock minute boundary until removed
+     */
+    public void addMinuteTickListener(Runnable listener) {
+        if (tickListeners.contains(listener)) return;
+        tickListeners.add(listener);
+        if (tickListeners.size() == 1) {
+            scheduleTick();
+        }
+    }
+
+    public void removeMinuteTickListener(Runnable listener) {
+        tickListeners.remove(listener);
+        if (tickListeners.isEmpty()) {
+            handler.removeCallbacks(tick);
+        }
+    }
+
+    private void scheduleTick() {
+        long delay = MINUTE_MILLIS - (System.currentTimeMillis() % MINUTE_MILLIS);
+        handler.postAtTime(tick, SystemClock.uptimeMillis() + delay);
+    }
+
+    private void onMinuteTick() {
+        Log.d(TAG, "Minute tick for " + tickListeners.size() + " listeners");
+        for (Runnable listener : new ArrayList<>(tickListeners)) {
+            listener.run();
+        }
+        if (!tickListeners.isEmpty()) {
+            scheduleTick();
+        }
+    }
+}
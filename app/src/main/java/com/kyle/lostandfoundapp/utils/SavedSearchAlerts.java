@@ -0,0 +1,206 @@
+package com.kyle.lostandfoundapp.utils;
+
+import android.Manifest;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.core.content.ContextCompat;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.kyle.lostandfoundapp.R;
+import com.kyle.lostandfoundapp.activity.PostDetailActivity;
+import com.kyle.lostandfoundapp.model.Post;
+import com.kyle.lostandfoundapp.search.SavedSearch;
+import com.kyle.lostandfoundapp.search.SavedSearchMonitor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Standing searches the user wants to be alerted about, e.g. "black wallet" among found
+ * posts. The searches and the highest post id already checked are kept in SettingsStore;
+ * each feed refresh is handed to a SavedSearchMonitor, which only looks at posts that
+ * are new or changed, and every match becomes a notification that opens the post.
+ * Refreshes are checked on a background thread; the searches are guarded by this object,
+ * which the check only holds while matching, never while notifying.
+ */
+public class SavedSearchAlerts {
+
+    private static final String TAG = "SavedSearchAlerts";
+
+    static final String KEY_SAVED_SEARCHES = "saved_searches";
+    static final String KEY_HIGH_WATER_ID = "saved_search_high_water_id";
+
+    private static final String CHANNEL_ID = "saved_search_alerts";
+    // A first refresh after a long time away shouldn't flood the shade
+    private static final int MAX_NOTIFICATIONS_PER_REFRESH = 5;
+
+    private static SavedSearchAlerts instance;
+
+    private final Context appContext;
+    private final SettingsStore store;
+    private final Gson gson = new Gson();
+    private final ExecutorService checkExecutor = Executors.newSingleThreadExecutor();
+    // Guarded by this
+    private final List<SavedSearch> searches = new ArrayList<>();
+    private SavedSearchMonitor monitor;
+
+    private SavedSearchAlerts(Context context) {
+        appContext = context.getApplicationContext();
+        store = SettingsStore.getInstance(appContext);
+    }
+
+    public static synchronized SavedSearchAlerts getInstance(Context context) {
+        if (instance == null) {
+            instance = new SavedSearchAlerts(context);
+        }
+        return instance;
+    }
+
+    public synchronized List<SavedSearch> getSearches() {
+        ensureLoaded();
+        return Collections.unmodifiableList(new ArrayList<>(searches));
+    }
+
+    /**
+     * Save a search; posts matching it from the next refresh on are notified
+     * @param text Query as typed
+     * @param isLost Kind of post to watch for, null for any
+     * @return The saved search, or null if the text has nothing to match on
+     */
+    public synchronized SavedSearch add(String text, Boolean isLost) {
+        ensureLoaded();
+        long id = 1;
+        for (SavedSearch search : searches) {
+            id = Math.max(id, search.getId() + 1);
+        }
+        SavedSearch search = new SavedSearch(id, text, isLost);
+        if (!monitor.getIndex().add(search)) return null;
+
+        searches.add(search);
+        persistSearches();
+        Log.d(TAG, "Saved " + search);
+        return search;
+    }
+
+    public synchronized void remove(long id) {
+        ensureLoaded();
+        monitor.getIndex().remove(id);
+        for (int i = 0; i < searches.size(); i++) {
+            if (searches.get(i).getId() == id) {
+                searches.remove(i);
+                break;
+            }
+        }
+        persistSearches();
+    }
+
+    /**
+     * Check a feed refresh against the saved searches in the background and notify the
+     * matches
+     * @param posts Every post of the refresh; must not change afterwards
+     * @param currentUserId Posts by this user are never alerted
+     */
+    public void onFeedRefreshed(List<Post> posts, int currentUserId) {
+        checkExecutor.execute(() -> check(posts, currentUserId));
+    }
+
+    private void check(List<Post> posts, int currentUserId) {
+        long start = System.nanoTime();
+        Map<Post, List<SavedSearch>> alerts;
+        int searchCount;
+        synchronized (this) {
+            ensureLoaded();
+            int previousHighWater = monitor.getHighWaterId();
+            alerts = monitor.onRefresh(posts);
+            if (monitor.getHighWaterId() != previousHighWater) {
+                store.write(KEY_HIGH_WATER_ID, monitor.getHighWaterId());
+            }
+            searchCount = searches.size();
+        }
+
+        int notified = 0;
+        for (Map.Entry<Post, List<SavedSearch>> alert : alerts.entrySet()) {
+            Post post = alert.getKey();
+            if (post.getUserId() != null && post.getUserId() == currentUserId) continue;
+            if (notified == MAX_NOTIFICATIONS_PER_REFRESH) break;
+            if (notify(post, alert.getValue().get(0))) {
+                notified++;
+            }
+        }
+        Log.d(TAG, searchCount + " saved searches checked against " + posts.size() + " posts in "
+                + (System.nanoTime() - start) / 1000 + " us, " + alerts.size() + " matches");
+    }
+
+    private void ensureLoaded() {
+        if (monitor != null) return;
+
+        monitor = new SavedSearchMonitor(store.getInt(KEY_HIGH_WATER_ID, 0));
+        String json = store.getString(KEY_SAVED_SEARCHES, null);
+        if (json == null) return;
+        try {
+            List<SavedSearch> stored = gson.fromJson(json, new TypeToken<List<SavedSearch>>() {}.getType());
+            if (stored == null) return;
+            for (SavedSearch search : stored) {
+                if (monitor.getIndex().add(search)) {
+                    searches.add(search);
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Discarding unreadable saved searches", e);
+        }
+    }
+
+    private void persistSearches() {
+        store.write(KEY_SAVED_SEARCHES, gson.toJson(searches));
+    }
+
+    private boolean notify(Post post, SavedSearch search) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(appContext, Manifest.permission.POST_NOTIFICATIONS)
+                != PackageManager.PERMISSION_GRANTED) {
+            Log.d(TAG, "Notifications not permitted, skipping alert for post " + post.getId());
+            return false;
+        }
+        createChannel();
+
+        Intent intent = new Intent(appContext, PostDetailActivity.class);
+        intent.putExtra("post_id", post.getId());
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        PendingIntent pendingIntent = PendingIntent.getActivity(appContext, post.getId(), intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(appContext, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_found)
+                .setContentTitle(appContext.getString(R.string.alert_match_title, post.getTitle()))
+                .setContentText(appContext.getString(R.string.alert_match_text, search.getText()))
+                .setContentIntent(pendingIntent)
+                .setAutoCancel(true)
+                .setPriority(NotificationCompat.PRIORITY_DEFAULT);
+
+        // One notification per post; a later edit of the same post replaces it
+        NotificationManagerCompat.from(appContext).notify(post.getId(), builder.build());
+        return true;
+    }
+
+    private void createChannel() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) return;
+        NotificationManager manager = appContext.getSystemService(NotificationManager.class);
+        if (manager == null || manager.getNotificationChannel(CHANNEL_ID) != null) return;
+        manager.createNotificationChannel(new NotificationChannel(CHANNEL_ID,
+                appContext.getString(R.string.alert_channel_name), NotificationManager.IMPORTANCE_DEFAULT));
+    }
+}
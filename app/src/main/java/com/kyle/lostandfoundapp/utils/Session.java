@@ -0,0 +1,56 @@
+package com.kyle.lostandfoundapp.utils;
+
+/**
+ * Immutable snapshot of the signed-in user. SharedPreferencesManager swaps in a new
+ * instance on login/logout, so readers on any thread get a consistent view without
+ * locking or going through the SharedPreferences map.
+ */
+public final class Session {
+
+    public static final String DEFAULT_ROLE = "USER";
+    private static final String ADMIN_ROLE = "ADMIN";
+
+    public static final Session LOGGED_OUT = new Session(false, null, -1, "", "", "", DEFAULT_ROLE);
+
+    private final boolean loggedIn;
+    private final String token;
+    private final String authHeader;
+    private final int userId;
+    private final String username;
+    private final String email;
+    private final String phone;
+    private final String role;
+    private final boolean admin;
+
+    public Session(boolean loggedIn, String token, int userId, String username,
+                   String email, String phone, String role) {
+        this.loggedIn = loggedIn;
+        this.token = token;
+        // Built once here instead of on every request and image load
+        this.authHeader = token != null ? "Bearer " + token : null;
+        this.userId = userId;
+        this.username = username != null ? username : "";
+        this.email = email != null ? email : "";
+        this.phone = phone != null ? phone : "";
+        this.role = role != null ? role : DEFAULT_ROLE;
+        this.admin = ADMIN_ROLE.equalsIgnoreCase(this.role);
+    }
+
+    public boolean isLoggedIn() { return loggedIn; }
+
+    public String getToken() { return token; }
+
+    public String getAuthHeader() { return authHeader; }
+
+    public int getUserId() { return userId; }
+
+    public String getUsername() { return username; }
+
+    public String getEmail() { return email; }
+
+    public String getPhone() { return phone; }
+
+    public String getRole() { return role; }
+
+    public boolean isAdmin() { return admin; }
+}
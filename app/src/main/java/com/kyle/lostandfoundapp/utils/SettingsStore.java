@@ -0,0 +1,356 @@
+package com.kyle.lostandfoundapp.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Typed, in-memory view of the app's preferences. The backing SharedPreferences file is
+ * read on a background thread as soon as the store is created; nothing on the main thread
+ * touches the disk. Until the load finishes, theme and language read as their defaults,
+ * and startup code that needs the stored values (including the session) registers with
+ * whenLoaded instead of waiting. Writes update memory immediately and are flushed to disk
+ * off the main thread, with writes made in the same burst coalesced into one commit.
+ */
+public class SettingsStore {
+
+    private static final String TAG = "SettingsStore";
+
+    static final String PREF_NAME = "LostFoundPrefs";
+    static final String KEY_TOKEN = "token";
+    static final String KEY_USER_ID = "user_id";
+    static final String KEY_USERNAME = "username";
+    static final String KEY_EMAIL = "email";
+    static final String KEY_PHONE = "phone";
+    static final String KEY_ROLE = "role";
+    static final String KEY_IS_LOGGED_IN = "is_logged_in";
+    static final String KEY_THEME_MODE = "theme_mode";
+    static final String KEY_LANGUAGE = "language";
+
+    // Marks a key for removal in the pending batch
+    private static final Object REMOVED = new Object();
+
+    private static SettingsStore instance;
+
+    private final Context appContext;
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final CountDownLatch loadedLatch = new CountDownLatch(1);
+
+    private SharedPreferences prefs;
+    private volatile int themeMode = SharedPreferencesManager.THEME_MODE_SYSTEM;
+    private volatile String language = SharedPreferencesManager.LANGUAGE_ENGLISH;
+    private volatile Session session = Session.LOGGED_OUT;
+
+    // Guarded by this
+    private final Map<String, Object> pendingWrites = new LinkedHashMap<>();
+    private boolean clearPending = false;
+    // Batch being committed right now; still consulted by readers until it lands
+    private Map<String, Object> inFlightWrites = new LinkedHashMap<>();
+    private boolean clearInFlight = false;
+    private boolean flushScheduled = false;
+    private final List<Runnable> loadedCallbacks = new ArrayList<>();
+    private boolean loaded = false;
+
+    private SettingsStore(Context context) {
+        appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        diskExecutor.execute(this::load);
+    }
+
+    /**
+     * Get the store, starting the background load on first call. Call it as early as
+     * possible (Application.attachBaseContext) so the load overlaps app startup. Never
+     * reads the disk or waits, so the class lock is only held for a moment.
+     */
+    public static synchronized SettingsStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new SettingsStore(context);
+        }
+        return instance;
+    }
+
+    private void load() {
+        long start = System.currentTimeMillis();
+        SharedPreferences preferences = appContext.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+
+        int storedTheme = preferences.getInt(KEY_THEME_MODE, SharedPreferencesManager.THEME_MODE_SYSTEM);
+        String storedLanguage = preferences.getString(KEY_LANGUAGE, SharedPreferencesManager.LANGUAGE_ENGLISH);
+        synchronized (this) {
+            // A choice made while loading is newer than what is on disk
+            if (!pendingWrites.containsKey(KEY_THEME_MODE)) themeMode = storedTheme;
+            if (!pendingWrites.containsKey(KEY_LANGUAGE)) language = storedLanguage;
+        }
+        session = new Session(preferences.getBoolean(KEY_IS_LOGGED_IN, false),
+                preferences.getString(KEY_TOKEN, null),
+                preferences.getInt(KEY_USER_ID, -1),
+                preferences.getString(KEY_USERNAME, ""),
+                preferences.getString(KEY_EMAIL, ""),
+                preferences.getString(KEY_PHONE, ""),
+                preferences.getString(KEY_ROLE, Session.DEFAULT_ROLE));
+
+        List<Runnable> callbacks;
+        synchronized (this) {
+            prefs = preferences;
+            // Before loaded is set, so nothing told the load is done can still wait on it
+            loadedLatch.countDown();
+            loaded = true;
+            callbacks = new ArrayList<>(loadedCallbacks);
+            loadedCallbacks.clear();
+        }
+        Log.d(TAG, "Settings loaded in " + (System.currentTimeMillis() - start) + " ms");
+
+        for (Runnable callback : callbacks) {
+            mainHandler.post(callback);
+        }
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Run on the main thread once settings are in memory; runs immediately if they already
+     * are. This is how startup code gets the stored theme, language and session without
+     * blocking.
+     * @param callback Work that needs the stored values
+     */
+    public void whenLoaded(Runnable callback) {
+        synchronized (this) {
+            if (!loaded) {
+                loadedCallbacks.add(callback);
+                return;
+            }
+        }
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            callback.run();
+        } else {
+            mainHandler.post(callback);
+        }
+    }
+
+    /**
+     * Block until the initial load has finished. Theme and language never wait for it.
+     * Startup code reads the session from whenLoaded, and other reads of the session and
+     * ad-hoc keys come from user actions long after the load, so this only covers a
+     * cold race.
+     */
+    private void awaitLoaded() {
+        if (loadedLatch.getCount() == 0) return;
+        Log.w(TAG, "Settings read before background load finished, waiting");
+        try {
+            loadedLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Typed settings
+
+    /**
+     * Stored theme, or THEME_MODE_SYSTEM until the load finishes
+     */
+    public int getThemeMode() {
+        return themeMode;
+    }
+
+    public void setThemeMode(int mode) {
+        // Together with the write, so a load in progress can tell it is newer
+        synchronized (this) {
+            themeMode = mode;
+            write(KEY_THEME_MODE, mode);
+        }
+    }
+
+    /**
+     * Stored language, or English until the load finishes
+     */
+    public String getLanguage() {
+        return language;
+    }
+
+    public void setLanguage(String languageCode) {
+        // See setThemeMode
+        synchronized (this) {
+            language = languageCode;
+            write(KEY_LANGUAGE, languageCode);
+        }
+    }
+
+    public Session getSession() {
+        awaitLoaded();
+        return session;
+    }
+
+    /**
+     * Replace the session snapshot and persist it
+     * @param newSession Session to store; Session.LOGGED_OUT removes the stored user
+     */
+    public void setSession(Session newSession) {
+        awaitLoaded();
+        session = newSession;
+        synchronized (this) {
+            if (newSession.isLoggedIn()) {
+                pendingWrites.put(KEY_TOKEN, newSession.getToken() != null ? newSession.getToken() : REMOVED);
+                pendingWrites.put(KEY_USER_ID, newSession.getUserId());
+                pendingWrites.put(KEY_USERNAME, newSession.getUsername());
+                pendingWrites.put(KEY_EMAIL, newSession.getEmail());
+                pendingWrites.put(KEY_PHONE, newSession.getPhone());
+                pendingWrites.put(KEY_ROLE, newSession.getRole());
+            } else {
+                pendingWrites.put(KEY_TOKEN, REMOVED);
+                pendingWrites.put(KEY_USER_ID, REMOVED);
+                pendingWrites.put(KEY_USERNAME, REMOVED);
+                pendingWrites.put(KEY_EMAIL, REMOVED);
+                pendingWrites.put(KEY_PHONE, REMOVED);
+                pendingWrites.put(KEY_ROLE, REMOVED);
+            }
+            pendingWrites.put(KEY_IS_LOGGED_IN, newSession.isLoggedIn());
+            scheduleFlushLocked();
+        }
+    }
+
+    // Untyped access for ad-hoc keys
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        Object value = read(key);
+        return value instanceof Boolean ? (Boolean) value : defaultValue;
+    }
+
+    public String getString(String key, String defaultValue) {
+        Object value = read(key);
+        return value instanceof String ? (String) value : defaultValue;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        Object value = read(key);
+        return value instanceof Integer ? (Integer) value : defaultValue;
+    }
+
+    public Map<String, ?> getAll() {
+        awaitLoaded();
+        synchronized (this) {
+            Map<String, Object> all = new LinkedHashMap<>();
+            if (!clearPending && !clearInFlight) {
+                all.putAll(prefs.getAll());
+            }
+            if (!clearPending) {
+                overlay(all, inFlightWrites);
+            }
+            overlay(all, pendingWrites);
+            return all;
+        }
+    }
+
+    public void write(String key, Object value) {
+        synchronized (this) {
+            pendingWrites.put(key, value != null ? value : REMOVED);
+            scheduleFlushLocked();
+        }
+    }
+
+    /**
+     * Remove every stored value, including theme, language and session
+     */
+    public void clear() {
+        awaitLoaded();
+        themeMode = SharedPreferencesManager.THEME_MODE_SYSTEM;
+        language = SharedPreferencesManager.LANGUAGE_ENGLISH;
+        session = Session.LOGGED_OUT;
+        synchronized (this) {
+            pendingWrites.clear();
+            clearPending = true;
+            scheduleFlushLocked();
+        }
+    }
+
+    private static void overlay(Map<String, Object> target, Map<String, Object> writes) {
+        for (Map.Entry<String, Object> entry : writes.entrySet()) {
+            if (entry.getValue() == REMOVED) {
+                target.remove(entry.getKey());
+            } else {
+                target.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private Object read(String key) {
+        awaitLoaded();
+        synchronized (this) {
+            if (pendingWrites.containsKey(key)) {
+                Object value = pendingWrites.get(key);
+                return value == REMOVED ? null : value;
+            }
+            if (clearPending) return null;
+            if (inFlightWrites.containsKey(key)) {
+                Object value = inFlightWrites.get(key);
+                return value == REMOVED ? null : value;
+            }
+            return clearInFlight ? null : prefs.getAll().get(key);
+        }
+    }
+
+    private void scheduleFlushLocked() {
+        if (flushScheduled) return;
+        flushScheduled = true;
+        diskExecutor.execute(this::flush);
+    }
+
+    /**
+     * Write everything queued since the last flush in a single commit
+     */
+    private void flush() {
+        Map<String, Object> batch;
+        boolean clear;
+        synchronized (this) {
+            batch = new LinkedHashMap<>(pendingWrites);
+            clear = clearPending;
+            inFlightWrites = batch;
+            clearInFlight = clear;
+            pendingWrites.clear();
+            clearPending = false;
+            flushScheduled = false;
+        }
+
+        SharedPreferences.Editor editor = prefs.edit();
+        if (clear) {
+            editor.clear();
+        }
+        for (Map.Entry<String, Object> entry : batch.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (value == REMOVED) {
+                editor.remove(key);
+            } else if (value instanceof Boolean) {
+                editor.putBoolean(key, (Boolean) value);
+            } else if (value instanceof Integer) {
+                editor.putInt(key, (Integer) value);
+            } else if (value instanceof Long) {
+                editor.putLong(key, (Long) value);
+            } else if (value instanceof Float) {
+                editor.putFloat(key, (Float) value);
+            } else {
+                editor.putString(key, String.valueOf(value));
+            }
+        }
+
+        // Already off the main thread, so a synchronous commit is fine
+        if (!editor.commit()) {
+            Log.e(TAG, "Failed to write " + batch.size() + " settings");
+        }
+
+        synchronized (this) {
+            inFlightWrites = new LinkedHashMap<>();
+            clearInFlight = false;
+        }
+    }
+}
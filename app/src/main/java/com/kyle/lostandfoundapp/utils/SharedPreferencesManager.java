@@ -1,20 +1,15 @@
 package com.kyle.lostandfoundapp.utils;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 
-public class SharedPreferencesManager {
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-    private static final String PREF_NAME = "LostFoundPrefs";
-    private static final String KEY_TOKEN = "token";
-    private static final String KEY_USER_ID = "user_id";
-    private static final String KEY_USERNAME = "username";
-    private static final String KEY_EMAIL = "email";
-    private static final String KEY_PHONE = "phone";
-    private static final String KEY_ROLE = "role";
-    private static final String KEY_IS_LOGGED_IN = "is_logged_in";
-    private static final String KEY_THEME_MODE = "theme_mode";
-    private static final String KEY_LANGUAGE = "language";
+/**
+ * App-facing preferences API. Values are served from SettingsStore's in-memory copy,
+ * which is loaded and written off the main thread.
+ */
+public class SharedPreferencesManager {
 
     // Theme modes
     public static final int THEME_MODE_SYSTEM = -1;
@@ -25,13 +20,21 @@ public class SharedPreferencesManager {
     public static final String LANGUAGE_ENGLISH = "en";
     public static final String LANGUAGE_KHMER = "km";
 
-    private SharedPreferences prefs;
-    private SharedPreferences.Editor editor;
+    /**
+     * Notified on the thread that logged in or out, after the new snapshot is visible
+     */
+    public interface OnSessionChangedListener {
+        void onSessionChanged(Session session);
+    }
+
+    private final SettingsStore store;
     private static SharedPreferencesManager instance;
 
+    private final List<OnSessionChangedListener> sessionListeners = new CopyOnWriteArrayList<>();
+
     private SharedPreferencesManager(Context context) {
-        prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
-        editor = prefs.edit();
+        // The store is created by the Application, which has already started its load
+        store = SettingsStore.getInstance(context);
     }
 
     public static synchronized SharedPreferencesManager getInstance(Context context) {
@@ -41,74 +44,78 @@ public class SharedPreferencesManager {
         return instance;
     }
 
+    private void publishSession(Session newSession) {
+        store.setSession(newSession);
+        for (OnSessionChangedListener listener : sessionListeners) {
+            listener.onSessionChanged(newSession);
+        }
+    }
+
+    // Session snapshot, replaced as a whole and never mutated, so reads need no lock
+    public Session getSession() {
+        return store.getSession();
+    }
+
+    public void addSessionListener(OnSessionChangedListener listener) {
+        sessionListeners.add(listener);
+    }
+
+    public void removeSessionListener(OnSessionChangedListener listener) {
+        sessionListeners.remove(listener);
+    }
+
     // User authentication methods
     public void saveUserData(String token, int userId, String username, String email, String phone, String role) {
-        editor.putString(KEY_TOKEN, token);
-        editor.putInt(KEY_USER_ID, userId);
-        editor.putString(KEY_USERNAME, username);
-        editor.putString(KEY_EMAIL, email);
-        editor.putString(KEY_PHONE, phone);
-        editor.putString(KEY_ROLE, role);
-        editor.putBoolean(KEY_IS_LOGGED_IN, true);
-        editor.apply();
+        publishSession(new Session(true, token, userId, username, email, phone, role));
     }
 
     public void clearUserData() {
-        editor.remove(KEY_TOKEN);
-        editor.remove(KEY_USER_ID);
-        editor.remove(KEY_USERNAME);
-        editor.remove(KEY_EMAIL);
-        editor.remove(KEY_PHONE);
-        editor.remove(KEY_ROLE);
-        editor.putBoolean(KEY_IS_LOGGED_IN, false);
-        editor.apply();
+        publishSession(Session.LOGGED_OUT);
     }
 
     public boolean isLoggedIn() {
-        return prefs.getBoolean(KEY_IS_LOGGED_IN, false);
+        return getSession().isLoggedIn();
     }
 
     public String getToken() {
-        return prefs.getString(KEY_TOKEN, null);
+        return getSession().getToken();
     }
 
     public String getAuthHeader() {
-        String token = getToken();
-        return token != null ? "Bearer " + token : null;
+        return getSession().getAuthHeader();
     }
 
     public int getUserId() {
-        return prefs.getInt(KEY_USER_ID, -1);
+        return getSession().getUserId();
     }
 
     public String getUsername() {
-        return prefs.getString(KEY_USERNAME, "");
+        return getSession().getUsername();
     }
 
     public String getEmail() {
-        return prefs.getString(KEY_EMAIL, "");
+        return getSession().getEmail();
     }
 
     public String getPhone() {
-        return prefs.getString(KEY_PHONE, "");
+        return getSession().getPhone();
     }
 
     public String getRole() {
-        return prefs.getString(KEY_ROLE, "USER");
+        return getSession().getRole();
     }
 
     public boolean isAdmin() {
-        return "ADMIN".equalsIgnoreCase(getRole());
+        return getSession().isAdmin();
     }
 
     // Theme management methods
     public void setThemeMode(int themeMode) {
-        editor.putInt(KEY_THEME_MODE, themeMode);
-        editor.apply();
+        store.setThemeMode(themeMode);
     }
 
     public int getThemeMode() {
-        return prefs.getInt(KEY_THEME_MODE, THEME_MODE_SYSTEM);
+        return store.getThemeMode();
     }
 
     public boolean isDarkTheme() {
@@ -125,12 +132,11 @@ public class SharedPreferencesManager {
 
     // Language management methods
     public void setLanguage(String languageCode) {
-        editor.putString(KEY_LANGUAGE, languageCode);
-        editor.apply();
+        store.setLanguage(languageCode);
     }
 
     public String getLanguage() {
-        return prefs.getString(KEY_LANGUAGE, LANGUAGE_ENGLISH);
+        return store.getLanguage();
     }
 
     public boolean isEnglishLanguage() {
@@ -143,36 +149,35 @@ public class SharedPreferencesManager {
 
     // Utility methods for preferences
     public void saveBooleanPreference(String key, boolean value) {
-        editor.putBoolean(key, value);
-        editor.apply();
+        store.write(key, value);
     }
 
     public boolean getBooleanPreference(String key, boolean defaultValue) {
-        return prefs.getBoolean(key, defaultValue);
+        return store.getBoolean(key, defaultValue);
     }
 
     public void saveStringPreference(String key, String value) {
-        editor.putString(key, value);
-        editor.apply();
+        store.write(key, value);
     }
 
     public String getStringPreference(String key, String defaultValue) {
-        return prefs.getString(key, defaultValue);
+        return store.getString(key, defaultValue);
     }
 
     public void saveIntPreference(String key, int value) {
-        editor.putInt(key, value);
-        editor.apply();
+        store.write(key, value);
     }
 
     public int getIntPreference(String key, int defaultValue) {
-        return prefs.getInt(key, defaultValue);
+        return store.getInt(key, defaultValue);
     }
 
     // Clear all preferences (for app reset)
     public void clearAllPreferences() {
-        editor.clear();
-        editor.apply();
+        store.clear();
+        for (OnSessionChangedListener listener : sessionListeners) {
+            listener.onSessionChanged(Session.LOGGED_OUT);
+        }
     }
 
     // Get all stored preferences for debugging
@@ -0,0 +1,47 @@
+package com.kyle.lostandfoundapp.utils;
+
+import java.text.Normalizer;
+
+/**
+ * Case- and accent-insensitive folding used for search. Folding is one char to one char,
+ * so offsets in folded text line up with the original string (needed for highlighting).
+ * Only Latin letters lose their accents; combining marks of other scripts, such as
+ * Khmer vowel signs, are meaningful and left alone.
+ */
+public final class TextFolder {
+
+    private static final char[] EMPTY = new char[0];
+
+    // Latin-1 Supplement and Latin Extended-A/B, folded to their lower-case base letter
+    private static final char[] LATIN = new char[0x250];
+
+    static {
+        for (char c = 0; c < LATIN.length; c++) {
+            String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+            LATIN[c] = Character.toLowerCase(decomposed.charAt(0));
+        }
+    }
+
+    private TextFolder() {}
+
+    public static char fold(char c) {
+        return c < LATIN.length ? LATIN[c] : Character.toLowerCase(c);
+    }
+
+    /**
+     * @param text Text to fold, may be null
+     * @return New folded array, empty for null
+     */
+    public static char[] fold(String text) {
+        if (text == null || text.isEmpty()) return EMPTY;
+        char[] folded = new char[text.length()];
+        for (int i = 0; i < folded.length; i++) {
+            folded[i] = fold(text.charAt(i));
+        }
+        return folded;
+    }
+
+    public static String foldToString(String text) {
+        return new String(fold(text));
+    }
+}
@@ -0,0 +1,30 @@
+package com.kyle.lostandfoundapp.search;
+
+import org.junit.Assume;
+
+import java.util.logging.Logger;
+
+/**
+ * Opt-in switch and output for the timing tests. They build feeds of up to 100,000 posts
+ * and would take most of the unit test run, so they are skipped unless asked for:
+ * ./gradlew testDebugUnitTest -Pbenchmarks. Measurements are logged, never asserted,
+ * as they depend on the machine.
+ */
+final class Benchmarks {
+
+    private static final Logger LOG = Logger.getLogger("Benchmarks");
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Skip the calling test unless benchmarks were asked for
+     */
+    static void assumeEnabled() {
+        Assume.assumeTrue("Benchmarks only run with -Pbenchmarks", Boolean.getBoolean("benchmarks"));
+    }
+
+    static void log(String format, Object... args) {
+        LOG.info(String.format(format, args));
+    }
+}
@@ -0,0 +1,166 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.kyle.lostandfoundapp.search.TestPosts.post;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that lightly edited reposts are caught and unrelated posts are not, that the
+ * index survives a save and restore (long titles included) and a refresh signed apart from
+ * applying it, and logs the lookup cost with 100,000 indexed posts. The timing test is
+ * opt-in and logs instead of asserting (see Benchmarks).
+ */
+public class DuplicateIndexTest {
+
+    private static final String[] WORDS = {
+            "black", "blue", "red", "leather", "wallet", "phone", "umbrella", "keys", "bag",
+            "backpack", "card", "student", "library", "canteen", "parking", "laptop", "charger",
+            "bottle", "glasses", "watch", "ring", "jacket", "helmet", "passport", "airpods",
+            "near", "left", "under", "table", "room", "floor", "building", "morning", "evening"
+    };
+
+    @Test
+    public void catchesEditedRepostsOfTheSameKind() {
+        DuplicateIndex index = new DuplicateIndex();
+        index.update(Arrays.asList(
+                post(1, "Lost black leather wallet", "Left it on a table in the library on Monday morning", true),
+                post(2, "Found black leather wallet", "Left on a table in the library on Monday morning", false),
+                post(3, "Lost blue umbrella", "Somewhere between the canteen and building B", true)));
+
+        List<DuplicateIndex.Duplicate> duplicates = index.findDuplicates("LOST black leather wallet!",
+                "Left it on the table in the library, Monday morning", true, 0.7f);
+        assertEquals(1, duplicates.size());
+        assertEquals(1, duplicates.get(0).getPostId());
+        assertEquals("Lost black leather wallet", duplicates.get(0).getTitle());
+
+        assertTrue(index.findDuplicates("Lost student card", "blue lanyard, near parking", true, 0.7f).isEmpty());
+    }
+
+    @Test
+    public void followsEditsAndDeletions() {
+        DuplicateIndex index = new DuplicateIndex();
+        List<Post> posts = new ArrayList<>(Arrays.asList(
+                post(1, "Lost keys", "Three keys on a red ring", true),
+                post(2, "Lost phone", "Cracked screen, black case", true)));
+        assertTrue(index.update(posts));
+        assertFalse(index.update(posts));
+
+        posts.set(0, post(1, "Lost helmet", "White motorbike helmet with a sticker", true));
+        assertTrue(index.update(posts));
+        assertTrue(index.findDuplicates("Lost keys", "Three keys on a red ring", true, 0.7f).isEmpty());
+        assertEquals(1, index.findDuplicates("Lost helmet", "White motorbike helmet with a sticker", true, 0.7f).size());
+
+        posts.remove(1);
+        assertTrue(index.update(posts));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void restoresWhatWasSaved() throws IOException {
+        DuplicateIndex index = new DuplicateIndex();
+        index.update(Arrays.asList(
+                post(1, "Lost black wallet", "near the canteen", true),
+                post(2, "Found glasses", "in room 204", false)));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+        DuplicateIndex restored = new DuplicateIndex();
+        assertTrue(restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+
+        assertEquals(2, restored.size());
+        assertEquals(1, restored.findDuplicates("Lost black wallet", "near the canteen", true, 0.9f).size());
+        // Unchanged posts are not re-signed
+        assertFalse(restored.update(Arrays.asList(
+                post(1, "Lost black wallet", "near the canteen", true),
+                post(2, "Found glasses", "in room 204", false))));
+    }
+
+    @Test
+    public void signsOutsideApplyAndSavesLongTitles() throws IOException {
+        DuplicateIndex index = new DuplicateIndex();
+        index.update(Arrays.asList(post(1, "Lost keys", "Three keys on a red ring", true)));
+
+        StringBuilder longTitle = new StringBuilder("Lost ");
+        while (longTitle.length() < 70_000) {
+            longTitle.append("ទូរស័ព្ទ ");
+        }
+        List<Post> posts = new ArrayList<>(Arrays.asList(
+                post(1, "Lost keys", "Three keys on a red ring", true),
+                post(2, longTitle.toString(), "Cracked screen, black case", true)));
+        DuplicateIndex.Refresh refresh = index.prepare(posts);
+        assertEquals(1, refresh.unsignedCount());
+        refresh.sign();
+        // Edited again after signing: apply signs it afresh rather than filing stale text
+        posts.set(1, post(2, longTitle.toString(), "White motorbike helmet with a sticker", true));
+        assertTrue(index.apply(refresh));
+        assertTrue(index.findDuplicates(longTitle.toString(), "Cracked screen, black case", true, 0.9f).isEmpty());
+        assertEquals(1, index.findDuplicates(longTitle.toString(), "White motorbike helmet with a sticker",
+                true, 0.9f).size());
+
+        // Over 64 KB once encoded, which writeUTF would have refused
+        DuplicateIndex.Snapshot snapshot = index.snapshot();
+        index.remove(1);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        snapshot.writeTo(new DataOutputStream(bytes));
+        DuplicateIndex restored = new DuplicateIndex();
+        assertTrue(restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+        assertEquals(2, restored.size());
+        assertEquals(longTitle.toString(), restored.findDuplicates(longTitle.toString(),
+                "White motorbike helmet with a sticker", true, 0.9f).get(0).getTitle());
+    }
+
+    @Test
+    public void lookupWithHundredThousandPosts() {
+        Benchmarks.assumeEnabled();
+        Random random = new Random(3);
+        List<Post> posts = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            posts.add(post(i, sentence(random, 4), sentence(random, 14), random.nextBoolean()));
+        }
+        DuplicateIndex index = new DuplicateIndex();
+        long start = System.nanoTime();
+        index.update(posts);
+        double buildMillis = (System.nanoTime() - start) / 1e6;
+
+        // Reposts with one word of the description changed
+        int caught = 0;
+        int lookups = 500;
+        for (int r = 0; r < 2; r++) {
+            caught = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                Post original = posts.get(i * 97);
+                String description = original.getDescription().replaceFirst("^\\w+", "some");
+                for (DuplicateIndex.Duplicate duplicate : index.findDuplicates(original.getTitle(), description,
+                        original.getIsLost(), 0.7f)) {
+                    if (duplicate.getPostId() == original.getId()) caught++;
+                }
+            }
+        }
+        double micros = (System.nanoTime() - start) / 1000.0 / lookups;
+        assertTrue(caught > lookups * 9 / 10);
+        Benchmarks.log("100,000 posts: index %.0f ms, %.1f us per lookup, %d/%d reposts caught",
+                buildMillis, micros, caught, lookups);
+    }
+
+    private static String sentence(Random random, int words) {
+        String[] picked = new String[words];
+        for (int i = 0; i < words; i++) {
+            picked[i] = WORDS[random.nextInt(WORDS.length)];
+        }
+        return String.join(" ", Arrays.asList(picked));
+    }
+}
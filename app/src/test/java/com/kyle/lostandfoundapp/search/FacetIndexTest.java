@@ -0,0 +1,90 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FacetIndexTest {
+
+    @Test
+    public void bitmapSurvivesContainerConversions() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        // Past the array limit of the first chunk, plus a value in a second chunk
+        for (int i = 0; i < 5000; i++) {
+            bitmap.add(i * 2);
+        }
+        bitmap.add(70000);
+        assertEquals(5001, bitmap.getCardinality());
+        assertTrue(bitmap.contains(9998));
+        assertFalse(bitmap.contains(9999));
+        assertTrue(bitmap.contains(70000));
+
+        for (int i = 0; i < 4000; i++) {
+            bitmap.remove(i * 2);
+        }
+        int[] values = bitmap.toArray();
+        assertEquals(1001, values.length);
+        assertEquals(8000, values[0]);
+        assertEquals(70000, values[values.length - 1]);
+
+        RoaringBitmap other = new RoaringBitmap();
+        other.add(8000);
+        other.add(8001);
+        other.add(70000);
+        assertArrayEquals(new int[]{8000, 70000}, bitmap.and(other).toArray());
+    }
+
+    @Test
+    public void selectsInListOrderAndFollowsEdits() {
+        List<Post> posts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            // Ids deliberately out of list order
+            posts.add(post(1000 - i, i % 2 == 0, i % 10 == 0 ? "REPORTED" : "active", i % 3));
+        }
+        FacetIndex facets = new FacetIndex();
+        facets.setPosts(posts);
+
+        assertEquals(50, facets.lost().getCardinality());
+        List<Post> reported = facets.select(facets.status("reported"));
+        assertEquals(10, reported.size());
+        assertSame(posts.get(0), reported.get(0));
+        assertSame(posts.get(90), reported.get(9));
+
+        List<Post> lostByOwner = facets.select(facets.lost().and(facets.ownedBy(1)));
+        for (int i = 1; i < lostByOwner.size(); i++) {
+            assertTrue(posts.indexOf(lostByOwner.get(i - 1)) < posts.indexOf(lostByOwner.get(i)));
+        }
+        assertEquals(16, lostByOwner.size());
+
+        // A refreshed list where one post flipped to found and one was deleted
+        List<Post> refreshed = new ArrayList<>(posts);
+        refreshed.set(0, post(1000, false, "active", 0));
+        refreshed.remove(2);
+        facets.setPosts(refreshed);
+
+        assertEquals(48, facets.lost().getCardinality());
+        FacetCounts counts = facets.getCounts();
+        assertEquals(99, counts.getTotal());
+        assertEquals(48, counts.getLost());
+        assertEquals(51, counts.getFound());
+        assertEquals(9, counts.getReported());
+        assertEquals(9, facets.select(facets.status("reported")).size());
+        assertFalse(facets.select(facets.found()).contains(posts.get(2)));
+        assertEquals(Arrays.asList(posts.get(4)), facets.filter(refreshed.subList(0, 4), facets.lost()));
+    }
+
+    private static Post post(int id, boolean isLost, String status, int userId) {
+        Post post = new Post();
+        post.setId(id);
+        post.setIsLost(isLost);
+        post.setStatus(status);
+        post.setUserId(userId);
+        return post;
+    }
+}
@@ -0,0 +1,143 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.kyle.lostandfoundapp.search.TestPosts.post;
+import static com.kyle.lostandfoundapp.search.TestPosts.postedAt;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the recorded match offsets for token, substring and field-scoped queries, that
+ * query results carry them for the page, and logs what recording costs per page. The
+ * timing test is opt-in and logs instead of asserting (see Benchmarks).
+ */
+public class HighlighterTest {
+
+    @Test
+    public void tokenQueriesMarkWordStarts() {
+        Post post = post(1, "Lost Black Wallet", "black leather wallet, blackish strap", true);
+        MatchRanges ranges = new Highlighter("black wal").ranges(post);
+        // Offsets index the original text, capitals and all
+        assertArrayEquals(new int[]{5, 10, 11, 14}, ranges.getTitle());
+        // Plain queries match every token as a word prefix, like the index
+        assertArrayEquals(new int[]{0, 5, 14, 17, 22, 27}, ranges.getDescription());
+
+        // Not inside words
+        assertTrue(new Highlighter("lack").ranges(post).isEmpty());
+    }
+
+    @Test
+    public void substringAndFieldScopedQueries() {
+        Post khmer = post(2, "បាត់ទូរស័ព្ទ", "ទូរស័ព្ទពណ៌ខ្មៅ", true);
+        assertArrayEquals(new int[]{4, 12}, new Highlighter("ទូរស័ព្ទ").ranges(khmer).getTitle());
+        assertArrayEquals(new int[]{0, 8}, new Highlighter("ទូរស័ព្ទ").ranges(khmer).getDescription());
+
+        Post post = post(3, "Found phone charger", "white phone cable, phone case", true);
+        MatchRanges titleOnly = new Highlighter("title:phone lost").ranges(post);
+        assertArrayEquals(new int[]{6, 11}, titleOnly.getTitle());
+        assertEquals(0, titleOnly.getDescription().length);
+
+        // Overlapping matches merge
+        MatchRanges quoted = new Highlighter("desc:\"phone c\" desc:cable").ranges(post);
+        assertArrayEquals(new int[]{6, 17, 19, 26}, quoted.getDescription());
+
+        // Facets only: nothing to point at
+        assertTrue(new Highlighter("status:reported").ranges(post).isEmpty());
+    }
+
+    @Test
+    public void resultsCarryRangesForThePage() throws InterruptedException {
+        List<Post> posts = new ArrayList<>();
+        for (int id = 1; id <= 50; id++) {
+            posts.add(postedAt(post(id, id % 2 == 0 ? "Lost umbrella " + id : "Found wallet " + id, "near the library", true), id));
+        }
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        PostQueryEngine engine = new PostQueryEngine(worker, Runnable::run);
+        engine.setCorpus(posts, null);
+        AtomicReference<QueryResult> result = new AtomicReference<>();
+        engine.submit(new PostQuery("umbr", null, 10, PostQuery.Order.RELEVANCE), result::set);
+        worker.shutdown();
+        assertTrue(worker.awaitTermination(10, TimeUnit.SECONDS));
+
+        QueryResult page = result.get();
+        assertEquals(10, page.getPosts().size());
+        assertEquals(10, page.getMatchRanges().size());
+        for (Post post : page.getPosts()) {
+            assertArrayEquals(new int[]{5, 9}, page.getMatchRanges().get(post.getId()).getTitle());
+        }
+    }
+
+    @Test
+    public void substringResultsKeepTheScansOffsets() throws InterruptedException {
+        List<Post> posts = new ArrayList<>();
+        posts.add(post(1, "បាត់ទូរស័ព្ទ", "ទូរស័ព្ទពណ៌ខ្មៅ ទូរស័ព្ទ", true));
+        posts.add(post(2, "រកឃើញកាបូប", "នៅបណ្ណាល័យ", true));
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        PostQueryEngine engine = new PostQueryEngine(worker, Runnable::run);
+        engine.setCorpus(posts, null);
+        List<QueryResult> results = new ArrayList<>();
+        // Full scan, then narrowing the earlier matches, then a cache hit. Each waits for
+        // the one before, which it would otherwise supersede.
+        for (String text : new String[]{"ទូ", "ទូរស័ព្ទ", "ទូរស័ព្ទ"}) {
+            CountDownLatch done = new CountDownLatch(1);
+            engine.submit(new PostQuery(text, null, 10, PostQuery.Order.DATE), result -> {
+                results.add(result);
+                done.countDown();
+            });
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        }
+        worker.shutdown();
+
+        assertEquals(3, results.size());
+        assertArrayEquals(new int[]{4, 6}, results.get(0).getMatchRanges().get(1).getTitle());
+        for (QueryResult result : results.subList(1, 3)) {
+            assertEquals(1, result.getPosts().size());
+            MatchRanges ranges = result.getMatchRanges().get(1);
+            assertArrayEquals(new int[]{4, 12}, ranges.getTitle());
+            assertArrayEquals(new int[]{0, 8, 16, 24}, ranges.getDescription());
+        }
+    }
+
+    @Test
+    public void pageCost() {
+        Benchmarks.assumeEnabled();
+        String[] words = {"black", "blue", "leather", "wallet", "phone", "umbrella", "keys", "bag", "card",
+                "student", "library", "canteen", "parking", "laptop", "charger", "bottle", "watch"};
+        Random random = new Random(4);
+        List<Post> page = new ArrayList<>();
+        for (int id = 1; id <= 15; id++) {
+            page.add(post(id, sentence(random, words, 4), sentence(random, words, 40), true));
+        }
+        Highlighter highlighter = new Highlighter("black leather wal");
+        int rounds = 20_000;
+        long start = 0;
+        for (int r = 0; r < 2; r++) {
+            start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                for (Post post : page) highlighter.ranges(post);
+            }
+        }
+        double micros = (System.nanoTime() - start) / 1000.0 / rounds;
+        Benchmarks.log("Page of 15 posts (40-word descriptions), 3-word query: %.1f us to record offsets", micros);
+    }
+
+    private static String sentence(Random random, String[] words, int count) {
+        String[] picked = new String[count];
+        for (int i = 0; i < count; i++) {
+            picked[i] = words[random.nextInt(words.length)];
+        }
+        return String.join(" ", Arrays.asList(picked));
+    }
+}
@@ -0,0 +1,154 @@
+package com.kyle.lostandfoundapp.search;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that dHash tolerates rescaling and brightness changes, that the multi-index
+ * lookup finds exactly what a linear scan does, and logs the lookup cost with 100,000
+ * indexed images. The timing test is opt-in and logs instead of asserting (see
+ * Benchmarks).
+ */
+public class ImageHashIndexTest {
+
+    @Test
+    public void hashSurvivesRescalingAndBrightness() {
+        Random random = new Random(5);
+        int[] photo = blobs(random, 64, 64);
+        long hash = ImageHash.dHash(photo, 64, 64);
+
+        int[] half = new int[32 * 32];
+        int[] brighter = new int[64 * 64];
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                if (x % 2 == 0 && y % 2 == 0) half[(y / 2) * 32 + x / 2] = photo[y * 64 + x];
+                brighter[y * 64 + x] = gray(Math.min(255, (photo[y * 64 + x] & 0xFF) + 20));
+            }
+        }
+        assertTrue(ImageHash.distance(hash, ImageHash.dHash(half, 32, 32)) <= 10);
+        assertTrue(ImageHash.distance(hash, ImageHash.dHash(brighter, 64, 64)) <= 10);
+
+        // A different photo is far away
+        assertTrue(ImageHash.distance(hash, ImageHash.dHash(blobs(random, 64, 64), 64, 64)) > 10);
+    }
+
+    @Test
+    public void findsWhatALinearScanFinds() {
+        Random random = new Random(9);
+        ImageHashIndex index = new ImageHashIndex();
+        long[] hashes = new long[5000];
+        for (int id = 0; id < hashes.length; id++) {
+            // Some clusters of near-identical photos among unrelated ones
+            hashes[id] = id % 10 == 0 && id > 0 ? flip(hashes[id - 10], random, random.nextInt(14)) : random.nextLong();
+            index.put(id, 0, hashes[id]);
+        }
+
+        for (int q = 0; q < 200; q++) {
+            long query = flip(hashes[random.nextInt(hashes.length)], random, random.nextInt(8));
+            List<Integer> expected = new ArrayList<>();
+            for (int id = 0; id < hashes.length; id++) {
+                if (id != 3 && ImageHash.distance(query, hashes[id]) <= 10) expected.add(id);
+            }
+            List<Integer> actual = index.findSimilar(query, 10, 3);
+            assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+            for (int i = 1; i < actual.size(); i++) {
+                assertTrue(ImageHash.distance(query, hashes[actual.get(i - 1)])
+                        <= ImageHash.distance(query, hashes[actual.get(i)]));
+            }
+        }
+    }
+
+    @Test
+    public void tracksReplacedImagesAndRestoresWhatWasSaved() throws IOException {
+        ImageHashIndex index = new ImageHashIndex();
+        index.put(1, "a.jpg".hashCode(), 0xF0F0L);
+        index.put(2, "b.jpg".hashCode(), 0xF0F1L);
+        assertFalse(index.needsHash(1, "a.jpg".hashCode()));
+        assertTrue(index.needsHash(1, "c.jpg".hashCode()));
+        assertEquals(Arrays.asList(2), index.findSimilar(0xF0F0L, 10, 1));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+        ImageHashIndex restored = new ImageHashIndex();
+        assertTrue(restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+        assertEquals(Long.valueOf(0xF0F1L), restored.getHash(2));
+
+        assertTrue(restored.retainAll(Arrays.asList(1)));
+        assertTrue(restored.findSimilar(0xF0F0L, 10, 1).isEmpty());
+        assertEquals(1, restored.size());
+    }
+
+    @Test
+    public void lookupWithHundredThousandImages() {
+        Benchmarks.assumeEnabled();
+        Random random = new Random(13);
+        ImageHashIndex index = new ImageHashIndex();
+        long[] hashes = new long[100_000];
+        for (int id = 0; id < hashes.length; id++) {
+            hashes[id] = random.nextLong();
+            index.put(id, 0, hashes[id]);
+        }
+
+        int found = 0;
+        int lookups = 2000;
+        long start = 0;
+        for (int r = 0; r < 2; r++) {
+            found = 0;
+            start = System.nanoTime();
+            for (int q = 0; q < lookups; q++) {
+                int id = (q * 37) % hashes.length;
+                found += index.findSimilar(flip(hashes[id], random, 6), 10, -1).contains(id) ? 1 : 0;
+            }
+        }
+        double micros = (System.nanoTime() - start) / 1000.0 / lookups;
+        assertEquals(lookups, found);
+        Benchmarks.log("100,000 image hashes: %.1f us per lookup within distance 10", micros);
+    }
+
+    private static long flip(long hash, Random random, int bits) {
+        for (int i = 0; i < bits; i++) {
+            hash ^= 1L << random.nextInt(64);
+        }
+        return hash;
+    }
+
+    /**
+     * Smooth gray image made of a few bright and dark blobs, like a blurred photo
+     */
+    private static int[] blobs(Random random, int width, int height) {
+        double[][] centers = new double[6][3];
+        for (double[] c : centers) {
+            c[0] = random.nextDouble() * width;
+            c[1] = random.nextDouble() * height;
+            c[2] = random.nextBoolean() ? 1 : -1;
+        }
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double value = 128;
+                for (double[] c : centers) {
+                    double d2 = (x - c[0]) * (x - c[0]) + (y - c[1]) * (y - c[1]);
+                    value += c[2] * 100 * Math.exp(-d2 / (width * 4.0));
+                }
+                pixels[y * width + x] = gray((int) Math.max(0, Math.min(255, value)));
+            }
+        }
+        return pixels;
+    }
+
+    private static int gray(int value) {
+        return 0xFF000000 | value << 16 | value << 8 | value;
+    }
+}
@@ -0,0 +1,138 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.kyle.lostandfoundapp.search.TestPosts.post;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that suggestions come from the opposite kind, follow edits and deletions and,
+ * when asked for in the background, see the updates handed over before them, and logs the cost of a suggestion over a few thousand posts. The timing test is opt-in and
+ * logs instead of asserting (see Benchmarks).
+ */
+public class MatchSuggesterTest {
+
+    private static final String[] WORDS = {
+            "black", "blue", "red", "leather", "wallet", "phone", "umbrella", "keys", "bag",
+            "backpack", "card", "student", "library", "canteen", "parking", "laptop", "charger",
+            "bottle", "glasses", "watch", "ring", "jacket", "helmet", "passport", "airpods"
+    };
+
+    @Test
+    public void suggestsTheOppositeKindBestFirst() {
+        MatchSuggester suggester = new MatchSuggester();
+        List<Post> posts = new ArrayList<>(Arrays.asList(
+                post(1, "Lost black leather wallet", "near the library", true),
+                post(2, "Found black wallet", "leather, at the library desk", false),
+                post(3, "Found wallet", "brown, in the parking lot", false),
+                post(4, "Lost black leather wallet", "another one", true),
+                post(5, "Found umbrella", "blue", false)));
+        suggester.update(posts);
+
+        List<Post> matches = suggester.suggest(posts.get(0), 3);
+        assertEquals(posts.get(1), matches.get(0));
+        for (Post match : matches) {
+            assertFalse(match.getIsLost());
+        }
+        assertFalse(matches.contains(posts.get(4)));
+
+        // A found post is matched against lost ones
+        assertTrue(suggester.suggest(posts.get(1), 3).contains(posts.get(0)));
+        assertEquals(1, suggester.suggest(posts.get(0), 1).size());
+    }
+
+    @Test
+    public void followsEditsKindChangesAndDeletions() {
+        MatchSuggester suggester = new MatchSuggester();
+        List<Post> posts = new ArrayList<>(Arrays.asList(
+                post(1, "Lost student card", "blue lanyard", true),
+                post(2, "Found keys", "with a red keyring", false)));
+        suggester.update(posts);
+        assertTrue(suggester.suggest(posts.get(0), 3).isEmpty());
+
+        // Edited as a fresh object, as every refresh delivers
+        posts.set(1, post(2, "Found student card", "blue lanyard, at the canteen", false));
+        suggester.update(posts);
+        assertEquals(posts.get(1), suggester.suggest(posts.get(0), 3).get(0));
+
+        // Now reported as lost: no longer a candidate for another lost post
+        posts.set(1, post(2, "Found student card", "blue lanyard, at the canteen", true));
+        suggester.update(posts);
+        assertTrue(suggester.suggest(posts.get(0), 3).isEmpty());
+
+        posts.remove(1);
+        suggester.update(posts);
+        assertEquals(1, suggester.getIndexedCount());
+    }
+
+    @Test
+    public void backgroundSuggestionsFollowEarlierUpdates() throws InterruptedException {
+        MatchSuggester suggester = new MatchSuggester();
+        Post lost = post(1, "Lost black leather wallet", "near the library", true);
+        Post found = post(2, "Found black wallet", "leather, at the library desk", false);
+        suggester.updateInBackground(Arrays.asList(lost, found));
+
+        AtomicReference<List<Post>> result = new AtomicReference<>();
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        suggester.suggestInBackground(lost, 3, Runnable::run, suggestions -> {
+            result.set(suggestions);
+            thread.set(Thread.currentThread());
+            done.countDown();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(found), result.get());
+        assertNotSame(Thread.currentThread(), thread.get());
+    }
+
+    @Test
+    public void suggestionOverThousandsOfPosts() {
+        Benchmarks.assumeEnabled();
+        Random random = new Random(11);
+        List<Post> posts = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            posts.add(post(i, sentence(random, 4), sentence(random, 12), random.nextBoolean()));
+        }
+        MatchSuggester suggester = new MatchSuggester();
+
+        long start = System.nanoTime();
+        suggester.update(posts);
+        double buildMillis = (System.nanoTime() - start) / 1e6;
+
+        // A refresh with one edited post only re-indexes that post
+        List<Post> refreshed = new ArrayList<>(posts);
+        refreshed.set(17, post(17, "Found blue wallet", "at the canteen", false));
+        start = System.nanoTime();
+        suggester.update(refreshed);
+        double refreshMillis = (System.nanoTime() - start) / 1e6;
+        assertEquals(5000, suggester.getIndexedCount());
+
+        for (Post post : posts.subList(0, 200)) suggester.suggest(post, 3);
+        start = System.nanoTime();
+        int suggested = 0;
+        for (Post post : posts.subList(0, 1000)) {
+            suggested += suggester.suggest(post, 3).size();
+        }
+        double micros = (System.nanoTime() - start) / 1000.0 / 1000;
+        Benchmarks.log("5,000 posts: index %.1f ms, refresh %.1f ms, %.1f us per suggestion (%d suggested)",
+                buildMillis, refreshMillis, micros, suggested);
+    }
+
+    private static String sentence(Random random, int words) {
+        String[] picked = new String[words];
+        for (int i = 0; i < words; i++) {
+            picked[i] = WORDS[random.nextInt(WORDS.length)];
+        }
+        return String.join(" ", Arrays.asList(picked));
+    }
+}
@@ -0,0 +1,238 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.kyle.lostandfoundapp.search.TestPosts.post;
+import static org.junit.Assert.*;
+
+/**
+ * Compares the inverted index against the linear scan the feed used before at 1k posts,
+ * and at 10k and 100k when benchmarks are on, and checks that corpus updates only touch
+ * changed posts. The timing tests are opt-in and log instead of asserting (see Benchmarks).
+ */
+public class PostIndexBenchmarkTest {
+
+    // Words like "k123q": no word is a substring of another, so substring and token
+    // matching must agree on single-word queries
+    private static final int VOCABULARY = 5000;
+    private static final int QUERIES = 200;
+
+    @Test
+    public void indexMatchesLinearScan() {
+        benchmark(1_000);
+    }
+
+    @Test
+    public void indexVersusLinearScanAtScale() {
+        Benchmarks.assumeEnabled();
+        for (int size : new int[] {10_000, 100_000}) {
+            benchmark(size);
+        }
+    }
+
+    @Test
+    public void corpusUpdateOnlyReindexesChangedPosts() {
+        List<Post> posts = generatePosts(100, new Random(1));
+        PostIndex index = new PostIndex();
+        index.setCorpus(posts);
+        assertEquals("100 added, 0 updated, 0 removed", index.describeLastUpdate());
+
+        List<Post> next = new ArrayList<>(posts);
+        Post edited = copy(next.get(5));
+        edited.setTitle("umbrella found");
+        next.set(5, edited);
+        next.remove(10);
+        Post added = post(1000, "blue umbrella", "left at the library", "012", null);
+        next.add(0, added);
+        index.setCorpus(next);
+
+        assertEquals("1 added, 1 updated, 1 removed", index.describeLastUpdate());
+        assertEquals(100, index.getIndexedCount());
+
+        List<Post> matches = index.search("umbrel");
+        assertEquals(2, matches.size());
+        assertSame(added, matches.get(0));
+        assertSame(edited, matches.get(1));
+        assertTrue(index.search(posts.get(10).getTitle().split(" ")[0]).stream()
+                .noneMatch(p -> p == posts.get(10)));
+    }
+
+    @Test
+    public void everyTokenMustMatchAndLastMayBePrefix() {
+        List<Post> posts = new ArrayList<>();
+        posts.add(post(1, "Black wallet", "Lost near the market", "012 345 678", null));
+        posts.add(post(2, "Brown wallet", "Found at the bus stop", "098", null));
+        posts.add(post(3, "Black phone", null, null, null));
+        PostIndex index = new PostIndex();
+        index.setCorpus(posts);
+
+        assertEquals(1, index.search("black wal").size());
+        assertEquals(2, index.search("WALLET").size());
+        assertEquals(0, index.search("black bus").size());
+        assertEquals(1, index.search("345").size());
+        assertEquals(2, index.filter(index.search("b"), "bla").size());
+    }
+
+    @Test
+    public void khmerQueriesKeepSubstringSemantics() {
+        List<Post> posts = new ArrayList<>();
+        posts.add(post(1, "\u1780\u17b6\u1794\u17bc\u1794\u179b\u17bb\u1799\u1796\u178e\u17cc\u1781\u17d2\u1798\u17c5", null, null, null));
+        posts.add(post(2, "Wallet \u1780\u17b6\u1794\u17bc\u1794", "", null, null));
+        posts.add(post(3, "Black wallet", "\u1791\u17bc\u179a\u179f\u17d0\u1796\u17d2\u1791", null, null));
+        posts.add(post(4, "No Khmer here", null, null, null));
+        PostIndex index = new PostIndex();
+        index.setCorpus(posts);
+        assertEquals(3, index.getTrigramIndexedCount());
+
+        // Middle of an unspaced run, which the token index alone would miss
+        String query = "\u179b\u17bb\u1799";
+        assertTrue(PostIndex.needsSubstringMatch(query));
+        assertEquals(PostSearcher.matchAll(posts, new SubstringMatcher(query)), index.search(query));
+
+        String prefix = "\u1780\u17b6\u1794\u17bc\u1794";
+        assertEquals(PostSearcher.matchAll(posts, new SubstringMatcher(prefix)), index.search(prefix));
+        assertEquals(2, index.search(prefix).size());
+
+        // Shorter than a trigram falls back to scanning
+        assertEquals(PostSearcher.matchAll(posts, new SubstringMatcher("\u1780")), index.search("\u1780"));
+        assertEquals(0, index.search("\u1780\u1781\u1782").size());
+    }
+
+    @Test
+    public void typosMatchRankedByDistanceThenRecency() {
+        List<Post> posts = new ArrayList<>();
+        posts.add(post(5, "Umbrela", "left on the bus", null, null));
+        posts.add(post(4, "Black wallet", "near the market", null, null));
+        posts.add(post(3, "Red umbrella", "library", null, null));
+        posts.add(post(2, "Wallet found", "brown leather", null, null));
+        posts.add(post(1, "Umbrellas", "two of them", null, null));
+        PostIndex index = new PostIndex();
+        index.setCorpus(posts);
+
+        List<Post> wallet = index.search("walet");
+        assertEquals(2, wallet.size());
+        assertSame(posts.get(1), wallet.get(0));
+        assertSame(posts.get(3), wallet.get(1));
+
+        // Exact and prefix matches newest first, then the one edit away
+        List<Post> umbrella = index.search("umbrella");
+        assertEquals(3, umbrella.size());
+        assertSame(posts.get(2), umbrella.get(0));
+        assertSame(posts.get(4), umbrella.get(1));
+        assertSame(posts.get(0), umbrella.get(2));
+
+        assertEquals(1, index.search("blak walet").size());
+        // Too short for typos
+        assertEquals(0, index.search("bux").size());
+    }
+
+    @Test
+    public void typoSearchLatencyAt50k() {
+        Benchmarks.assumeEnabled();
+        Random random = new Random(50);
+        List<Post> posts = generatePosts(50_000, random);
+        PostIndex index = new PostIndex();
+        index.setCorpus(posts);
+
+        String[] queries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            // Drop one character of a real word
+            String word = word(random.nextInt(VOCABULARY));
+            int drop = 1 + random.nextInt(word.length() - 2);
+            queries[i] = word.substring(0, drop) + word.substring(drop + 1);
+        }
+        for (String query : queries) {
+            index.search(query);
+        }
+
+        long start = System.nanoTime();
+        int found = 0;
+        for (String query : queries) {
+            found += index.search(query).isEmpty() ? 0 : 1;
+        }
+        double millisPerQuery = (System.nanoTime() - start) / 1e6 / QUERIES;
+        Benchmarks.log("50,000 posts: typo query %.3f ms/query", millisPerQuery);
+
+        assertEquals(QUERIES, found);
+    }
+
+    private void benchmark(int size) {
+        Random random = new Random(size);
+        List<Post> posts = generatePosts(size, random);
+
+        long start = System.nanoTime();
+        PostIndex index = new PostIndex();
+        index.setCorpus(posts);
+        long buildNanos = System.nanoTime() - start;
+
+        String[] queries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = word(random.nextInt(VOCABULARY));
+        }
+
+        long linearNanos = 0;
+        long indexNanos = 0;
+        for (String query : queries) {
+            long t0 = System.nanoTime();
+            List<Post> expected = PostSearcher.matchAll(posts, new SubstringMatcher(query));
+            long t1 = System.nanoTime();
+            List<Post> actual = index.search(query);
+            long t2 = System.nanoTime();
+            linearNanos += t1 - t0;
+            indexNanos += t2 - t1;
+            // Exact matches first, in feed order, then near misses within the typo budget
+            assertEquals("query " + query, expected, actual.subList(0, expected.size()));
+        }
+
+        Benchmarks.log("%,d posts: build %.1f ms (%d terms), linear %.3f ms/query, index %.3f ms/query",
+                size, buildNanos / 1e6, index.getTermCount(),
+                linearNanos / 1e6 / QUERIES, indexNanos / 1e6 / QUERIES);
+    }
+
+    /**
+     * The feed's search loop before the index existed
+     */
+    private static List<Post> linearScan(List<Post> posts, String query) {
+        String lowerQuery = query.toLowerCase();
+        List<Post> matches = new ArrayList<>();
+        for (Post post : posts) {
+            if ((post.getTitle() != null && post.getTitle().toLowerCase().contains(lowerQuery))
+                    || (post.getDescription() != null && post.getDescription().toLowerCase().contains(lowerQuery))
+                    || (post.getContact() != null && post.getContact().toLowerCase().contains(lowerQuery))) {
+                matches.add(post);
+            }
+        }
+        return matches;
+    }
+
+    private static List<Post> generatePosts(int size, Random random) {
+        List<Post> posts = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            posts.add(post(size - i, words(random, 3), words(random, 15), "0" + (10000000 + random.nextInt(89999999)), null));
+        }
+        return posts;
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) builder.append(' ');
+            builder.append(word(random.nextInt(VOCABULARY)));
+        }
+        return builder.toString();
+    }
+
+    private static String word(int n) {
+        return "k" + n + "q";
+    }
+
+    private static Post copy(Post source) {
+        return post(source.getId(), source.getTitle(), source.getDescription(), source.getContact(), null);
+    }
+}
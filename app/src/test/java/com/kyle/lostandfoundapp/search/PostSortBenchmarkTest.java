@@ -0,0 +1,171 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feed sorting on sorted, nearly sorted and shuffled responses: the old string comparator,
+ * the current one on pre-parsed millis, and a hand-rolled natural-run merge sort as the
+ * alternative that was considered. The timing test is opt-in and logs instead of asserting
+ * (see Benchmarks).
+ */
+public class PostSortBenchmarkTest {
+
+    private static final long BASE_MILLIS = 1_700_000_000_000L;
+    private static final int ROUNDS = 20;
+
+    // What loadPosts used to sort with
+    private static final Comparator<Post> BY_STRING = (p1, p2) -> {
+        if (p1.getCreatedAt() == null && p2.getCreatedAt() == null) return 0;
+        if (p1.getCreatedAt() == null) return 1;
+        if (p2.getCreatedAt() == null) return -1;
+        return p2.getCreatedAt().compareTo(p1.getCreatedAt());
+    };
+
+    @Test
+    public void benchmarkSortedAndNearlySortedInputs() {
+        Benchmarks.assumeEnabled();
+        for (int size : new int[] {10_000, 100_000}) {
+            Random random = new Random(size);
+            List<Post> sorted = generateSorted(size);
+
+            List<Post> nearlySorted = new ArrayList<>(sorted);
+            for (int i = 0; i < size / 100; i++) {
+                Collections.swap(nearlySorted, random.nextInt(size), random.nextInt(size));
+            }
+
+            // A refresh: the previous response with a few new posts on top, appended at the end
+            List<Post> refreshed = new ArrayList<>(sorted);
+            for (int i = 0; i < 50; i++) {
+                refreshed.add(post(size + i, BASE_MILLIS + (size + i) * 1000L));
+            }
+
+            List<Post> shuffled = new ArrayList<>(sorted);
+            Collections.shuffle(shuffled, random);
+
+            compare("sorted", sorted);
+            compare("nearly sorted (1% swapped)", nearlySorted);
+            compare("refresh (+50 new at the end)", refreshed);
+            compare("shuffled", shuffled);
+        }
+    }
+
+    @Test
+    public void undatedPostsSortLastAndTiesKeepOrder() {
+        Post a = post(1, BASE_MILLIS);
+        Post b = post(2, BASE_MILLIS);
+        Post c = post(3, BASE_MILLIS + 1000);
+        Post undated = post(4, BASE_MILLIS);
+        undated.setCreatedAt(null);
+
+        List<Post> input = new ArrayList<>();
+        Collections.addAll(input, undated, a, c, b);
+        List<Post> sorted = PostSearcher.sortByDate(input);
+
+        assertSame(c, sorted.get(0));
+        assertSame(a, sorted.get(1));
+        assertSame(b, sorted.get(2));
+        assertSame(undated, sorted.get(3));
+    }
+
+    private static void compare(String label, List<Post> input) {
+        long stringNanos = time(() -> {
+            List<Post> copy = new ArrayList<>(input);
+            copy.sort(BY_STRING);
+        });
+        long currentNanos = time(() -> PostSearcher.sortByDate(input));
+        long runMergeNanos = time(() -> runMergeSort(input));
+        Benchmarks.log("%,d posts, %s: string compare %.2f ms, millis + TimSort %.2f ms, run merge %.2f ms",
+                input.size(), label, stringNanos / 1e6, currentNanos / 1e6, runMergeNanos / 1e6);
+
+        List<Post> expected = PostSearcher.sortByDate(input);
+        List<Post> actual = runMergeSort(input);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getCreatedAtMillis(), actual.get(i).getCreatedAtMillis());
+        }
+    }
+
+    /**
+     * Split into maximal sorted runs, then merge adjacent runs pairwise
+     */
+    private static List<Post> runMergeSort(List<Post> posts) {
+        Comparator<Post> order = PostSearcher.NEWEST_FIRST;
+        int n = posts.size();
+        Post[] source = posts.toArray(new Post[0]);
+        List<Integer> runs = new ArrayList<>();
+        runs.add(0);
+        for (int i = 1; i < n; i++) {
+            if (order.compare(source[i - 1], source[i]) > 0) runs.add(i);
+        }
+        runs.add(n);
+
+        Post[] target = new Post[n];
+        while (runs.size() > 2) {
+            List<Integer> merged = new ArrayList<>();
+            int r = 0;
+            for (; r + 2 < runs.size(); r += 2) {
+                int i = runs.get(r), mid = runs.get(r + 1), j = mid, end = runs.get(r + 2), k = i;
+                while (i < mid && j < end) {
+                    target[k++] = order.compare(source[j], source[i]) < 0 ? source[j++] : source[i++];
+                }
+                while (i < mid) target[k++] = source[i++];
+                while (j < end) target[k++] = source[j++];
+                merged.add(runs.get(r));
+            }
+            if (r + 1 < runs.size()) {
+                System.arraycopy(source, runs.get(r), target, runs.get(r), n - runs.get(r));
+                merged.add(runs.get(r));
+            }
+            merged.add(n);
+            runs = merged;
+            Post[] swap = source;
+            source = target;
+            target = swap;
+        }
+
+        List<Post> sorted = new ArrayList<>(n);
+        Collections.addAll(sorted, source);
+        return sorted;
+    }
+
+    /**
+     * Best of ROUNDS runs after a warm-up, in nanoseconds
+     */
+    private static long time(Runnable work) {
+        for (int i = 0; i < 3; i++) work.run();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            work.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static List<Post> generateSorted(int size) {
+        List<Post> posts = new ArrayList<>(size);
+        for (int i = size - 1; i >= 0; i--) {
+            posts.add(post(i, BASE_MILLIS + i * 1000L));
+        }
+        return posts;
+    }
+
+    private static Post post(int id, long createdAtMillis) {
+        Post post = new Post();
+        post.setId(id);
+        post.setCreatedAt(Instant.ofEpochMilli(createdAtMillis).toString());
+        // Parsed at decode time in the app
+        post.getCreatedAtMillis();
+        return post;
+    }
+}
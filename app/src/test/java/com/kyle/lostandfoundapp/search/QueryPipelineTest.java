@@ -0,0 +1,205 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks field-scoped query parsing, that the indexed pipeline (feed) and the scanning one
+ * (admin) agree, and logs the cost of a selective query over a large feed. The timing
+ * test is opt-in and logs instead of asserting (see Benchmarks).
+ */
+public class QueryPipelineTest {
+
+    private static final String[] WORDS = {
+            "black", "blue", "red", "leather", "wallet", "phone", "umbrella", "keys", "bag",
+            "backpack", "card", "student", "library", "canteen", "parking", "laptop", "charger",
+            "bottle", "glasses", "watch", "ring", "jacket", "helmet", "passport", "airpods"
+    };
+    private static final String[] STATUSES = {"active", "reported", "resolved"};
+
+    private List<Post> posts;
+    private PostIndex index;
+    private FacetIndex facets;
+
+    @Before
+    public void setUp() {
+        posts = Arrays.asList(
+                post(1, "Lost black phone", "Samsung, cracked screen", "012 345", true, "active", 7),
+                post(2, "Found phone charger", "white cable near the library", "", false, "reported", 8),
+                post(3, "Lost wallet", "has my phone number inside", "phone me", true, "reported", 7),
+                post(4, "Found student card", "name: Dara", "", false, "active", 9),
+                post(5, "Lost ទូរស័ព្ទ", "នៅបណ្ណាល័យ", "", true, "reported", 9));
+        index = new PostIndex();
+        index.setCorpus(posts);
+        facets = new FacetIndex();
+        facets.setPosts(posts);
+    }
+
+    @Test
+    public void parsesFieldsFacetsAndPhrases() {
+        FieldQuery query = FieldQuery.parse("title:phone lost status:Reported");
+        assertTrue(query.isStructured());
+        assertEquals("[title:phone]", query.getTerms().toString());
+        assertEquals(Arrays.asList(true), query.getKinds());
+        assertEquals(Arrays.asList("reported"), query.getStatuses());
+
+        // The word being typed is a prefix; a finished one is not
+        assertEquals("[title:pho*]", FieldQuery.parse("title:pho").getTerms().toString());
+        assertEquals("[title:pho]", FieldQuery.parse("title:pho ").getTerms().toString());
+        assertEquals("[desc:\"white cable\", wallet*]",
+                FieldQuery.parse("desc:\"white cable\" wallet").getTerms().toString()
+                        .replace("description", "desc"));
+
+        // Without field syntax, lost stays a word for the plain search path
+        FieldQuery plain = FieldQuery.parse("lost wallet");
+        assertFalse(plain.isStructured());
+        assertEquals("[lost, wallet*]", plain.getTerms().toString());
+
+        // Unknown fields, times and half-typed facets
+        assertFalse(FieldQuery.parse("at 10:30 color:red").isStructured());
+        assertEquals(Arrays.asList(true), FieldQuery.parse("is:lo").getKinds());
+        assertTrue(FieldQuery.parse("user:abc").matchesNothing());
+        assertTrue(FieldQuery.parse("status:").getStatuses().isEmpty());
+    }
+
+    @Test
+    public void runsFacetsPostingsAndChecks() {
+        assertEquals(ids(3), run("phone lost status:reported", null));
+        assertEquals(ids(), run("title:phone lost status:reported", null));
+        assertEquals(ids(1), run("title:phone lost", null));
+        assertEquals(ids(1, 2), run("title:phone", null));
+        // Phone is in 3's description and contact but not its title
+        assertEquals(ids(1, 2, 3), run("phone is:", null));
+        assertEquals(ids(3), run("contact:phone", null));
+        assertEquals(ids(2), run("desc:\"white cable\"", null));
+        assertEquals(ids(2), run("title:cha", null));
+        assertEquals(ids(), run("title:cha ", null));
+        assertEquals(ids(1, 3), run("user:7", null));
+        assertEquals(ids(), run("user:7 found", null));
+        // Khmer values are substrings
+        assertEquals(ids(5), run("title:ទូរ", null));
+        assertEquals(ids(5), run("desc:បណ្ណា status:reported", null));
+        // Chip filter on top
+        assertEquals(ids(2), run("status:reported phone", facets.found()));
+    }
+
+    @Test
+    public void indexedAndScanningPipelinesAgree() {
+        Random random = new Random(5);
+        posts = new ArrayList<>();
+        for (int id = 1; id <= 2000; id++) {
+            posts.add(randomPost(random, id));
+        }
+        index = new PostIndex();
+        index.setCorpus(posts);
+        facets = new FacetIndex();
+        facets.setPosts(posts);
+
+        for (int q = 0; q < 400; q++) {
+            StringBuilder text = new StringBuilder();
+            int clauses = 1 + random.nextInt(3);
+            for (int c = 0; c < clauses; c++) {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                switch (random.nextInt(7)) {
+                    case 0: text.append("title:").append(word); break;
+                    case 1: text.append("desc:").append(word); break;
+                    case 2: text.append("status:").append(STATUSES[random.nextInt(3)]); break;
+                    case 3: text.append(random.nextBoolean() ? "lost" : "found"); break;
+                    case 4: text.append('"').append(word.substring(1)).append('"'); break;
+                    case 5: text.append("user:").append(random.nextInt(20)); break;
+                    default: text.append(word, 0, 2 + random.nextInt(word.length() - 1)); break;
+                }
+                text.append(' ');
+            }
+            String query = random.nextBoolean() ? text.toString() : text.toString().trim();
+            RoaringBitmap chip = random.nextInt(3) == 0 ? facets.lost() : null;
+
+            FieldQuery parsed = FieldQuery.parse(query);
+            List<Post> indexed = QueryPipeline.compile(parsed, facets, index.getRankedIndex()).run(chip);
+            List<Post> scanned = QueryPipeline.compile(parsed, facets).run(chip);
+            assertEquals(query, scanned, indexed);
+        }
+    }
+
+    @Test
+    public void selectiveQueryOnLargeFeed() {
+        Benchmarks.assumeEnabled();
+        Random random = new Random(9);
+        posts = new ArrayList<>();
+        for (int id = 1; id <= 100_000; id++) {
+            posts.add(randomPost(random, id));
+        }
+        index = new PostIndex();
+        index.setCorpus(posts);
+        facets = new FacetIndex();
+        facets.setPosts(posts);
+
+        FieldQuery query = FieldQuery.parse("title:phone lost status:reported \"ack\"");
+        QueryPipeline indexed = QueryPipeline.compile(query, facets, index.getRankedIndex());
+        QueryPipeline scanning = QueryPipeline.compile(query, facets);
+        List<Post> matches = null;
+        double indexedMicros = 0;
+        double scanMicros = 0;
+        int rounds = 20;
+        for (int r = 0; r < 2; r++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) matches = indexed.run(null);
+            indexedMicros = (System.nanoTime() - start) / 1000.0 / rounds;
+            start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) scanning.run(null);
+            scanMicros = (System.nanoTime() - start) / 1000.0 / rounds;
+        }
+        assertEquals(matches, scanning.run(null));
+        Benchmarks.log("100,000 posts, 'title:phone lost status:reported \"ack\"' (%d matches): "
+                + "indexed %.0f us, facets + scan %.0f us; %s", matches.size(), indexedMicros, scanMicros, indexed);
+    }
+
+    private List<Integer> run(String query, RoaringBitmap chip) {
+        List<Integer> ids = new ArrayList<>();
+        for (Post post : QueryPipeline.compile(FieldQuery.parse(query), facets, index.getRankedIndex()).run(chip)) {
+            ids.add(post.getId());
+        }
+        List<Integer> scanned = new ArrayList<>();
+        for (Post post : QueryPipeline.compile(FieldQuery.parse(query), facets).run(chip)) {
+            scanned.add(post.getId());
+        }
+        assertEquals(query, ids, scanned);
+        return ids;
+    }
+
+    private static List<Integer> ids(Integer... ids) {
+        return Arrays.asList(ids);
+    }
+
+    private static Post randomPost(Random random, int id) {
+        return post(id, sentence(random, 1 + random.nextInt(4)), sentence(random, random.nextInt(12)),
+                random.nextInt(4) == 0 ? sentence(random, 2) : "", random.nextBoolean(),
+                STATUSES[random.nextInt(STATUSES.length)], random.nextInt(20));
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sentence.append(' ');
+            sentence.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sentence.toString();
+    }
+
+    private static Post post(int id, String title, String description, String contact, boolean isLost,
+                             String status, int userId) {
+        Post post = TestPosts.post(id, title, description, contact, isLost);
+        post.setStatus(status);
+        post.setUserId(userId);
+        return post;
+    }
+}
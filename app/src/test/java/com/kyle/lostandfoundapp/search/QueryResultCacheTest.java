@@ -0,0 +1,134 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.kyle.lostandfoundapp.search.TestPosts.post;
+import static com.kyle.lostandfoundapp.search.TestPosts.postedAt;
+import static org.junit.Assert.*;
+
+public class QueryResultCacheTest {
+
+    private PostQueryEngine engine;
+    private List<Post> posts;
+    private QueryResult last;
+
+    @Before
+    public void setUp() {
+        engine = new PostQueryEngine(new InlineExecutor(), Runnable::run);
+        posts = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            posts.add(postedAt(post(i + 1, i % 3 == 0 ? "black umbrella" : "wallet " + i, null, i % 2 == 0), i));
+        }
+        engine.setCorpus(posts, null);
+    }
+
+    @Test
+    public void switchingChipsBackAndForthHitsTheCache() {
+        submit("umbrella", true);
+        submit("umbrella", false);
+        submit("umbrella", null);
+        int misses = engine.getCache().getMisses();
+
+        submit("umbrella", true);
+        List<Post> lost = last.getPosts();
+        submit("Umbrella ", false);
+        submit("umbrella", null);
+        submit("umbrella", true);
+
+        assertEquals(misses, engine.getCache().getMisses());
+        assertEquals(4, engine.getCache().getHits());
+        assertEquals(lost, last.getPosts());
+        assertEquals(7, last.getTotalMatches());
+        for (Post post : last.getPosts()) {
+            assertTrue(post.getIsLost());
+        }
+    }
+
+    @Test
+    public void unchangedRefreshKeepsEntriesAndRealChangesDropThem() {
+        submit("wallet", true);
+        assertEquals(1, engine.getCache().size());
+        assertEquals(13, last.getTotalMatches());
+
+        // Same posts as fresh objects, as a pull-to-refresh would deliver them
+        List<Post> refreshed = new ArrayList<>();
+        for (Post post : posts) {
+            refreshed.add(postedAt(post(post.getId(), post.getTitle(), null, post.getIsLost()), post.getId() - 1));
+        }
+        engine.setCorpus(refreshed, null);
+        submit("wallet", true);
+        assertEquals(1, engine.getCache().getHits());
+        // Hits are served from the new objects, not the ones the entry was built from
+        assertTrue(refreshed.contains(last.getPosts().get(0)));
+        assertFalse(posts.contains(last.getPosts().get(0)));
+
+        // Flipping one post from found to lost must show up
+        List<Post> edited = new ArrayList<>(refreshed);
+        Post flipped = postedAt(post(2, "wallet 1", null, true), 1);
+        edited.set(1, flipped);
+        engine.setCorpus(edited, null);
+        assertEquals(0, engine.getCache().size());
+        submit("wallet", true);
+        assertEquals(14, last.getTotalMatches());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        QueryResultCache cache = new QueryResultCache();
+        for (int i = 0; i <= QueryResultCache.MAX_ENTRIES; i++) {
+            cache.put(1, "q" + i, null, new int[] {i});
+            // Keep the first entry warm
+            cache.get(1, "q0", null);
+        }
+        assertEquals(QueryResultCache.MAX_ENTRIES, cache.size());
+        assertNotNull(cache.get(1, "q0", null));
+        assertNull(cache.get(1, "q1", null));
+        assertNull(cache.get(2, "q0", null));
+    }
+
+    private void submit(String text, Boolean isLost) {
+        engine.submit(new PostQuery(text, isLost, 5), result -> last = result);
+    }
+
+    /**
+     * Runs the engine's worker tasks on the calling thread
+     */
+    private static final class InlineExecutor extends AbstractExecutorService {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {}
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
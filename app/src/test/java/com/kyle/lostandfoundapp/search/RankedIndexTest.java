@@ -0,0 +1,156 @@
+package com.kyle.lostandfoundapp.search;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks BM25F ranking, that only posts having every query word are ranked and that
+ * MaxScore pruning returns the same top k as scoring every match, and logs how many of a
+ * common query's matches still had to be scored in full. Every match is visited either
+ * way. The timing test is opt-in and logs instead of asserting (see Benchmarks).
+ */
+public class RankedIndexTest {
+
+    private static final String[] WORDS = {
+            "black", "blue", "red", "leather", "wallet", "phone", "umbrella", "keys", "bag",
+            "backpack", "card", "student", "library", "canteen", "parking", "laptop", "charger",
+            "bottle", "glasses", "watch", "ring", "jacket", "helmet", "passport", "airpods",
+            "near", "left", "under", "table", "room", "floor", "building", "morning", "evening"
+    };
+
+    @Test
+    public void titleMatchesOutrankDescriptionAndContactMatches() {
+        RankedIndex index = new RankedIndex();
+        put(index, 1, "found keys", "near the blue wallet stand", "call wallet shop");
+        put(index, 2, "blue wallet", "found near the canteen", "012 345 678");
+        put(index, 3, "student card", "inside a wallet", "");
+        put(index, 4, "umbrella", "left in room 204", "");
+
+        RankedIndex.TopK top = index.topK(Arrays.asList("wallet"), 10, id -> true);
+        assertEquals(2, top.ids[0]);
+        assertEquals(3, top.ids.length);
+        assertFalse(contains(top.ids, 4));
+
+        // The last token is matched as a prefix, the earlier ones exactly
+        assertEquals(2, index.topK(Arrays.asList("blue", "wal"), 10, id -> true).ids[0]);
+        assertEquals(0, index.topK(Arrays.asList("wal", "blue"), 10, id -> id == 3).ids.length);
+
+        // Every token is needed; ranking orders the matches, it doesn't add any
+        RankedIndex.TopK both = index.topK(Arrays.asList("blue", "wallet"), 10, id -> true);
+        assertArrayEquals(new int[]{2, 1}, both.ids);
+        assertEquals(2, both.matches);
+        assertEquals(0, index.topK(Arrays.asList("blue", "card"), 10, id -> true).ids.length);
+        assertEquals(0, index.topK(Arrays.asList("purple", "wal"), 10, id -> true).matches);
+        // A typed prefix that an earlier word already satisfies
+        assertEquals(3, index.topK(Arrays.asList("wallet", "wal"), 10, id -> true).matches);
+
+        // Filter and updates
+        assertArrayEquals(new int[]{3}, index.topK(Arrays.asList("wallet"), 10, id -> id == 3).ids);
+        index.remove(2);
+        put(index, 3, "black wallet", "with a student card", "");
+        assertEquals(3, index.topK(Arrays.asList("wallet"), 10, id -> true).ids[0]);
+    }
+
+    @Test
+    public void pruningKeepsTheExhaustiveTopK() {
+        Random random = new Random(21);
+        RankedIndex index = new RankedIndex();
+        InvertedIndex matching = new InvertedIndex();
+        for (int id = 1; id <= 3000; id++) {
+            String title = sentence(random, 1 + random.nextInt(5));
+            String description = sentence(random, random.nextInt(20));
+            String contact = random.nextInt(4) == 0 ? sentence(random, 2) : "";
+            put(index, id, title, description, contact);
+            matching.put(id, Tokenizer.tokenize(title + " " + description + " " + contact));
+        }
+
+        for (int q = 0; q < 300; q++) {
+            List<String> query = new ArrayList<>();
+            int words = 1 + random.nextInt(4);
+            for (int w = 0; w < words; w++) {
+                query.add(WORDS[random.nextInt(WORDS.length)]);
+            }
+            if (random.nextBoolean()) {
+                String last = query.get(words - 1);
+                query.set(words - 1, last.substring(0, 1 + random.nextInt(last.length())));
+            }
+            int k = 1 + random.nextInt(30);
+            int modulus = 1 + random.nextInt(3);
+
+            RankedIndex.TopK pruned = index.topK(query, k, id -> id % modulus == 0, true);
+            RankedIndex.TopK exhaustive = index.topK(query, k, id -> id % modulus == 0, false);
+            int expected = 0;
+            for (int id : matching.query(query)) {
+                if (id % modulus == 0) expected++;
+            }
+            assertEquals(query.toString(), expected, pruned.matches);
+            assertEquals(expected, exhaustive.matches);
+            assertEquals(Math.min(k, expected), pruned.ids.length);
+            assertEquals(exhaustive.ids.length, pruned.ids.length);
+            for (int i = 0; i < pruned.ids.length; i++) {
+                // Sums can round differently when terms are added in another order
+                assertEquals(exhaustive.scores[i], pruned.scores[i], 1e-4f);
+            }
+            assertTrue(pruned.scored <= exhaustive.scored);
+        }
+    }
+
+    @Test
+    public void commonWordsFirstPage() {
+        Benchmarks.assumeEnabled();
+        Random random = new Random(8);
+        RankedIndex index = new RankedIndex();
+        int posts = 100_000;
+        for (int id = 1; id <= posts; id++) {
+            put(index, id, sentence(random, 4), sentence(random, 14), "");
+        }
+        List<String> query = Arrays.asList("black", "airpods");
+
+        RankedIndex.TopK exhaustive = null;
+        RankedIndex.TopK pruned = null;
+        double exhaustiveMicros = 0;
+        double prunedMicros = 0;
+        int rounds = 20;
+        for (int r = 0; r < 2; r++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) exhaustive = index.topK(query, 15, id -> true, false);
+            exhaustiveMicros = (System.nanoTime() - start) / 1000.0 / rounds;
+            start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) pruned = index.topK(query, 15, id -> true, true);
+            prunedMicros = (System.nanoTime() - start) / 1000.0 / rounds;
+        }
+        assertEquals(exhaustive.matches, pruned.matches);
+        assertEquals(exhaustive.scores[14], pruned.scores[14], 1e-4f);
+        Benchmarks.log("100,000 posts, first page of 'black airpods' (%d matches): exhaustive %.0f us "
+                + "(%d scored), MaxScore %.0f us (%d scored)", pruned.matches, exhaustiveMicros, exhaustive.scored,
+                prunedMicros, pruned.scored);
+    }
+
+    private static void put(RankedIndex index, int id, String title, String description, String contact) {
+        index.put(id, Tokenizer.tokenize(title), Tokenizer.tokenize(description), Tokenizer.tokenize(contact));
+    }
+
+    private static boolean contains(int[] ids, int id) {
+        for (int candidate : ids) {
+            if (candidate == id) return true;
+        }
+        return false;
+    }
+
+    private static String sentence(Random random, int words) {
+        if (words == 0) return "";
+        List<String> picked = new ArrayList<>();
+        for (int i = 0; i < words; i++) {
+            picked.add(WORDS[random.nextInt(WORDS.length)]);
+        }
+        Collections.shuffle(picked, random);
+        return String.join(" ", picked);
+    }
+}
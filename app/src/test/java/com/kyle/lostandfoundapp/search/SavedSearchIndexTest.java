@@ -0,0 +1,172 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+import com.kyle.lostandfoundapp.utils.TextFolder;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static com.kyle.lostandfoundapp.search.TestPosts.post;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the query-side index against running every saved search on every post, and logs
+ * the cost of evaluating 1,000 standing searches per new post. The timing test is opt-in
+ * and logs instead of asserting (see Benchmarks).
+ */
+public class SavedSearchIndexTest {
+
+    private static final String[] WORDS = {
+            "black", "blue", "red", "leather", "wallet", "phone", "umbrella", "keys", "bag",
+            "backpack", "card", "student", "library", "canteen", "parking", "laptop", "charger",
+            "bottle", "glasses", "watch", "ring", "jacket", "helmet", "passport", "airpods"
+    };
+
+    @Test
+    public void matchesPrefixesOfEveryTokenAndTheWatchedKind() {
+        SavedSearchIndex index = new SavedSearchIndex();
+        index.add(new SavedSearch(1, "Black wallet", false));
+        index.add(new SavedSearch(2, "umbrel", null));
+        index.add(new SavedSearch(3, "black wallet", true));
+        index.add(new SavedSearch(4, "wallet library", false));
+        assertFalse(index.add(new SavedSearch(5, "?!", false)));
+
+        Post found = post(10, "Found a BLACK leather wallet", "near the canteen", false);
+        assertEquals(Collections.singletonList(1L), ids(index.match(found)));
+
+        Post umbrella = post(11, "Umbrellas", "blue and black", true);
+        assertEquals(Collections.singletonList(2L), ids(index.match(umbrella)));
+
+        index.remove(1);
+        assertTrue(index.match(found).isEmpty());
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void khmerSearchesMatchAsSubstrings() {
+        SavedSearchIndex index = new SavedSearchIndex();
+        index.add(new SavedSearch(1, "កាបូប", false));
+        assertEquals(1, index.match(post(1, "រកឃើញកាបូបខ្មៅ", null, false)).size());
+        assertTrue(index.match(post(2, "រកឃើញកាបូបខ្មៅ", null, true)).isEmpty());
+    }
+
+    @Test
+    public void monitorOnlyLooksAtNewAndChangedPosts() {
+        SavedSearchMonitor monitor = new SavedSearchMonitor(100);
+        monitor.getIndex().add(new SavedSearch(1, "wallet", false));
+
+        List<Post> posts = new ArrayList<>();
+        posts.add(post(99, "wallet", "seen before the restart", false));
+        posts.add(post(101, "wallet", "new since the restart", false));
+        Map<Post, List<SavedSearch>> alerts = monitor.onRefresh(posts);
+        assertEquals(Collections.singleton(posts.get(1)), alerts.keySet());
+        assertEquals(101, monitor.getHighWaterId());
+
+        // Same posts again as fresh objects: nothing new
+        List<Post> again = new ArrayList<>();
+        for (Post post : posts) {
+            again.add(post(post.getId(), post.getTitle(), post.getDescription(), post.getIsLost()));
+        }
+        assertTrue(monitor.onRefresh(again).isEmpty());
+
+        // An edit that starts matching is alerted, an untouched post is not
+        Post edited = post(50, "blue wallet", "was an umbrella", false);
+        again.add(post(102, "keys", null, false));
+        again.add(edited);
+        monitor.onRefresh(again);
+        again.set(again.size() - 1, post(50, "blue wallet", "was an umbrella, still found", false));
+        assertEquals(1, monitor.onRefresh(again).size());
+
+        // "Aa" and "BB" have the same String hash, so a hash of the fields misses this edit
+        again.set(again.size() - 1, post(50, "Aa wallet", "was an umbrella, still found", false));
+        monitor.onRefresh(again);
+        again.set(again.size() - 1, post(50, "BB wallet", "was an umbrella, still found", false));
+        assertEquals(1, monitor.onRefresh(again).size());
+    }
+
+    @Test
+    public void thousandStandingSearchesPerNewPost() {
+        Benchmarks.assumeEnabled();
+        Random random = new Random(7);
+        List<SavedSearch> searches = new ArrayList<>();
+        SavedSearchIndex index = new SavedSearchIndex();
+        for (int i = 0; i < 1000; i++) {
+            StringBuilder text = new StringBuilder();
+            int words = 1 + random.nextInt(3);
+            for (int w = 0; w < words; w++) {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                // Some searches are typed as prefixes
+                text.append(random.nextInt(4) == 0 ? word.substring(0, Math.max(3, word.length() - 2)) : word)
+                        .append(' ');
+            }
+            SavedSearch search = new SavedSearch(i, text.toString(), random.nextInt(3) == 0 ? null : random.nextBoolean());
+            searches.add(search);
+            index.add(search);
+        }
+
+        List<Post> posts = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            posts.add(post(i, sentence(random, 4), sentence(random, 12), random.nextBoolean()));
+        }
+
+        int matched = 0;
+        for (Post post : posts) {
+            Set<Long> expected = new HashSet<>();
+            for (SavedSearch search : searches) {
+                if (bruteForceMatches(search, post)) expected.add(search.getId());
+            }
+            Set<Long> actual = new HashSet<>(ids(index.match(post)));
+            assertEquals(expected, actual);
+            matched += actual.size();
+        }
+
+        // Warm up, then time
+        for (Post post : posts) index.match(post);
+        long start = System.nanoTime();
+        int rounds = 5;
+        for (int r = 0; r < rounds; r++) {
+            for (Post post : posts) index.match(post);
+        }
+        double micros = (System.nanoTime() - start) / 1000.0 / (rounds * posts.size());
+        Benchmarks.log("1,000 saved searches: %.1f us per new post (%d matches over %d posts)",
+                micros, matched, posts.size());
+    }
+
+    private static boolean bruteForceMatches(SavedSearch search, Post post) {
+        if (search.getIsLost() != null && !search.getIsLost().equals(post.getIsLost())) return false;
+        List<String> postTokens = PostIndex.tokensOf(post);
+        for (String queryToken : Tokenizer.tokenize(TextFolder.foldToString(search.getText()))) {
+            boolean found = false;
+            for (String token : postTokens) {
+                if (token.startsWith(queryToken)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    private static String sentence(Random random, int words) {
+        String[] picked = new String[words];
+        for (int i = 0; i < words; i++) {
+            picked[i] = WORDS[random.nextInt(WORDS.length)];
+        }
+        return String.join(" ", Arrays.asList(picked));
+    }
+
+    private static List<Long> ids(List<SavedSearch> searches) {
+        List<Long> ids = new ArrayList<>();
+        for (SavedSearch search : searches) ids.add(search.getId());
+        return ids;
+    }
+}
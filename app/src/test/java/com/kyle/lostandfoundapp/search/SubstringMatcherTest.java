@@ -0,0 +1,86 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SubstringMatcherTest {
+
+    @Test
+    public void matchesIgnoringCaseAndAccents() {
+        Post post = post("Lost CAFÉ loyalty card", "Near the crème brûlée stand", "012 345");
+
+        assertTrue(new SubstringMatcher("cafe").matches(post));
+        assertTrue(new SubstringMatcher("Creme Brulee").matches(post));
+        assertTrue(new SubstringMatcher("2 3").matches(post));
+        assertFalse(new SubstringMatcher("cafes").matches(post));
+        assertTrue(new SubstringMatcher("").matches(post));
+    }
+
+    @Test
+    public void findsEveryOccurrence() {
+        SubstringMatcher matcher = new SubstringMatcher("ana");
+        char[] text = "bananas".toCharArray();
+        assertEquals(1, matcher.indexIn(text, 0));
+        assertEquals(3, matcher.indexIn(text, 2));
+        assertEquals(-1, matcher.indexIn(text, 4));
+    }
+
+    @Test
+    public void rangesJoinTouchingMatches() {
+        SubstringMatcher matcher = new SubstringMatcher("ab");
+        assertArrayEquals(new int[]{0, 4, 5, 7}, matcher.rangesIn("ababxab".toCharArray()));
+        assertNull(matcher.rangesIn("ba".toCharArray()));
+        assertNull(new SubstringMatcher("").rangesIn("ab".toCharArray()));
+    }
+
+    @Test
+    public void keepsKhmerVowelSigns() {
+        // "កាបូប" (bag) must not match "កបប" with its vowel signs stripped
+        Post post = post("កាបូប", null, null);
+        assertTrue(new SubstringMatcher("កាប").matches(post));
+        assertFalse(new SubstringMatcher("កបប").matches(post));
+    }
+
+    @Test
+    public void scanAllocatesNothingPerPost() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        List<Post> posts = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            Post post = post("Black wallet " + i, "Lost near the central market, row " + i, "0" + (12345678 + i));
+            post.prepareDerivedFields();
+            posts.add(post);
+        }
+        SubstringMatcher matcher = new SubstringMatcher("market, row 99");
+
+        // Let the JIT settle before measuring
+        for (int i = 0; i < 20; i++) {
+            PostSearcher.countMatches(posts, matcher);
+        }
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        int matches = PostSearcher.countMatches(posts, matcher);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(111, matches);
+        // Far less than one byte per post; the remainder is the measuring call itself
+        assertTrue("allocated " + allocated + " bytes", allocated < posts.size() / 10);
+    }
+
+    private static Post post(String title, String description, String contact) {
+        Post post = new Post();
+        post.setTitle(title);
+        post.setDescription(description);
+        post.setContact(contact);
+        return post;
+    }
+}
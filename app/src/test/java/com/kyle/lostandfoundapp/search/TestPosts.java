@@ -0,0 +1,39 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+
+/**
+ * Post fixtures shared by the search tests. Fields a test doesn't pass stay null, as in a
+ * server response that leaves them out.
+ */
+final class TestPosts {
+
+    private TestPosts() {
+    }
+
+    static Post post(int id, String title) {
+        return post(id, title, null, null, null);
+    }
+
+    static Post post(int id, String title, String description, Boolean isLost) {
+        return post(id, title, description, null, isLost);
+    }
+
+    static Post post(int id, String title, String description, String contact, Boolean isLost) {
+        Post post = new Post();
+        post.setId(id);
+        post.setTitle(title);
+        post.setDescription(description);
+        post.setContact(contact);
+        post.setIsLost(isLost);
+        return post;
+    }
+
+    /**
+     * Date the post the given minute past 10:00 on one day, so a higher minute sorts first
+     */
+    static Post postedAt(Post post, int minute) {
+        post.setCreatedAt(String.format("2024-05-01T10:%02d:00Z", minute));
+        return post;
+    }
+}
@@ -0,0 +1,195 @@
+package com.kyle.lostandfoundapp.search;
+
+import com.kyle.lostandfoundapp.model.Post;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.kyle.lostandfoundapp.search.TestPosts.post;
+import static org.junit.Assert.*;
+
+/**
+ * Checks completion order, incremental updates and the memory cap against a brute-force
+ * count, that completions can be read while another thread updates, and logs lookup cost and trie size for a large feed. The timing test is opt-in
+ * and logs instead of asserting (see Benchmarks).
+ */
+public class TitleCompleterTest {
+
+    @Test
+    public void completesTheLastWordByFrequency() {
+        TitleCompleter completer = new TitleCompleter();
+        List<Post> posts = new ArrayList<>(Arrays.asList(
+                post(1, "Lost black wallet"),
+                post(2, "Found wallet near library"),
+                post(3, "Lost walkman"),
+                post(4, "Wallet, wallet"),
+                post(5, "Lost water bottle")));
+        completer.update(posts);
+
+        assertEquals(Arrays.asList("wallet", "walkman"), completer.complete("wal", 5));
+        // Ties in frequency are alphabetical
+        assertEquals(Arrays.asList("wallet", "walkman", "water"), completer.complete("wa", 5));
+        // The rest of the query is kept as typed
+        assertEquals("Black wallet", completer.complete("Black wal", 1).get(0));
+        // A finished word, a single letter or an unknown prefix give nothing
+        assertTrue(completer.complete("wallet", 5).isEmpty());
+        assertTrue(completer.complete("wal ", 5).isEmpty());
+        assertTrue(completer.complete("w", 5).isEmpty());
+        assertTrue(completer.complete("xyz", 5).isEmpty());
+
+        // Edits and deletions
+        posts.set(3, post(4, "Lost walkman again"));
+        posts.remove(1);
+        posts.add(post(6, "Walkman headphones"));
+        completer.update(posts);
+        assertEquals(Arrays.asList("walkman", "wallet"), completer.complete("wal", 5));
+        posts.clear();
+        completer.update(posts);
+        assertEquals(0, completer.getTermCount());
+        assertTrue(completer.complete("wal", 5).isEmpty());
+    }
+
+    @Test
+    public void matchesBruteForceUnderTheCap() {
+        Random random = new Random(17);
+        TitleCompleter completer = new TitleCompleter(16 * 1024);
+        Map<Integer, Post> live = new HashMap<>();
+        for (int round = 0; round < 40; round++) {
+            for (int i = 0; i < 60; i++) {
+                int id = random.nextInt(600);
+                if (random.nextInt(5) == 0) {
+                    live.remove(id);
+                } else {
+                    live.put(id, post(id, title(random)));
+                }
+            }
+            completer.update(new ArrayList<>(live.values()));
+            assertTrue(completer.getMemoryBytes() <= completer.getMaxBytes());
+
+            Map<String, Integer> counts = new HashMap<>();
+            for (Post post : live.values()) {
+                for (String token : new HashSet<>(Tokenizer.tokenize(post.getTitle()))) {
+                    if (token.length() >= 2) counts.merge(token, 1, Integer::sum);
+                }
+            }
+            assertEquals(counts.size(), completer.getVocabularySize());
+
+            for (int q = 0; q < 20; q++) {
+                String prefix = randomWord(random, 2 + random.nextInt(2));
+                List<String> got = completer.complete(prefix, 5);
+                // Frequencies never increase down the list and all clear the threshold
+                int previous = Integer.MAX_VALUE;
+                for (String term : got) {
+                    assertTrue(term.startsWith(prefix) && !term.equals(prefix));
+                    int count = counts.get(term);
+                    assertTrue(count <= previous && count >= completer.getMinCount());
+                    previous = count;
+                }
+                // Nothing left out that beats the last one returned
+                long better = counts.entrySet().stream()
+                        .filter(e -> e.getKey().startsWith(prefix) && !e.getKey().equals(prefix))
+                        .filter(e -> e.getValue() >= completer.getMinCount())
+                        .count();
+                assertEquals(Math.min(5, better), got.size());
+            }
+        }
+    }
+
+    @Test
+    public void completesWhileAnotherThreadUpdates() throws InterruptedException {
+        TitleCompleter completer = new TitleCompleter(16 * 1024);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (running.get()) {
+                    for (String completion : completer.complete("Lost ba", 5)) {
+                        assertTrue(completion, completion.startsWith("Lost ba") && completion.length() > 7);
+                    }
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        reader.start();
+
+        Random random = new Random(5);
+        Map<Integer, Post> live = new HashMap<>();
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < 50; i++) {
+                int id = random.nextInt(2000);
+                live.put(id, post(id, title(random)));
+            }
+            completer.update(new ArrayList<>(live.values()));
+        }
+        running.set(false);
+        reader.join();
+        assertNull(failure.get());
+        assertFalse(completer.complete("ba", 5).isEmpty());
+    }
+
+    @Test
+    public void largeFeed() {
+        Benchmarks.assumeEnabled();
+        Random random = new Random(3);
+        List<Post> posts = new ArrayList<>();
+        for (int id = 1; id <= 100_000; id++) {
+            posts.add(post(id, title(random)));
+        }
+        TitleCompleter completer = new TitleCompleter();
+        long start = System.nanoTime();
+        completer.update(posts);
+        double buildMillis = (System.nanoTime() - start) / 1e6;
+
+        posts.set(10, post(11, "Lost passport"));
+        start = System.nanoTime();
+        completer.update(posts);
+        double updateMillis = (System.nanoTime() - start) / 1e6;
+
+        String[] prefixes = {"ba", "wal", "ph", "st", "ca", "le", "ke", "um"};
+        int rounds = 20_000;
+        for (int r = 0; r < 2; r++) {
+            start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                completer.complete(prefixes[i % prefixes.length], 5);
+            }
+        }
+        double lookupMicros = (System.nanoTime() - start) / 1000.0 / rounds;
+        assertEquals(5, completer.complete("ba", 5).size());
+        assertTrue(completer.getMemoryBytes() <= completer.getMaxBytes());
+        Benchmarks.log("100,000 titles: build %.0f ms, one edit %.1f ms, completion %.1f us, "
+                        + "trie %d terms of %d in %d KB (min count %d)", buildMillis, updateMillis, lookupMicros,
+                completer.getTermCount(), completer.getVocabularySize(), completer.getMemoryBytes() / 1024,
+                completer.getMinCount());
+    }
+
+    private static String title(Random random) {
+        StringBuilder title = new StringBuilder(random.nextBoolean() ? "Lost" : "Found");
+        int words = 1 + random.nextInt(4);
+        for (int i = 0; i < words; i++) {
+            // Skewed lengths give a long tail of rare words next to common short ones
+            title.append(' ').append(randomWord(random, 2 + random.nextInt(random.nextInt(6) + 1)));
+        }
+        return title.toString();
+    }
+
+    private static String randomWord(Random random, int length) {
+        // Few letters so that prefixes are shared
+        String letters = "abcehklmnoprstuw";
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            word.append(letters.charAt(Math.min(letters.length() - 1,
+                    (int) (Math.abs(random.nextGaussian()) * 5))));
+        }
+        return word.toString();
+    }
+}
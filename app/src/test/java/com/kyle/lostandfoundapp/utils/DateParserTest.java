@@ -0,0 +1,115 @@
+package com.kyle.lostandfoundapp.utils;
+
+import com.kyle.lostandfoundapp.model.Post;
+import com.kyle.lostandfoundapp.search.PostSearcher;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class DateParserTest {
+
+    private static final TimeZone PHNOM_PENH = TimeZone.getTimeZone("Asia/Phnom_Penh");
+    private static final TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+
+    @Test
+    public void parsesLocalTimestampsInEveryServerFormat() {
+        long expected = local("2024-03-05T10:15:30", PHNOM_PENH);
+
+        assertEquals(expected, DateParser.parseMillis("2024-03-05T10:15:30", PHNOM_PENH));
+        assertEquals(expected, DateParser.parseMillis("2024-03-05 10:15:30", PHNOM_PENH));
+        assertEquals(expected + 123, DateParser.parseMillis("2024-03-05T10:15:30.123", PHNOM_PENH));
+        assertEquals(expected + 123, DateParser.parseMillis("2024-03-05T10:15:30.123456", PHNOM_PENH));
+        assertEquals(expected + 500, DateParser.parseMillis("2024-03-05T10:15:30.5", PHNOM_PENH));
+        assertEquals(expected - 30_000, DateParser.parseMillis("2024-03-05T10:15", PHNOM_PENH));
+        assertEquals(local("2024-03-05T00:00:00", PHNOM_PENH), DateParser.parseMillis("2024-03-05", PHNOM_PENH));
+    }
+
+    @Test
+    public void honoursExplicitOffsets() {
+        long utc = OffsetDateTime.parse("2024-03-05T03:15:30Z").toInstant().toEpochMilli();
+
+        assertEquals(utc, DateParser.parseMillis("2024-03-05T03:15:30Z", NEW_YORK));
+        assertEquals(utc, DateParser.parseMillis("2024-03-05T10:15:30+07:00", NEW_YORK));
+        assertEquals(utc, DateParser.parseMillis("2024-03-05T10:15:30+0700", NEW_YORK));
+        assertEquals(utc, DateParser.parseMillis("2024-03-05T10:15:30+07", NEW_YORK));
+        assertEquals(utc, DateParser.parseMillis("2024-03-04T21:45:30.000-05:30", NEW_YORK));
+    }
+
+    @Test
+    public void appliesDaylightSavingOfTheLocalZone() {
+        assertEquals(local("2024-01-15T12:00:00", NEW_YORK), DateParser.parseMillis("2024-01-15T12:00:00", NEW_YORK));
+        assertEquals(local("2024-07-15T12:00:00", NEW_YORK), DateParser.parseMillis("2024-07-15T12:00:00", NEW_YORK));
+        // UTC-5 in winter, UTC-4 in summer
+        assertEquals(DateParser.parseMillis("2024-01-15T17:00:00Z", NEW_YORK),
+                DateParser.parseMillis("2024-01-15T12:00:00", NEW_YORK));
+        assertEquals(DateParser.parseMillis("2024-07-15T16:00:00Z", NEW_YORK),
+                DateParser.parseMillis("2024-07-15T12:00:00", NEW_YORK));
+    }
+
+    @Test
+    public void parsesEpochAndFallbackFormats() {
+        assertEquals(1_709_608_530_000L, DateParser.parseMillis("1709608530", NEW_YORK));
+        assertEquals(1_709_608_530_123L, DateParser.parseMillis("1709608530123", NEW_YORK));
+        assertEquals(OffsetDateTime.parse("2024-03-05T03:15:30Z").toInstant().toEpochMilli(),
+                DateParser.parseMillis("Tue Mar 05 03:15:30 UTC 2024", NEW_YORK));
+    }
+
+    @Test
+    public void rejectsGarbage() {
+        assertEquals(DateParser.UNKNOWN, DateParser.parseMillis(null));
+        assertEquals(DateParser.UNKNOWN, DateParser.parseMillis(""));
+        assertEquals(DateParser.UNKNOWN, DateParser.parseMillis("yesterday"));
+        assertEquals(DateParser.UNKNOWN, DateParser.parseMillis("2024-13-05T10:15:30"));
+        assertEquals(DateParser.UNKNOWN, DateParser.parseMillis("2024-03-05T25:15:30"));
+        assertEquals(DateParser.UNKNOWN, DateParser.parseMillis("2024-03-05T10:15:30+"));
+        assertEquals(DateParser.UNKNOWN, DateParser.parseMillis("2024-03-05T10:15:30.Z"));
+    }
+
+    @Test
+    public void sortsMixedFormatsByInstant() {
+        List<Post> posts = new ArrayList<>();
+        posts.add(post(1, "2024-03-05 09:00:00"));
+        posts.add(post(2, null));
+        posts.add(post(3, "2024-03-05T08:30:00.000Z"));
+        posts.add(post(4, "2024-03-04T23:59:59-12:00"));
+        posts.add(post(5, "not a date"));
+
+        long local = DateParser.parseMillis("2024-03-05 09:00:00");
+        long utc = DateParser.parseMillis("2024-03-05T08:30:00.000Z");
+        List<Post> sorted = PostSearcher.sortByDate(posts);
+
+        // Posts 4 (11:59:59Z) then 1 or 3 depending on the machine's zone; undated last
+        assertEquals(4, (int) sorted.get(0).getId());
+        assertEquals(local > utc ? 1 : 3, (int) sorted.get(1).getId());
+        assertEquals(local > utc ? 3 : 1, (int) sorted.get(2).getId());
+        assertFalse(sorted.get(3).hasCreatedAt());
+        assertFalse(sorted.get(4).hasCreatedAt());
+    }
+
+    @Test
+    public void postReparsesWhenCreatedAtChanges() {
+        Post post = post(1, "2024-03-05T10:15:30Z");
+        long first = post.getCreatedAtMillis();
+        post.setCreatedAt("2024-03-06T10:15:30Z");
+        assertEquals(first + 86_400_000L, post.getCreatedAtMillis());
+    }
+
+    private static long local(String dateTime, TimeZone zone) {
+        return LocalDateTime.parse(dateTime).atZone(ZoneId.of(zone.getID())).toInstant().toEpochMilli();
+    }
+
+    private static Post post(int id, String createdAt) {
+        Post post = new Post();
+        post.setId(id);
+        post.setCreatedAt(createdAt);
+        return post;
+    }
+}